@@ -5,27 +5,57 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class DatabaseConfig {
     private BasicDataSource basicDataSource;
+    private BasicDataSource cartDataSource;
 
     @Bean
+    @Primary
     public BasicDataSource dataSource() {
         return basicDataSource;
     }
 
+    //only MySqlShoppingCartDao uses this pool: it is the only one that sends several statements in one string
+    @Bean
+    public BasicDataSource cartDataSource() {
+        return cartDataSource;
+    }
+
     @Autowired
     public DatabaseConfig(@Value("${datasource.url}") String url) {
 
         String userName = System.getProperty("dbUsername");
         String password = System.getProperty("dbPassword");
         {
-            basicDataSource = new BasicDataSource();
-            basicDataSource.setUrl(url);
-            basicDataSource.setUsername(userName);
-            basicDataSource.setPassword(password);
+            basicDataSource = pool(url, userName, password);
+
+            //cart mutations send their write and the read of the new cart as one statement batch.
+            //kept off the shared pool, so an injection bug in any other dao can't stack statements
+            cartDataSource = pool(url, userName, password);
+            cartDataSource.addConnectionProperty("allowMultiQueries", "true");
+            //and a multi-line cart update sends each JDBC batch as one statement instead of one per line
+            cartDataSource.addConnectionProperty("rewriteBatchedStatements", "true");
         }
 
     }
-}
\ No newline at end of file
+
+    private static BasicDataSource pool(String url, String userName, String password) {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setUrl(url);
+        dataSource.setUsername(userName);
+        dataSource.setPassword(password);
+
+        //let the driver cache parsed statements per connection, search queries reuse a fixed set of SQL shapes
+        dataSource.addConnectionProperty("cachePrepStmts", "true");
+        dataSource.addConnectionProperty("prepStmtCacheSize", "250");
+        dataSource.addConnectionProperty("prepStmtCacheSqlLimit", "2048");
+        //a streamed product listing keeps its connection until the client has read every row.
+        //if the client stops reading for this many seconds, MySQL gives up on the cursor and the connection is freed
+        //(the driver's default is 600)
+        dataSource.addConnectionProperty("netTimeoutForStreamingResults", "30");
+        return dataSource;
+    }
+}
@@ -0,0 +1,47 @@
+package org.yearup.configurations;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+
+@Configuration
+public class JacksonConfig {
+    //lets a fields= projection filter Product properties; without one every property is written
+    @JsonFilter(ProductFields.FILTER_ID)
+    private interface ProductFilterMixIn {
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productFieldsFilter() {
+        return builder -> builder
+                .mixIn(Product.class, ProductFilterMixIn.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    /*
+     * Binary JSON for internal services and native clients: responses are sent as CBOR or Smile when the
+     * Accept header asks for application/cbor or application/x-jackson-smile, and request bodies in either
+     * format are read. Both mappers come from Boot's builder so they share the JSON mapper's settings
+     * (including the fields= filter). They replace Spring's own binary converters, which sit after JSON,
+     * so JSON stays the default.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,24 @@
+package org.yearup.configurations;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.yearup.web.CatalogEtagInterceptor;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    private final CatalogEtagInterceptor catalogEtagInterceptor;
+
+    @Autowired
+    public WebConfig(CatalogEtagInterceptor catalogEtagInterceptor) {
+        this.catalogEtagInterceptor = catalogEtagInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        //catalog reads can be revalidated with If-None-Match
+        registry.addInterceptor(catalogEtagInterceptor)
+                .addPathPatterns("/products", "/products/**", "/categories", "/categories/**");
+    }
+}
@@ -1,7 +1,10 @@
 package org.yearup.controllers;
 
 import javax.validation.Valid;
+import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -15,33 +18,46 @@ import org.springframework.web.server.ResponseStatusException;
 
 import org.yearup.models.Profile;
 import org.yearup.data.ProfileDao;
+import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
 import org.yearup.models.authentication.LoginDto;
 import org.yearup.models.authentication.LoginResponseDto;
 import org.yearup.models.authentication.RegisterUserDto;
 import org.yearup.models.User;
+import org.yearup.security.jwt.GuestCartTokenProvider;
 import org.yearup.security.jwt.JWTFilter;
 import org.yearup.security.jwt.TokenProvider;
 
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = GuestCartTokenProvider.HEADER)
 @PreAuthorize("permitAll()")
 public class AuthenticationController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationController.class);
+
     private final TokenProvider tokenProvider;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private UserDao userDao;
     private ProfileDao profileDao;
+    private ShoppingCartDao shoppingCartDao;
+    private GuestCartTokenProvider guestCartTokenProvider;
 
-    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao, ProfileDao profileDao) {
+    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao, ProfileDao profileDao,
+                                    ShoppingCartDao shoppingCartDao, GuestCartTokenProvider guestCartTokenProvider) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDao = userDao;
         this.profileDao = profileDao;
+        this.shoppingCartDao = shoppingCartDao;
+        this.guestCartTokenProvider = guestCartTokenProvider;
     }
 
+    // an X-Guest-Cart token sent along (see GuestCartController) is merged into the user's cart,
+    // after which the client can drop it. if the merge fails the login still goes through, and the
+    // response hands the token back in X-Guest-Cart: the client keeps it and sends it with its next login
     @RequestMapping(value = "/login", method = RequestMethod.POST)
-    public ResponseEntity<LoginResponseDto> login(@Valid @RequestBody LoginDto loginDto) {
+    public ResponseEntity<LoginResponseDto> login(@Valid @RequestBody LoginDto loginDto,
+                                                  @RequestHeader(name = GuestCartTokenProvider.HEADER, required = false) String guestCart) {
 
         UsernamePasswordAuthenticationToken authenticationToken =
                 new UsernamePasswordAuthenticationToken(loginDto.getUsername(), loginDto.getPassword());
@@ -58,6 +74,9 @@ public class AuthenticationController {
 
             HttpHeaders httpHeaders = new HttpHeaders();
             httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+
+            if (!mergeGuestCart(guestCart, user.getId()))
+                httpHeaders.add(GuestCartTokenProvider.HEADER, guestCart);
             return new ResponseEntity<>(new LoginResponseDto(jwt, user), httpHeaders, HttpStatus.OK);
         }
         catch(Exception ex)
@@ -66,6 +85,24 @@ public class AuthenticationController {
         }
     }
 
+    //false if there was a guest cart and it couldn't be merged
+    private boolean mergeGuestCart(String guestCart, int userId) {
+        Map<Integer, Integer> guestQuantities = guestCartTokenProvider.getQuantities(guestCart);
+        if (guestQuantities.isEmpty())
+            return true;
+
+        try
+        {
+            shoppingCartDao.mergeCart(guestQuantities, userId);
+            return true;
+        }
+        catch (RuntimeException ex)
+        {
+            logger.error("Merging the guest cart of user " + userId + " failed, the client keeps it", ex);
+            return false;
+        }
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(value = "/register", method = RequestMethod.POST)
     public ResponseEntity<User> register(@Valid @RequestBody RegisterUserDto newUser) {
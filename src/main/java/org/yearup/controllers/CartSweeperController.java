@@ -0,0 +1,35 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.cart.AbandonedCartSweeper;
+import org.yearup.data.cart.SweeperStats;
+
+//the abandoned cart sweeper's counters, for admins: GET /admin/cart-sweeper
+@RestController
+@PreAuthorize("hasRole('ROLE_ADMIN')")
+@RequestMapping("/admin/cart-sweeper")
+@CrossOrigin
+public class CartSweeperController {
+
+    //only there when cart.sweeper.enabled=true
+    private final ObjectProvider<AbandonedCartSweeper> sweeper;
+
+    @Autowired
+    public CartSweeperController(ObjectProvider<AbandonedCartSweeper> sweeper) {
+        this.sweeper = sweeper;
+    }
+
+    @GetMapping("")
+    public SweeperStats getStats() {
+        AbandonedCartSweeper current = sweeper.getIfAvailable();
+        if(current == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "the cart sweeper is not enabled");
+
+        return current.getStats();
+    }
+}
@@ -2,12 +2,21 @@ package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductCursor;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductSort;
 import org.yearup.models.Category;
 import org.yearup.models.Product;
+import org.yearup.models.ProductPage;
+import org.yearup.web.ProductStreamWriter;
 
 import java.util.List;
 
@@ -18,11 +27,13 @@ public class CategoriesController
 {
     private CategoryDao categoryDao;
     private ProductDao productDao;
+    private ProductStreamWriter streamWriter;
 
     @Autowired
-    public CategoriesController(CategoryDao catDao, ProductDao prodDao){
+    public CategoriesController(CategoryDao catDao, ProductDao prodDao, ProductStreamWriter streamWriter){
         this.categoryDao = catDao;
         this.productDao = prodDao;
+        this.streamWriter = streamWriter;
     }
 
     @GetMapping("")
@@ -35,7 +46,12 @@ public class CategoriesController
     @GetMapping("{id}")
     @PreAuthorize("permitAll()")
     public Category getById(@PathVariable int id) {
-        return categoryDao.getById(id);
+        Category category = categoryDao.getById(id);
+
+        if (category == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+
+        return category;
     }
 
     //Allow user to search for products by categoryId
@@ -46,6 +62,38 @@ public class CategoriesController
         return productDao.listByCategoryId(id);
     }
 
+    //a category's products written out row by row as a JSON array: /categories/1/products?stream=true
+    @GetMapping(value = "{id}/products", params = {"stream=true", "!limit"})
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> getProductsStreamById(@PathVariable int id) {
+        return streamWriter.jsonArray(consumer -> productDao.streamByCategoryId(id, consumer));
+    }
+
+    //a category's products, one per line for Accept: application/x-ndjson (*/* gets JSON)
+    @GetMapping(value = "{id}/products", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> getProductsNdjsonById(@PathVariable int id) {
+        return streamWriter.ndjson(consumer -> productDao.streamByCategoryId(id, consumer));
+    }
+
+    //one page of a category's products: /categories/1/products?limit=24&sort=name&after=<nextCursor>
+    @GetMapping(value = "{id}/products", params = "limit")
+    @PreAuthorize("permitAll()")
+    public ProductPage getProductsPageById(@PathVariable int id,
+                                           @RequestParam(name = "sort", required = false) String sort,
+                                           @RequestParam(name = "after", required = false) String after,
+                                           @RequestParam(name = "limit") int limit) {
+        if (limit < 1 || limit > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductPage.MAX_LIMIT);
+
+        try {
+            ProductSort productSort = ProductSort.fromParameter(sort);
+            return productDao.listByCategoryIdPage(id, productSort, ProductCursor.decode(after, productSort), limit);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
+
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void addCategory(@RequestBody Category category){
@@ -0,0 +1,97 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+import org.yearup.security.jwt.GuestCartTokenProvider;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+// the cart of a shopper who isn't logged in. it lives in the X-Guest-Cart token, not in the database:
+// every change answers with the new cart and a new token in X-Guest-Cart, which the client sends
+// with its next request. sending it to POST /login as well merges it into the user's cart
+@RestController
+@PreAuthorize("permitAll()")
+@RequestMapping("cart/guest")
+@CrossOrigin(exposedHeaders = GuestCartTokenProvider.HEADER)
+
+public class GuestCartController
+{
+    private ProductDao productDao;
+    private GuestCartTokenProvider guestCartTokenProvider;
+
+    @Autowired
+    public GuestCartController(ProductDao productDao, GuestCartTokenProvider guestCartTokenProvider) {
+        this.productDao = productDao;
+        this.guestCartTokenProvider = guestCartTokenProvider;
+    }
+
+    @GetMapping("")
+    public ShoppingCart getCart(@RequestHeader(name = GuestCartTokenProvider.HEADER, required = false) String token) {
+        return toCart(guestCartTokenProvider.getQuantities(token));
+    }
+
+    // https://localhost:8080/cart/guest/products/15 adds one of product 15
+    @PostMapping("/products/{id}")
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public ShoppingCart addToCart(@PathVariable int id,
+                                  @RequestHeader(name = GuestCartTokenProvider.HEADER, required = false) String token,
+                                  HttpServletResponse response){
+        Map<Integer, Integer> quantities = guestCartTokenProvider.getQuantities(token);
+
+        //like the cart of a user, an unknown product leaves the cart as it is
+        if (productDao.getById(id) != null) {
+            if (!quantities.containsKey(id) && quantities.size() >= GuestCartTokenProvider.MAX_LINES)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "a guest cart holds up to " + GuestCartTokenProvider.MAX_LINES + " products, log in for more");
+            quantities.merge(id, 1, Integer::sum);
+        }
+        return tokened(quantities, response);
+    }
+
+    // the BODY is a ShoppingCartItem - quantity is the only value that is used, 0 removes the product
+    @PutMapping("/products/{id}")
+    public ShoppingCart updateQuantity(@PathVariable int id, @RequestBody ShoppingCartItem item,
+                                       @RequestHeader(name = GuestCartTokenProvider.HEADER, required = false) String token,
+                                       HttpServletResponse response){
+        Map<Integer, Integer> quantities = guestCartTokenProvider.getQuantities(token);
+
+        //only products already in the cart are changed
+        if (quantities.containsKey(id)) {
+            if (item.getQuantity() > 0)
+                quantities.put(id, item.getQuantity());
+            else
+                quantities.remove(id);
+        }
+        return tokened(quantities, response);
+    }
+
+    @DeleteMapping("")
+    public ShoppingCart clearCart(HttpServletResponse response){
+        return tokened(Map.of(), response);
+    }
+
+    private ShoppingCart tokened(Map<Integer, Integer> quantities, HttpServletResponse response) {
+        response.setHeader(GuestCartTokenProvider.HEADER, guestCartTokenProvider.createToken(quantities));
+        return toCart(quantities);
+    }
+
+    //the products come from the catalog, products taken out of it since drop out of the cart
+    private ShoppingCart toCart(Map<Integer, Integer> quantities) {
+        ShoppingCart cart = new ShoppingCart();
+        if (quantities.isEmpty())
+            return cart;
+
+        for (Product product : productDao.getByIds(quantities.keySet())) {
+            cart.add(new ShoppingCartItem(product, 0, quantities.get(product.getProductId())));
+        }
+        return cart;
+    }
+}
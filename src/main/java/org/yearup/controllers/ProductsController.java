@@ -2,13 +2,31 @@ package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
 import org.yearup.models.Product;
 import org.yearup.data.ProductDao;
+import org.yearup.models.FacetCounts;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductPage;
+import org.yearup.models.ProductSearchResult;
+import org.yearup.models.ProductSuggestion;
+import org.yearup.search.FeaturedProducts;
+import org.yearup.search.ProductBitmapIndex;
+import org.yearup.search.ProductFacets;
+import org.yearup.search.ProductSearchIndex;
+import org.yearup.search.ProductTypeahead;
+import org.yearup.web.ProductStreamWriter;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -16,10 +34,24 @@ import java.util.List;
 @CrossOrigin
 public class ProductsController {
     private ProductDao productDao;
+    private ProductStreamWriter streamWriter;
+    private ProductSearchIndex searchIndex;
+    private ProductTypeahead typeahead;
+    private ProductFacets productFacets;
+    private ProductBitmapIndex bitmapIndex;
+    private FeaturedProducts featuredProducts;
 
     @Autowired
-    public ProductsController(ProductDao productDao) {
+    public ProductsController(ProductDao productDao, ProductStreamWriter streamWriter, ProductSearchIndex searchIndex,
+                              ProductTypeahead typeahead, ProductFacets productFacets, ProductBitmapIndex bitmapIndex,
+                              FeaturedProducts featuredProducts) {
         this.productDao = productDao;
+        this.streamWriter = streamWriter;
+        this.searchIndex = searchIndex;
+        this.typeahead = typeahead;
+        this.productFacets = productFacets;
+        this.bitmapIndex = bitmapIndex;
+        this.featuredProducts = featuredProducts;
     }
 
     @GetMapping("")
@@ -27,10 +59,200 @@ public class ProductsController {
     public List<Product> search(@RequestParam(name = "cat", required = false) Integer categoryId,
                                 @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
                                 @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
-                                @RequestParam(name = "subCategory", required = false) String subCategory
+                                @RequestParam(name = "subCategory", required = false) List<String> subCategories,
+                                @RequestParam(name = "inStock", required = false) Boolean inStock,
+                                @RequestParam(name = "featured", required = false) Boolean featured,
+                                @RequestParam(name = "fields", required = false) String fields
     ) {
+        ProductFields projection = fields(fields);
+
+        try {
+            return filter(categoryId, minPrice, maxPrice, subCategories, inStock, featured, projection);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //several products in one call, e.g. the cart page or a wishlist: /products?ids=1,2,3
+    @GetMapping(value = "", params = "ids")
+    @PreAuthorize("permitAll()")
+    public List<Product> getByIds(@RequestParam(name = "ids") List<Integer> ids) {
+        if (ids.size() > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + ProductPage.MAX_LIMIT + " ids per request");
+
+        try {
+            return productDao.getByIds(ids);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //search results plus facet counts for them: /products?cat=1&facets=true
+    @GetMapping(value = "", params = {"facets=true", "!limit", "!stream"})
+    @PreAuthorize("permitAll()")
+    public ProductSearchResult searchWithFacets(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                                @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                                                @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                                                @RequestParam(name = "subCategory", required = false) List<String> subCategories,
+                                                @RequestParam(name = "inStock", required = false) Boolean inStock,
+                                                @RequestParam(name = "featured", required = false) Boolean featured
+    ) {
+        try {
+            List<Product> products = filter(categoryId, minPrice, maxPrice, subCategories, inStock, featured, ProductFields.ALL);
+            FacetCounts facets = isUnfiltered(categoryId, minPrice, maxPrice, subCategories, inStock, featured)
+                    ? productFacets.countAll()
+                    : productFacets.count(products);
+
+            return new ProductSearchResult(products, facets);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //only the facet counts for a search: /products/facets?minPrice=20
+    @GetMapping("facets")
+    @PreAuthorize("permitAll()")
+    public FacetCounts facets(@RequestParam(name = "cat", required = false) Integer categoryId,
+                              @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                              @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                              @RequestParam(name = "subCategory", required = false) List<String> subCategories,
+                              @RequestParam(name = "inStock", required = false) Boolean inStock,
+                              @RequestParam(name = "featured", required = false) Boolean featured
+    ) {
+        //the whole catalog's counts are kept up to date, so they need no search at all
+        if (isUnfiltered(categoryId, minPrice, maxPrice, subCategories, inStock, featured))
+            return productFacets.countAll();
+
+        try {
+            return productFacets.count(filter(categoryId, minPrice, maxPrice, subCategories, inStock, featured, ProductFields.ALL));
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //same filters as search, written out row by row as a JSON array: /products?stream=true
+    @GetMapping(value = "", params = {"stream=true", "!limit"})
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> searchStream(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                                              @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                                                              @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                                                              @RequestParam(name = "subCategory", required = false) String subCategory
+    ) {
+        return streamWriter.jsonArray(consumer -> productDao.streamSearch(categoryId, minPrice, maxPrice, subCategory, consumer));
+    }
+
+    //same filters as search, one product per line for Accept: application/x-ndjson.
+    //it has no params condition, so it only wins over search when NDJSON is asked for by name (*/* gets JSON)
+    @GetMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> searchNdjson(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                                              @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                                                              @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                                                              @RequestParam(name = "subCategory", required = false) List<String> subCategories,
+                                                              @RequestParam(name = "inStock", required = false) Boolean inStock,
+                                                              @RequestParam(name = "featured", required = false) Boolean featured,
+                                                              @RequestParam(name = "fields", required = false) String fields
+    ) {
+        ProductFields projection = fields(fields);
+
+        //the bitmap filters are answered in memory, the rows are streamed from MySQL otherwise
+        if (needsBitmaps(subCategories, inStock, featured)) {
+            List<Product> products = bitmapSearch(categoryId, minPrice, maxPrice, subCategories, inStock, featured);
+            return streamWriter.ndjson(consumer -> {
+                for (Product product : products)
+                    consumer.accept(product);
+            }, projection);
+        }
+
+        String subCategory = subCategories == null || subCategories.isEmpty() ? null : subCategories.get(0);
+        return streamWriter.ndjson(consumer -> productDao.streamSearch(categoryId, minPrice, maxPrice, subCategory, consumer), projection);
+    }
+
+    //same filters as search, one page at a time: /products?limit=24&sort=price_asc&after=<nextCursor>
+    @GetMapping(value = "", params = "limit")
+    @PreAuthorize("permitAll()")
+    public ProductPage searchPage(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                  @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                                  @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                                  @RequestParam(name = "subCategory", required = false) String subCategory,
+                                  @RequestParam(name = "sort", required = false) String sort,
+                                  @RequestParam(name = "after", required = false) String after,
+                                  @RequestParam(name = "limit") int limit
+    ) {
+        if (limit < 1 || limit > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductPage.MAX_LIMIT);
+
+        ProductSort productSort;
+        ProductCursor cursor;
+        try {
+            productSort = ProductSort.fromParameter(sort);
+            cursor = ProductCursor.decode(after, productSort);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+
         try {
-            return productDao.search(categoryId, minPrice, maxPrice, subCategory);
+            return productDao.searchPage(categoryId, minPrice, maxPrice, subCategory, productSort, cursor, limit);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //full-text search over name, subcategory and description, best match first: /products/search?q=zelda
+    @GetMapping("search")
+    @PreAuthorize("permitAll()")
+    public List<Product> textSearch(@RequestParam(name = "q") String query,
+                                    @RequestParam(name = "limit", defaultValue = "20") int limit
+    ) {
+        if (limit < 1 || limit > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductPage.MAX_LIMIT);
+
+        try {
+            return productDao.getByIds(searchIndex.search(query, limit));
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    //search box autocomplete, answered from memory: /products/suggest?q=zel&limit=8
+    @GetMapping("suggest")
+    @PreAuthorize("permitAll()")
+    public List<ProductSuggestion> suggest(@RequestParam(name = "q") String prefix,
+                                           @RequestParam(name = "limit", defaultValue = "8") int limit
+    ) {
+        if (limit < 1 || limit > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductPage.MAX_LIMIT);
+
+        return typeahead.suggest(prefix, limit);
+    }
+
+    //home page picks, ranked ahead of time and answered from memory: /products/featured?cat=1&limit=12
+    @GetMapping("featured")
+    @PreAuthorize("permitAll()")
+    public List<Product> featured(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                  @RequestParam(name = "limit", defaultValue = "12") int limit
+    ) {
+        if (limit < 1 || limit > ProductPage.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductPage.MAX_LIMIT);
+
+        return featuredProducts.top(categoryId, limit);
+    }
+
+    //delta sync: what changed after the version a client last saw, deletions as tombstones
+    //  /products/changes?since=<version from the last call>, repeated while hasMore is true
+    //stock taken at checkout shows up here too, up to catalog.changes.stock-flush-ms later (see StockChangeFlusher)
+    @GetMapping("changes")
+    @PreAuthorize("permitAll()")
+    public ProductChanges changes(@RequestParam(name = "since", defaultValue = "0") long since,
+                                  @RequestParam(name = "limit", defaultValue = "500") int limit
+    ) {
+        if (since < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must not be negative");
+        if (limit < 1 || limit > ProductChanges.MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductChanges.MAX_LIMIT);
+
+        try {
+            return productDao.getChanges(since, limit);
         } catch (Exception ex) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
         }
@@ -91,4 +313,60 @@ public class ProductsController {
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
             }
         }
+
+        //the filters of search, searchWithFacets and facets. several subcategories (subCategory=a,b),
+        //inStock and featured are answered from the bitmap index, the rest by the product dao
+        private List<Product> filter(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                     List<String> subCategories, Boolean inStock, Boolean featured, ProductFields projection)
+        {
+            if (needsBitmaps(subCategories, inStock, featured))
+                return bitmapSearch(categoryId, minPrice, maxPrice, subCategories, inStock, featured);
+
+            String subCategory = subCategories == null || subCategories.isEmpty() ? null : subCategories.get(0);
+            return productDao.search(categoryId, minPrice, maxPrice, subCategory, projection);
+        }
+
+        //filters only the bitmap index can answer
+        private static boolean needsBitmaps(List<String> subCategories, Boolean inStock, Boolean featured)
+        {
+            return inStock != null || featured != null || (subCategories != null && subCategories.size() > 1);
+        }
+
+        //the bitmaps narrow the candidates down, the price range is checked on what is left
+        private List<Product> bitmapSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                           List<String> subCategories, Boolean inStock, Boolean featured)
+        {
+            List<Integer> productIds = new ArrayList<>();
+            for (int productId : bitmapIndex.search(categoryId, subCategories, inStock, featured)) {
+                productIds.add(productId);
+            }
+
+            List<Product> products = new ArrayList<>();
+            for (Product product : productDao.getByIds(productIds)) {
+                if (minPrice != null && (product.getPrice() == null || product.getPrice().compareTo(minPrice) < 0))
+                    continue;
+                if (maxPrice != null && (product.getPrice() == null || product.getPrice().compareTo(maxPrice) > 0))
+                    continue;
+
+                products.add(product);
+            }
+            return products;
+        }
+
+        //fields=name,price,imageUrl; ProductFieldsAdvice narrows the JSON the same way
+        private static ProductFields fields(String fields)
+        {
+            try {
+                return ProductFields.fromParameter(fields);
+            } catch (IllegalArgumentException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+            }
+        }
+
+        private static boolean isUnfiltered(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                            List<String> subCategories, Boolean inStock, Boolean featured)
+        {
+            return categoryId == null && minPrice == null && maxPrice == null && inStock == null && featured == null
+                    && (subCategories == null || subCategories.stream().allMatch(subCategory -> subCategory == null || subCategory.isBlank()));
+        }
     }
@@ -1,16 +1,21 @@
 package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.*;
 import org.yearup.models.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.security.Principal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 // convert this class to a REST controller
@@ -44,10 +49,19 @@ public class ShoppingCartController
 
 
 
+    // every cart response carries the cart's version as its ETag. sending it back as If-Match on a change
+    // makes the change apply only if nobody else changed the cart in between - otherwise the answer is
+    // 412 with the current cart and its ETag, and the client re-applies its change to that and retries.
+    // without If-Match a change applies to whatever is in the cart (last write wins)
+
     @GetMapping("")
     // each method in this controller requires a Principal object as a parameter
-    public ShoppingCart getCart(Principal principal)
+    // fields=name,price,imageUrl narrows the product details read and returned for each item
+    public ShoppingCart getCart(Principal principal, @RequestParam(name = "fields", required = false) String fields,
+                                HttpServletResponse response)
     {
+        ProductFields projection = fields(fields);
+
         try
         {
             // get the currently logged in username
@@ -57,7 +71,7 @@ public class ShoppingCartController
             int userId = user.getId();
 
             // use the shoppingcartDao to get all items in the cart and return the cart
-            return shoppingCartDao.getByUserId(userId);
+            return tagged(shoppingCartDao.getByUserId(userId, projection), response);
         }
         catch(Exception e)
         {
@@ -70,13 +84,18 @@ public class ShoppingCartController
     @PostMapping("/products/{id}")
     @ResponseStatus(value = HttpStatus.CREATED)
 
-    public ShoppingCart addToCart(Principal principal, @PathVariable int id){
+    public ShoppingCart addToCart(Principal principal, @PathVariable int id,
+                                  @RequestParam(name = "fields", required = false) String fields,
+                                  @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                  HttpServletResponse response){
+        ProductFields projection = fields(fields);
+        Long expectedVersion = expectedVersion(ifMatch);
         String userName = principal.getName();
         User user = userDao.getByUserName(userName);
         int userId = user.getId();
 
-        shoppingCartDao.addToCart(id, userId);
-        return shoppingCartDao.getByUserId(userId);
+        //the dao hands back the cart it has just changed, no second read needed
+        return tagged(shoppingCartDao.addToCart(id, userId, expectedVersion, projection), response);
     }
 
 
@@ -86,13 +105,46 @@ public class ShoppingCartController
     // the BODY should be a ShoppingCartItem - quantity is the only value that will be updated
 
     @PutMapping("/products/{id}")
-    public ShoppingCart updateQuantity(Principal principal, @PathVariable int id, @RequestBody ShoppingCartItem item){
+    public ShoppingCart updateQuantity(Principal principal, @PathVariable int id, @RequestBody ShoppingCartItem item,
+                                       @RequestParam(name = "fields", required = false) String fields,
+                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       HttpServletResponse response){
+        ProductFields projection = fields(fields);
+        Long expectedVersion = expectedVersion(ifMatch);
+        String userName = principal.getName();
+        User user = userDao.getByUserName(userName);
+        int userId = user.getId();
+
+        return tagged(shoppingCartDao.editCart(id, userId, item.getQuantity(), expectedVersion, projection), response);
+    }
+
+
+    // PUT https://localhost:8080/cart applies many quantity changes at once, e.g.
+    // [{"productId": 15, "quantity": 2}, {"productId": 7, "quantity": 0}] - 0 removes the product,
+    // products that aren't in the cart are left out, and the cart is returned once
+    @PutMapping("")
+    public ShoppingCart updateCart(Principal principal, @RequestBody List<CartLineUpdate> lines,
+                                   @RequestParam(name = "fields", required = false) String fields,
+                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                   HttpServletResponse response){
+        ProductFields projection = fields(fields);
+        Long expectedVersion = expectedVersion(ifMatch);
+        if (lines == null || lines.isEmpty() || lines.size() > CartLineUpdate.MAX_LINES)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "between 1 and " + CartLineUpdate.MAX_LINES + " lines per request");
+
+        //a product listed twice takes its last quantity
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (CartLineUpdate line : lines) {
+            if (line == null)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "lines can't be null");
+            quantities.put(line.getProductId(), line.getQuantity());
+        }
+
         String userName = principal.getName();
         User user = userDao.getByUserName(userName);
         int userId = user.getId();
 
-        shoppingCartDao.editCart(id, userId, item.getQuantity());
-        return shoppingCartDao.getByUserId(userId);
+        return tagged(shoppingCartDao.editCart(quantities, userId, expectedVersion, projection), response);
     }
 
 
@@ -122,4 +174,45 @@ public class ShoppingCartController
         //return the receipt as API response
         return output;
     }
+
+    // the If-Match didn't hold: hand back the cart as it is now, so the client can retry against it
+    @ExceptionHandler(CartVersionConflictException.class)
+    public ResponseEntity<ShoppingCart> versionConflict(CartVersionConflictException ex) {
+        ShoppingCart cart = shoppingCartDao.getByUserId(ex.getUserId());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(etag(cart))
+                .body(cart);
+    }
+
+    // "12" (or W/"12") -> 12, no header or * -> null, a change that applies whatever the version
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return null;
+
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/"))
+            tag = tag.substring(2);
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "If-Match must be an ETag from /cart");
+        }
+    }
+
+    private static ShoppingCart tagged(ShoppingCart cart, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.ETAG, etag(cart));
+        return cart;
+    }
+
+    private static String etag(ShoppingCart cart) {
+        return "\"" + cart.getVersion() + "\"";
+    }
+
+    private static ProductFields fields(String fields) {
+        try {
+            return ProductFields.fromParameter(fields);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
     }
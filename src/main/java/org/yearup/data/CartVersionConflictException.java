@@ -0,0 +1,18 @@
+package org.yearup.data;
+
+//a conditional cart change found the cart at a newer version than the caller had seen (If-Match failed)
+public class CartVersionConflictException extends RuntimeException
+{
+    private final int userId;
+
+    public CartVersionConflictException(int userId, long expectedVersion)
+    {
+        super("The cart of user " + userId + " is no longer at version " + expectedVersion);
+        this.userId = userId;
+    }
+
+    public int getUserId()
+    {
+        return userId;
+    }
+}
@@ -4,6 +4,8 @@ import org.yearup.models.Profile;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
 
+import java.util.Map;
+
 public interface OrderDao {
 
     int createOrder(Profile profile, ShoppingCart cart);
@@ -11,4 +13,7 @@ public interface OrderDao {
     void addOrderToDatabase(int orderId, ShoppingCartItem item);
 
     void updateStock(int productId, int quantity);
+
+    //product id -> total quantity ever ordered
+    Map<Integer, Integer> getUnitsSoldByProduct();
 }
\ No newline at end of file
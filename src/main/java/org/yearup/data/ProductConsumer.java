@@ -0,0 +1,12 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.io.IOException;
+
+//receives products one at a time from the streaming dao methods (e.g. to write them to a response)
+@FunctionalInterface
+public interface ProductConsumer
+{
+    void accept(Product product) throws IOException;
+}
@@ -0,0 +1,134 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of the last product on a page, handed to clients as an opaque "after" token.
+ * <p>
+ * The cursor carries the sort key values of that product (not just its id), so the next page can be
+ * found with an index seek even if the product has since been changed or deleted.
+ */
+public final class ProductCursor
+{
+    private final ProductSort sort;
+    private final int productId;
+    private final BigDecimal price;
+    private final String name;
+
+    private ProductCursor(ProductSort sort, int productId, BigDecimal price, String name)
+    {
+        this.sort = sort;
+        this.productId = productId;
+        this.price = price;
+        this.name = name;
+    }
+
+    public static ProductCursor after(ProductSort sort, Product product)
+    {
+        return new ProductCursor(sort, product.getProductId(), product.getPrice(), product.getName());
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public BigDecimal getPrice()
+    {
+        return price;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    //the value of the sort column for the product this cursor points at
+    public Object getSortValue()
+    {
+        switch (sort)
+        {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                return price;
+            case NAME:
+                return name;
+            default:
+                return productId;
+        }
+    }
+
+    //a product holding just the sort key values, used to seek into sorted in-memory indexes
+    public Product toProbe()
+    {
+        Product probe = new Product();
+        probe.setProductId(productId);
+        probe.setPrice(price);
+        probe.setName(name);
+        return probe;
+    }
+
+    public String encode()
+    {
+        //only the value the sort order needs is written, the id is always the tie breaker
+        String key;
+        switch (sort)
+        {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                key = price.toPlainString();
+                break;
+            case NAME:
+                key = name;
+                break;
+            default:
+                key = "";
+        }
+
+        String raw = sort.name() + "|" + productId + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //returns null for an empty token, throws IllegalArgumentException for a token that does not match the sort
+    public static ProductCursor decode(String token, ProductSort sort)
+    {
+        if (token == null || token.isBlank())
+            return null;
+
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+
+            if (parts.length != 3 || !parts[0].equals(sort.name()))
+                throw new IllegalArgumentException("Cursor does not belong to sort order " + sort);
+
+            int productId = Integer.parseInt(parts[1]);
+
+            switch (sort)
+            {
+                case PRICE_ASC:
+                case PRICE_DESC:
+                    return new ProductCursor(sort, productId, new BigDecimal(parts[2]), null);
+                case NAME:
+                    return new ProductCursor(sort, productId, null, parts[2]);
+                default:
+                    return new ProductCursor(sort, productId, null, null);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            //also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package org.yearup.data;
 
 import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductPage;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductDao
 {
     List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory);
+    // the same search, reading only the given fields where that saves work (unselected fields may be null)
+    List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory, ProductFields fields);
     List<Product> listByCategoryId(int categoryId);
+    // keyset paged versions of search / listByCategoryId, after is null for the first page
+    ProductPage searchPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory, ProductSort sort, ProductCursor after, int limit);
+    ProductPage listByCategoryIdPage(int categoryId, ProductSort sort, ProductCursor after, int limit);
+    // streaming versions of search / listByCategoryId, each product is handed to the consumer as it is read
+    void streamSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory, ProductConsumer consumer) throws IOException;
+    void streamByCategoryId(int categoryId, ProductConsumer consumer) throws IOException;
     Product getById(int productId);
+    // the products with these ids, each once and in the order the ids are given; unknown ids are left out
+    List<Product> getByIds(Collection<Integer> productIds);
     Product create(Product product);
     void update(int productId, Product product);
     void delete(int productId);
+    // re-reads products whose rows were changed outside this dao (e.g. stock taken at checkout), all in one go
+    void refresh(Collection<Integer> productIds);
+    // products created, updated or deleted after change log version since, oldest change first
+    ProductChanges getChanges(long since, int limit);
 }
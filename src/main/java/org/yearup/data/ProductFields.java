@@ -0,0 +1,225 @@
+package org.yearup.data;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.yearup.models.Product;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * The product fields a client asked for with fields=name,price,imageUrl.
+ * <p>
+ * A projection narrows both the columns read from MySQL and the properties written to JSON, so list
+ * views don't pay for the description text they never show. productId is always included.
+ * <p>
+ * There are only 256 possible projections, so every one of them (its column list, row mapper and
+ * JSON filter) is built once up front and a request only has to look its projection up.
+ */
+public final class ProductFields
+{
+    //the @JsonFilter id Product is serialized with (see JacksonConfig)
+    public static final String FILTER_ID = "productFields";
+
+    public enum Field
+    {
+        PRODUCT_ID("productId", "product_id"),
+        NAME("name", "name"),
+        PRICE("price", "price"),
+        CATEGORY_ID("categoryId", "category_id"),
+        DESCRIPTION("description", "description"),
+        SUB_CATEGORY("subCategory", "subcategory"),
+        STOCK("stock", "stock"),
+        FEATURED("featured", "featured"),
+        IMAGE_URL("imageUrl", "image_url");
+
+        private final String property;
+        private final String column;
+
+        Field(String property, String column)
+        {
+            this.property = property;
+            this.column = column;
+        }
+
+        public String getProperty()
+        {
+            return property;
+        }
+
+        public String getColumn()
+        {
+            return column;
+        }
+
+        private int bit()
+        {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final Map<String, Field> BY_PROPERTY = new HashMap<>();
+    private static final ProductFields[] BY_MASK = new ProductFields[1 << Field.values().length];
+
+    static
+    {
+        for (Field field : Field.values())
+        {
+            BY_PROPERTY.put(field.property.toLowerCase(Locale.ROOT), field);
+        }
+        //only the masks with productId in them are ever handed out
+        for (int mask = Field.PRODUCT_ID.bit(); mask < BY_MASK.length; mask += 2)
+        {
+            BY_MASK[mask] = new ProductFields(mask);
+        }
+    }
+
+    public static final ProductFields ALL = BY_MASK[BY_MASK.length - 1];
+
+    private final int mask;
+    private final Field[] fields;
+    private final String columns;
+    private final Filters filters;
+
+    private ProductFields(int mask)
+    {
+        this.mask = mask;
+
+        List<Field> selected = new ArrayList<>();
+        for (Field field : Field.values())
+        {
+            if ((mask & field.bit()) != 0)
+                selected.add(field);
+        }
+        this.fields = selected.toArray(new Field[0]);
+
+        StringJoiner columns = new StringJoiner(", ");
+        Set<String> properties = new HashSet<>();
+        for (Field field : fields)
+        {
+            columns.add(field.column);
+            properties.add(field.property);
+        }
+        this.columns = columns.toString();
+        this.filters = new Filters(this, properties);
+    }
+
+    //the JSON filter for one projection; serializers that don't go through bean properties read the projection back
+    public static final class Filters extends SimpleFilterProvider
+    {
+        private final ProductFields fields;
+
+        private Filters(ProductFields fields, Set<String> properties)
+        {
+            this.fields = fields;
+            addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(properties));
+        }
+
+        public ProductFields getFields()
+        {
+            return fields;
+        }
+    }
+
+    //the projection a serialization is running with, ALL when there is none
+    public static ProductFields of(FilterProvider filters)
+    {
+        return filters instanceof Filters ? ((Filters) filters).fields : ALL;
+    }
+
+    //accepts the request parameter form, e.g. "name,price,imageUrl"; null or blank means every field
+    public static ProductFields fromParameter(String value)
+    {
+        if (value == null || value.isBlank())
+            return ALL;
+
+        int mask = Field.PRODUCT_ID.bit();
+        for (String property : value.split(","))
+        {
+            if (property.isBlank())
+                continue;
+
+            Field field = BY_PROPERTY.get(property.trim().toLowerCase(Locale.ROOT));
+            if (field == null)
+                throw new IllegalArgumentException("Unknown product field: " + property.trim());
+            mask |= field.bit();
+        }
+        return BY_MASK[mask];
+    }
+
+    public boolean isAll()
+    {
+        return this == ALL;
+    }
+
+    public boolean contains(Field field)
+    {
+        return (mask & field.bit()) != 0;
+    }
+
+    //the same projection plus one more field, e.g. the price a cart total needs
+    public ProductFields with(Field field)
+    {
+        return BY_MASK[mask | field.bit()];
+    }
+
+    //the column list for SELECT, e.g. "product_id, name, price"
+    public String getColumns()
+    {
+        return columns;
+    }
+
+    //the JSON filter that writes only these fields
+    public Filters getFilters()
+    {
+        return filters;
+    }
+
+    //reads the projected columns of the current row; fields that were not selected stay null
+    public Product map(ResultSet row) throws SQLException
+    {
+        Product product = new Product();
+        for (Field field : fields)
+        {
+            switch (field)
+            {
+                case PRODUCT_ID:
+                    product.setProductId(row.getInt("product_id"));
+                    break;
+                case NAME:
+                    product.setName(row.getString("name"));
+                    break;
+                case PRICE:
+                    product.setPrice(row.getBigDecimal("price"));
+                    break;
+                case CATEGORY_ID:
+                    product.setCategoryId(row.getInt("category_id"));
+                    break;
+                case DESCRIPTION:
+                    product.setDescription(row.getString("description"));
+                    break;
+                case SUB_CATEGORY:
+                    product.setSubCategory(row.getString("subcategory"));
+                    break;
+                case STOCK:
+                    product.setStock(row.getInt("stock"));
+                    break;
+                case FEATURED:
+                    product.setFeatured(row.getBoolean("featured"));
+                    break;
+                case IMAGE_URL:
+                    product.setImageUrl(row.getString("image_url"));
+                    break;
+            }
+        }
+        return product;
+    }
+
+    @Override
+    public String toString()
+    {
+        return columns;
+    }
+}
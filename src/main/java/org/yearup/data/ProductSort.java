@@ -0,0 +1,52 @@
+package org.yearup.data;
+
+import java.util.Locale;
+
+/**
+ * The sort orders supported by paged product listings.
+ * Every order ends with product_id so that rows with equal prices or names still have a stable position,
+ * which is what makes keyset ("after this row") paging work.
+ */
+public enum ProductSort
+{
+    PRICE_ASC("price", false),
+    PRICE_DESC("price", true),
+    NAME("name", false),
+    NEWEST("product_id", true);
+
+    private final String column;
+    private final boolean descending;
+
+    ProductSort(String column, boolean descending)
+    {
+        this.column = column;
+        this.descending = descending;
+    }
+
+    //the column this order is based on (product_id is always added as the tie breaker)
+    public String getColumn()
+    {
+        return column;
+    }
+
+    public boolean isDescending()
+    {
+        return descending;
+    }
+
+    //accepts the request parameter form, e.g. "price_asc" or "newest"
+    public static ProductSort fromParameter(String value)
+    {
+        if (value == null || value.isBlank())
+            return NEWEST;
+
+        try
+        {
+            return ProductSort.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Unknown sort order: " + value);
+        }
+    }
+}
@@ -2,15 +2,32 @@ package org.yearup.data;
 
 import org.yearup.models.ShoppingCart;
 import java.util.List;
+import java.util.Map;
 
 public interface ShoppingCartDao
 {
     ShoppingCart getByUserId(int userId);
+    // the cart with only the given product fields read (price is always read, the totals need it)
+    ShoppingCart getByUserId(int userId, ProductFields fields);
     // add additional method signatures here
 
+    // every change moves the cart to a new version (ShoppingCart.getVersion, the ETag of /cart)
     void addToCart(int productID, int userID);
+    // the methods below return the cart as it is afterwards. with an expectedVersion they only
+    // apply if the cart is still at that version and throw CartVersionConflictException otherwise,
+    // null applies them whatever the version
+    // adds one of the product, in one round trip where the store allows it
+    ShoppingCart addToCart(int productID, int userID, Long expectedVersion, ProductFields fields);
 
     void clearCart(int userID);
 
     public void editCart(int productID, int userID,int quantity);
+    // sets the quantity (0 removes the product)
+    ShoppingCart editCart(int productID, int userID, int quantity, Long expectedVersion, ProductFields fields);
+    // applies the quantities of many lines at once (productId -> quantity, 0 removes it) as one change
+    ShoppingCart editCart(Map<Integer, Integer> quantities, int userID, Long expectedVersion, ProductFields fields);
+    // merges a guest cart (productId -> quantity) into the user's cart as one change: each product ends up
+    // with the larger of the two quantities, so merging the same guest cart twice changes nothing.
+    // products no longer in the catalog are left out. throws if the merge could not be stored
+    void mergeCart(Map<Integer, Integer> quantities, int userID);
 }
@@ -0,0 +1,58 @@
+package org.yearup.data.cache;
+
+//a point-in-time copy of a cache's counters
+public class CacheStats
+{
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maximumSize;
+
+    public CacheStats(long hits, long misses, long evictions, int size, int maximumSize)
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    public double getHitRate()
+    {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("hits=%d misses=%d evictions=%d size=%d/%d hitRate=%.3f",
+                hits, misses, evictions, size, maximumSize, getHitRate());
+    }
+}
@@ -0,0 +1,101 @@
+package org.yearup.data.cache;
+
+/**
+ * Approximate access counts for the TinyLFU admission filter: a count-min sketch of 4-bit counters.
+ * <p>
+ * Each key bumps one counter in each of 4 rows, its estimate is the smallest of them.
+ * Once as many accesses as 10x the cache size have been recorded every counter is halved,
+ * so past popularity fades and new hot keys can win admission. Not thread safe.
+ */
+final class FrequencySketch
+{
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    //16 counters of 4 bits per long
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize)
+    {
+        int size = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = 10 * Math.max(maximumSize, 1);
+    }
+
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < 4; row++)
+        {
+            frequency = Math.min(frequency, counter(hash, row));
+        }
+        return frequency;
+    }
+
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++)
+        {
+            added |= incrementAt(hash, row);
+        }
+
+        if (added && ++additions == sampleSize)
+            reset();
+    }
+
+    private int counter(int hash, int row)
+    {
+        int index = index(hash, row);
+        int offset = offset(hash, row);
+        return (int) ((table[index] >>> offset) & 0xf);
+    }
+
+    private boolean incrementAt(int hash, int row)
+    {
+        int index = index(hash, row);
+        int offset = offset(hash, row);
+        long counterMask = 0xfL << offset;
+        if ((table[index] & counterMask) == counterMask)
+            return false;
+
+        table[index] += 1L << offset;
+        return true;
+    }
+
+    //halves every counter
+    private void reset()
+    {
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row)
+    {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    //which of the 16 counters in the long, a different one per row
+    private static int offset(int hash, int row)
+    {
+        return (((hash >>> (row << 3)) & 3) + (row << 2)) << 2;
+    }
+
+    private static int spread(int hash)
+    {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
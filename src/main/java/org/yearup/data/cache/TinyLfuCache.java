@@ -0,0 +1,350 @@
+package org.yearup.data.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A bounded read-through cache with W-TinyLFU eviction.
+ * <p>
+ * New entries land in a small LRU window (1% of the size). When the window overflows, its oldest
+ * entry has to beat the main area's eviction victim on estimated access frequency to get in;
+ * otherwise it is the one evicted. The main area is a segmented LRU: entries hit a second time move
+ * from probation to the protected segment (80% of the main area). A burst of one-off reads (a crawler,
+ * a full export) therefore cannot flush the hot working set.
+ * <p>
+ * Lookups are lock free. The eviction policy is kept under a lock; reads that find it busy skip
+ * recording their access instead of waiting, the same trade-off Caffeine makes with its read buffers.
+ * Values are loaded outside the map, so a slow load (a database read) never holds up other keys.
+ * Two readers missing the same key may both load it; the first one stored is kept. A load that an
+ * {@link #invalidate} overlaps is returned to its caller but not kept. Null values are not cached.
+ */
+public class TinyLfuCache<K, V>
+{
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V>
+    {
+        private final K key;
+        private final V value;
+        private Segment segment;
+        private boolean linked;
+        private boolean removed;
+
+        private Node(K key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final int maximumSize;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+
+    //access order, oldest first; nodes use identity equality
+    private final LinkedHashSet<Node<K, V>> window = new LinkedHashSet<>();
+    private final LinkedHashSet<Node<K, V>> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<Node<K, V>> protectedSegment = new LinkedHashSet<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public TinyLfuCache(int maximumSize)
+    {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+
+        this.maximumSize = maximumSize;
+        this.maxWindow = Math.max(1, maximumSize / 100);
+        this.maxProtected = (int) ((maximumSize - maxWindow) * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader)
+    {
+        Node<K, V> node = data.get(key);
+        if (node != null)
+        {
+            hits.increment();
+            afterRead(node);
+            return node.value;
+        }
+
+        //compared after storing the value, so an invalidate that ran while it loaded drops it again
+        long invalidationsBefore = invalidations.get();
+        V value = loader.apply(key);
+        misses.increment();
+
+        if (value == null)
+        {
+            recordMissingKey(key);
+            return null;
+        }
+
+        Node<K, V> loaded = new Node<>(key, value);
+        Node<K, V> existing = data.putIfAbsent(key, loaded);
+        if (existing != null)
+        {
+            //another thread loaded it first
+            afterRead(existing);
+            return existing.value;
+        }
+
+        if (invalidations.get() != invalidationsBefore)
+        {
+            data.remove(key, loaded);
+            return value;
+        }
+
+        afterWrite(loaded);
+        return value;
+    }
+
+    public V getIfPresent(K key)
+    {
+        Node<K, V> node = data.get(key);
+        if (node == null)
+        {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    //adds or replaces an entry without going through a loader, e.g. after a bulk load
+    public void put(K key, V value)
+    {
+        Node<K, V> node = new Node<>(key, value);
+        Node<K, V> previous = data.put(key, node);
+
+        if (previous != null)
+        {
+            evictionLock.lock();
+            try
+            {
+                unlink(previous);
+            }
+            finally
+            {
+                evictionLock.unlock();
+            }
+        }
+        afterWrite(node);
+    }
+
+    public void invalidate(K key)
+    {
+        invalidations.incrementAndGet();
+        Node<K, V> node = data.remove(key);
+        if (node == null)
+            return;
+
+        evictionLock.lock();
+        try
+        {
+            unlink(node);
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll()
+    {
+        invalidations.incrementAndGet();
+        evictionLock.lock();
+        try
+        {
+            for (Node<K, V> node : data.values())
+            {
+                unlink(node);
+            }
+            data.clear();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size()
+    {
+        return data.size();
+    }
+
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    public CacheStats stats()
+    {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size(), maximumSize);
+    }
+
+    private void afterRead(Node<K, V> node)
+    {
+        //a busy policy only costs a lost frequency sample, never a blocked reader
+        if (!evictionLock.tryLock())
+            return;
+        try
+        {
+            sketch.increment(node.key);
+            if (node.linked)
+                onHit(node);
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    //keys that are asked for but don't exist still count towards frequency
+    private void recordMissingKey(K key)
+    {
+        if (!evictionLock.tryLock())
+            return;
+        try
+        {
+            sketch.increment(key);
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private void afterWrite(Node<K, V> node)
+    {
+        evictionLock.lock();
+        try
+        {
+            sketch.increment(node.key);
+
+            //invalidated between being loaded and getting here
+            if (node.removed || data.get(node.key) != node)
+                return;
+
+            node.segment = Segment.WINDOW;
+            node.linked = true;
+            window.add(node);
+
+            evict();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private void onHit(Node<K, V> node)
+    {
+        switch (node.segment)
+        {
+            case WINDOW:
+                moveToEnd(window, node);
+                break;
+            case PROBATION:
+                //a second hit earns a place in the protected segment
+                probation.remove(node);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.add(node);
+                demoteProtectedOverflow();
+                break;
+            case PROTECTED:
+                moveToEnd(protectedSegment, node);
+                break;
+        }
+    }
+
+    private void demoteProtectedOverflow()
+    {
+        while (protectedSegment.size() > maxProtected)
+        {
+            Node<K, V> demoted = removeFirst(protectedSegment);
+            demoted.segment = Segment.PROBATION;
+            probation.add(demoted);
+        }
+    }
+
+    private void evict()
+    {
+        while (window.size() > maxWindow)
+        {
+            //the window's oldest entry becomes a candidate for the main area
+            Node<K, V> candidate = removeFirst(window);
+            candidate.segment = Segment.PROBATION;
+            probation.add(candidate);
+
+            if (window.size() + probation.size() + protectedSegment.size() <= maximumSize)
+                continue;
+
+            Node<K, V> victim = probation.size() > 1 || protectedSegment.isEmpty()
+                    ? probation.iterator().next()
+                    : protectedSegment.iterator().next();
+
+            //TinyLFU admission: the candidate only stays if it has been used more often than the victim
+            if (victim != candidate && sketch.frequency(candidate.key) > sketch.frequency(victim.key))
+                evictNode(victim);
+            else
+                evictNode(candidate);
+        }
+    }
+
+    private void evictNode(Node<K, V> node)
+    {
+        unlink(node);
+        if (data.remove(node.key, node))
+            evictions.increment();
+    }
+
+    private void unlink(Node<K, V> node)
+    {
+        node.removed = true;
+        if (!node.linked)
+            return;
+
+        node.linked = false;
+        switch (node.segment)
+        {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node);
+                break;
+        }
+    }
+
+    private static <T> void moveToEnd(LinkedHashSet<T> segment, T node)
+    {
+        segment.remove(node);
+        segment.add(node);
+    }
+
+    private static <T> T removeFirst(LinkedHashSet<T> segment)
+    {
+        Iterator<T> iterator = segment.iterator();
+        T first = iterator.next();
+        iterator.remove();
+        return first;
+    }
+}
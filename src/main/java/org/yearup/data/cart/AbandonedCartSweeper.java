@@ -0,0 +1,151 @@
+package org.yearup.data.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao.IdleCarts;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes carts nobody has changed for cart.sweeper.ttl-hours (cart.sweeper.enabled=true), so
+ * shopping_cart only holds carts that are still in use.
+ * <p>
+ * Idle carts are found through the index on shopping_cart_versions.last_modified and deleted
+ * cart.sweeper.batch-size at a time, each batch in its own short transaction that locks only the carts
+ * it deletes. The sweeper sleeps cart.sweeper.pause-ms between batches so a large backlog is worked
+ * off without crowding out the requests, and starts over every cart.sweeper.interval-ms.
+ * <p>
+ * With the write-behind cart store, the TTL has to stay well above cart.write-behind.idle-ms, so that
+ * a cart is long out of memory before the sweeper may delete it.
+ * <p>
+ * Its counters ({@link #getStats()}) are served to admins at GET /admin/cart-sweeper.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.sweeper.enabled", havingValue = "true")
+public class AbandonedCartSweeper
+{
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    private final MySqlShoppingCartDao cartTable;
+    private final long idleSeconds;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final long intervalMillis;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong cartsReclaimed = new AtomicLong();
+    private final AtomicLong rowsReclaimed = new AtomicLong();
+    private volatile long lastRunMillis;
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public AbandonedCartSweeper(MySqlShoppingCartDao cartTable,
+                                @Value("${cart.sweeper.ttl-hours:720}") long ttlHours,
+                                @Value("${cart.sweeper.batch-size:500}") int batchSize,
+                                @Value("${cart.sweeper.pause-ms:100}") long pauseMillis,
+                                @Value("${cart.sweeper.interval-ms:3600000}") long intervalMillis)
+    {
+        this.cartTable = cartTable;
+        this.idleSeconds = TimeUnit.HOURS.toSeconds(ttlHours);
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "abandoned-cart-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        //interrupts a pause, the batch in flight still finishes
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Deletes idle carts batch by batch until a batch comes back short, and returns the counters
+     * afterwards. A batch that fails ends the run; its carts are found again on the next one.
+     */
+    public SweeperStats sweep()
+    {
+        long started = System.nanoTime();
+        long carts = 0;
+        long rows = 0;
+        runs.incrementAndGet();
+
+        try
+        {
+            while (true)
+            {
+                IdleCarts batch = cartTable.deleteIdleCarts(idleSeconds, batchSize);
+                batches.incrementAndGet();
+                cartsReclaimed.addAndGet(batch.carts());
+                rowsReclaimed.addAndGet(batch.rows());
+                carts += batch.carts();
+                rows += batch.rows();
+
+                //a short batch means there is nothing left that is old enough
+                if (batch.carts() < batchSize)
+                    break;
+
+                Thread.sleep(pauseMillis);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException e)
+        {
+            failures.incrementAndGet();
+            logger.error("Deleting abandoned carts failed, the rest are left for the next run", e);
+        }
+        finally
+        {
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+
+        if (carts > 0)
+            logger.info("Deleted {} abandoned carts ({} rows) in {} ms", carts, rows, lastRunMillis);
+        return getStats();
+    }
+
+    public SweeperStats getStats()
+    {
+        return new SweeperStats(runs.get(), failures.get(), batches.get(),
+                cartsReclaimed.get(), rowsReclaimed.get(), lastRunMillis);
+    }
+
+    private void sweepQuietly()
+    {
+        try
+        {
+            sweep();
+        }
+        catch (RuntimeException e)
+        {
+            //the scheduler would stop running a task that throws
+            logger.error("Abandoned cart sweep failed", e);
+        }
+    }
+}
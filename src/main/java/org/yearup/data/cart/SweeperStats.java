@@ -0,0 +1,60 @@
+package org.yearup.data.cart;
+
+//a point-in-time copy of the abandoned cart sweeper's counters
+public class SweeperStats
+{
+    private final long runs;
+    private final long failures;
+    private final long batches;
+    private final long cartsReclaimed;
+    private final long rowsReclaimed;
+    private final long lastRunMillis;
+
+    public SweeperStats(long runs, long failures, long batches, long cartsReclaimed, long rowsReclaimed, long lastRunMillis)
+    {
+        this.runs = runs;
+        this.failures = failures;
+        this.batches = batches;
+        this.cartsReclaimed = cartsReclaimed;
+        this.rowsReclaimed = rowsReclaimed;
+        this.lastRunMillis = lastRunMillis;
+    }
+
+    public long getRuns()
+    {
+        return runs;
+    }
+
+    public long getFailures()
+    {
+        return failures;
+    }
+
+    public long getBatches()
+    {
+        return batches;
+    }
+
+    public long getCartsReclaimed()
+    {
+        return cartsReclaimed;
+    }
+
+    public long getRowsReclaimed()
+    {
+        return rowsReclaimed;
+    }
+
+    //how long the last run took, pauses included
+    public long getLastRunMillis()
+    {
+        return lastRunMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("runs=%d failures=%d batches=%d cartsReclaimed=%d rowsReclaimed=%d lastRunMillis=%d",
+                runs, failures, batches, cartsReclaimed, rowsReclaimed, lastRunMillis);
+    }
+}
@@ -0,0 +1,435 @@
+package org.yearup.data.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CartVersionConflictException;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * ShoppingCartDao that keeps active carts in memory and writes them to shopping_cart behind the
+ * request (cart.write-behind.enabled=true).
+ * <p>
+ * Reads are answered from memory: quantities from the resident cart, product details from the
+ * {@link ProductDao} (the catalog, itself in memory). A cart is loaded from MySQL the first time it is used.
+ * Mutations only mark the (user, product) pairs they touch as dirty; a background flush every
+ * cart.write-behind.flush-interval-ms writes the latest quantity of every dirty pair in one transaction,
+ * so ten clicks on "add" become one row write. A flush also starts early once
+ * cart.write-behind.max-pending carts are waiting, and runs one last time on shutdown.
+ * <p>
+ * Crash safety: a flush that fails leaves its changes pending and they are retried with the next one.
+ * A crash (no shutdown) loses at most the changes of the last flush interval; setting the interval to 0
+ * writes every change through before the request returns, and fails the request if it can't.
+ * Carts that are clean and unused for cart.write-behind.idle-ms are dropped from memory.
+ * <p>
+ * Each resident cart carries its version: a change sent with an expected version is checked against it
+ * under the cart's lock, and versions are written with the quantities so they keep counting up after a
+ * cart is dropped and loaded again.
+ * <p>
+ * This instance has to be the only writer of shopping_cart, since resident carts are not re-read.
+ */
+@Primary //controllers get this dao instead of MySqlShoppingCartDao
+@Component
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindShoppingCartDao implements ShoppingCartDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindShoppingCartDao.class);
+
+    //one user's cart; every field is guarded by the cart itself
+    private static final class Cart
+    {
+        private final Map<Integer, Integer> quantities;
+        private final Set<Integer> dirty = new HashSet<>();
+        private boolean replaced; //cleared since the last flush, every stored row has to go
+        private boolean evicted;
+        private long lastUsed;
+        private long version;
+
+        private Cart(Map<Integer, Integer> quantities, long version)
+        {
+            this.quantities = quantities;
+            this.version = version;
+        }
+
+        //fails before anything is changed if another change got there first
+        private void expect(int userId, Long expectedVersion)
+        {
+            if (expectedVersion != null && expectedVersion != version)
+                throw new CartVersionConflictException(userId, expectedVersion);
+        }
+    }
+
+    private final MySqlShoppingCartDao cartTable;
+    private final ProductDao productDao;
+    private final long flushIntervalMillis;
+    private final int maxPending;
+    private final long idleMillis;
+
+    private final ConcurrentHashMap<Integer, Cart> carts = new ConcurrentHashMap<>();
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public WriteBehindShoppingCartDao(MySqlShoppingCartDao cartTable, ProductDao productDao,
+                                      @Value("${cart.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+                                      @Value("${cart.write-behind.max-pending:1000}") int maxPending,
+                                      @Value("${cart.write-behind.idle-ms:1800000}") long idleMillis)
+    {
+        this.cartTable = cartTable;
+        this.productDao = productDao;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPending = maxPending;
+        this.idleMillis = idleMillis;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (flushIntervalMillis <= 0)
+            return;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //stops the background flush and writes whatever is still pending
+    @PreDestroy
+    public void shutdown()
+    {
+        if (flusher != null)
+        {
+            flusher.shutdown();
+            try
+            {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+        if (!pending.isEmpty())
+            logger.error("{} carts could not be written to shopping_cart on shutdown", pending.size());
+    }
+
+    @Override
+    public ShoppingCart getByUserId(int userId)
+    {
+        long[] version = new long[1];
+        Map<Integer, Integer> quantities = withCart(userId, true, cart -> {
+            version[0] = cart.version;
+            return new LinkedHashMap<>(cart.quantities);
+        });
+
+        //product details come from the catalog, in the order the products were added
+        ShoppingCart shoppingCart = new ShoppingCart();
+        shoppingCart.setVersion(version[0]);
+        for (Product product : productDao.getByIds(quantities.keySet()))
+        {
+            shoppingCart.add(new ShoppingCartItem(product, userId, quantities.get(product.getProductId())));
+        }
+        return shoppingCart;
+    }
+
+    //the products are in memory already, only the JSON is narrowed
+    @Override
+    public ShoppingCart getByUserId(int userId, ProductFields fields)
+    {
+        return getByUserId(userId);
+    }
+
+    @Override
+    public void addToCart(int productId, int userId)
+    {
+        add(productId, userId, null);
+    }
+
+    @Override
+    public void clearCart(int userId)
+    {
+        //no rows to load, every one of them is going anyway
+        withCart(userId, false, cart -> {
+            cart.quantities.clear();
+            cart.dirty.clear();
+            cart.version++;
+            return cart.replaced = true;
+        });
+        changed(userId);
+    }
+
+    @Override
+    public void editCart(int productId, int userId, int quantity)
+    {
+        edit(Map.of(productId, quantity), userId, null);
+    }
+
+    //the new cart comes straight from memory
+    @Override
+    public ShoppingCart addToCart(int productId, int userId, Long expectedVersion, ProductFields fields)
+    {
+        add(productId, userId, expectedVersion);
+        return getByUserId(userId);
+    }
+
+    @Override
+    public ShoppingCart editCart(int productId, int userId, int quantity, Long expectedVersion, ProductFields fields)
+    {
+        edit(Map.of(productId, quantity), userId, expectedVersion);
+        return getByUserId(userId);
+    }
+
+    @Override
+    public ShoppingCart editCart(Map<Integer, Integer> quantities, int userId, Long expectedVersion, ProductFields fields)
+    {
+        edit(quantities, userId, expectedVersion);
+        return getByUserId(userId);
+    }
+
+    @Override
+    public void mergeCart(Map<Integer, Integer> quantities, int userId)
+    {
+        List<Product> known = productDao.getByIds(quantities.keySet());
+        boolean merged = withCart(userId, true, cart -> {
+            boolean changed = false;
+            for (Product product : known)
+            {
+                int productId = product.getProductId();
+                int quantity = quantities.get(productId);
+                if (quantity > cart.quantities.getOrDefault(productId, 0))
+                {
+                    cart.quantities.put(productId, quantity);
+                    cart.dirty.add(productId);
+                    changed = true;
+                }
+            }
+            if (changed)
+                cart.version++;
+            return changed;
+        });
+
+        if (merged)
+            changed(userId);
+    }
+
+    private void add(int productId, int userId, Long expectedVersion)
+    {
+        //the table's foreign key would have refused it
+        if (productDao.getById(productId) == null)
+            return;
+
+        withCart(userId, true, cart -> {
+            cart.expect(userId, expectedVersion);
+            cart.quantities.merge(productId, 1, Integer::sum);
+            cart.version++;
+            return cart.dirty.add(productId);
+        });
+        changed(userId);
+    }
+
+    //every line lands in the cart together, as one version, and the cart is queued for one flush
+    private void edit(Map<Integer, Integer> quantities, int userId, Long expectedVersion)
+    {
+        boolean edited = withCart(userId, true, cart -> {
+            cart.expect(userId, expectedVersion);
+
+            //like the UPDATE it replaces, only products already in the cart are changed
+            boolean changed = false;
+            for (Map.Entry<Integer, Integer> line : quantities.entrySet())
+            {
+                int productId = line.getKey();
+                if (!cart.quantities.containsKey(productId))
+                    continue;
+
+                if (line.getValue() <= 0)
+                    cart.quantities.remove(productId);
+                else
+                    cart.quantities.put(productId, line.getValue());
+                cart.dirty.add(productId);
+                changed = true;
+            }
+            if (changed)
+                cart.version++;
+            return changed;
+        });
+
+        if (edited)
+            changed(userId);
+    }
+
+    /**
+     * Writes every pending change to shopping_cart in one transaction. Changes that fail to be written
+     * stay pending. Also drops idle carts that have nothing left to write.
+     */
+    public void flush()
+    {
+        synchronized (flushLock)
+        {
+            Map<Integer, Map<Integer, Integer>> quantities = new HashMap<>();
+            Set<Integer> replaced = new HashSet<>();
+            Map<Integer, Long> versions = new HashMap<>();
+
+            for (Integer userId : new ArrayList<>(pending))
+            {
+                pending.remove(userId);
+                Cart cart = carts.get(userId);
+                if (cart == null)
+                    continue;
+
+                synchronized (cart)
+                {
+                    //the latest quantity of each dirty product, 0 when it has been removed
+                    Map<Integer, Integer> changes = new HashMap<>();
+                    for (Integer productId : cart.dirty)
+                    {
+                        changes.put(productId, cart.quantities.getOrDefault(productId, 0));
+                    }
+                    if (cart.replaced)
+                    {
+                        replaced.add(userId);
+                        changes.putAll(cart.quantities);
+                    }
+                    quantities.put(userId, changes);
+                    versions.put(userId, cart.version);
+
+                    cart.dirty.clear();
+                    cart.replaced = false;
+                }
+            }
+
+            if (!quantities.isEmpty())
+            {
+                try
+                {
+                    cartTable.saveCarts(quantities, replaced, versions);
+                }
+                catch (RuntimeException e)
+                {
+                    logger.error("Writing {} carts to shopping_cart failed, they stay pending", quantities.size(), e);
+                    requeue(quantities, replaced);
+                    return;
+                }
+            }
+
+            evictIdle();
+        }
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    public int getResidentCount()
+    {
+        return carts.size();
+    }
+
+    private void flushQuietly()
+    {
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException e)
+        {
+            //the scheduler would stop running a task that throws
+            logger.error("Cart flush failed", e);
+        }
+    }
+
+    private void changed(int userId)
+    {
+        pending.add(userId);
+
+        if (flushIntervalMillis <= 0)
+        {
+            //write-through: the caller has to hear about a change that isn't stored yet
+            flush();
+            if (pending.contains(userId))
+                throw new RuntimeException("The cart of user " + userId + " could not be saved");
+        }
+        else if (flusher != null && pending.size() >= maxPending)
+        {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    //runs the action on the user's resident cart, loading it first if needed
+    private <T> T withCart(int userId, boolean load, Function<Cart, T> action)
+    {
+        while (true)
+        {
+            //the version is loaded either way, it must not start over from an older one
+            Cart cart = carts.computeIfAbsent(userId,
+                    id -> new Cart(load ? cartTable.getQuantities(id) : new LinkedHashMap<>(), cartTable.getVersion(id)));
+
+            synchronized (cart)
+            {
+                //dropped by evictIdle after we found it, look it up again
+                if (cart.evicted)
+                    continue;
+
+                cart.lastUsed = System.nanoTime();
+                return action.apply(cart);
+            }
+        }
+    }
+
+    //puts back what a failed flush took, unless newer changes to the same products came in meanwhile
+    private void requeue(Map<Integer, Map<Integer, Integer>> quantities, Set<Integer> replaced)
+    {
+        quantities.forEach((userId, changes) -> {
+            Cart cart = carts.get(userId);
+            synchronized (cart)
+            {
+                cart.dirty.addAll(changes.keySet());
+                cart.replaced |= replaced.contains(userId);
+            }
+            pending.add(userId);
+        });
+    }
+
+    private void evictIdle()
+    {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+
+        for (Map.Entry<Integer, Cart> entry : carts.entrySet())
+        {
+            Cart cart = entry.getValue();
+            synchronized (cart)
+            {
+                if (cart.dirty.isEmpty() && !cart.replaced && cart.lastUsed - cutoff < 0)
+                {
+                    cart.evicted = true;
+                    carts.remove(entry.getKey(), cart);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.yearup.data.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductConsumer;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
+import org.yearup.data.cache.CacheStats;
+import org.yearup.data.cache.TinyLfuCache;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductPage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * ProductDao that doesn't keep a snapshot of the catalog between requests (catalog.snapshot.enabled=false).
+ * <p>
+ * {@link #getById} is read through a bounded {@link TinyLfuCache} (catalog.cache.maximum-size entries),
+ * which keeps the frequently viewed products resident. Listings and searches go to MySQL.
+ * Writes invalidate the cached row and tell the listeners what changed.
+ * <p>
+ * Listeners that keep data for every product ({@link CatalogListener#growsWithCatalog()}: the full-text
+ * index and the typeahead) are not fed at all in this mode and answer from MySQL instead. The rest keep
+ * ids and counts (bitmaps, facets) or only the featured products, not the catalog's rows. They are built
+ * from one pass over the catalog at startup; those rows are dropped as soon as the listeners are loaded.
+ */
+@Primary //controllers get this dao instead of MySqlProductDao
+@Component
+@ConditionalOnProperty(name = "catalog.snapshot.enabled", havingValue = "false")
+public class CachingProductDao implements ProductDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(CachingProductDao.class);
+
+    private final MySqlProductDao productDao;
+    private final CatalogEvents events;
+    private final TinyLfuCache<Integer, Product> cache;
+
+    //writers are serialized so listeners see changes in the order they were made
+    private final Object writeLock = new Object();
+    //counts writes, so a batch read can tell whether a row it read may already be stale
+    private long writes;
+
+    @Autowired
+    public CachingProductDao(MySqlProductDao productDao, ObjectProvider<CatalogListener> listeners,
+                             @Value("${catalog.cache.maximum-size:10000}") int maximumSize)
+    {
+        this.productDao = productDao;
+        this.events = new CatalogEvents(listeners, listener -> !listener.growsWithCatalog());
+        this.cache = new TinyLfuCache<>(maximumSize);
+    }
+
+    //the rows read here are only held until the listeners have built their views
+    @PostConstruct
+    public void load()
+    {
+        synchronized (writeLock)
+        {
+            CatalogSnapshot loaded = CatalogSnapshot.of(1, productDao.listAll());
+            events.publish(listener -> listener.onCatalogLoaded(loaded));
+        }
+    }
+
+    @PreDestroy
+    public void logStats()
+    {
+        logger.info("Product cache: {}", cache.stats());
+    }
+
+    public CacheStats getCacheStats()
+    {
+        return cache.stats();
+    }
+
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory)
+    {
+        return productDao.search(categoryId, minPrice, maxPrice, subCategory);
+    }
+
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                ProductFields fields)
+    {
+        return productDao.search(categoryId, minPrice, maxPrice, subCategory, fields);
+    }
+
+    @Override
+    public List<Product> listByCategoryId(int categoryId)
+    {
+        return productDao.listByCategoryId(categoryId);
+    }
+
+    @Override
+    public ProductPage searchPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                  ProductSort sort, ProductCursor after, int limit)
+    {
+        return productDao.searchPage(categoryId, minPrice, maxPrice, subCategory, sort, after, limit);
+    }
+
+    @Override
+    public ProductPage listByCategoryIdPage(int categoryId, ProductSort sort, ProductCursor after, int limit)
+    {
+        return productDao.listByCategoryIdPage(categoryId, sort, after, limit);
+    }
+
+    @Override
+    public void streamSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                             ProductConsumer consumer) throws IOException
+    {
+        productDao.streamSearch(categoryId, minPrice, maxPrice, subCategory, consumer);
+    }
+
+    @Override
+    public void streamByCategoryId(int categoryId, ProductConsumer consumer) throws IOException
+    {
+        productDao.streamByCategoryId(categoryId, consumer);
+    }
+
+    @Override
+    public Product getById(int productId)
+    {
+        return cache.get(productId, productDao::getById);
+    }
+
+    //cached products first, then every miss in one query
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds)
+    {
+        Set<Integer> ids = new LinkedHashSet<>(productIds);
+        Map<Integer, Product> found = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (Integer productId : ids)
+        {
+            Product product = cache.getIfPresent(productId);
+            if (product != null)
+                found.put(productId, product);
+            else
+                misses.add(productId);
+        }
+
+        if (!misses.isEmpty())
+        {
+            long writesBefore;
+            synchronized (writeLock)
+            {
+                writesBefore = writes;
+            }
+
+            List<Product> loaded = productDao.getByIds(misses);
+
+            synchronized (writeLock)
+            {
+                //a write since the query may have invalidated these rows already, don't cache them again
+                boolean fresh = writes == writesBefore;
+                for (Product product : loaded)
+                {
+                    found.put(product.getProductId(), product);
+                    if (fresh)
+                        cache.put(product.getProductId(), product);
+                }
+            }
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (Integer productId : ids)
+        {
+            Product product = found.get(productId);
+            if (product != null)
+                products.add(product);
+        }
+        return products;
+    }
+
+    @Override
+    public Product create(Product product)
+    {
+        synchronized (writeLock)
+        {
+            Product created = productDao.create(product);
+            if (created != null)
+                events.publish(listener -> listener.onProductSaved(null, created));
+
+            return created;
+        }
+    }
+
+    @Override
+    public void update(int productId, Product product)
+    {
+        synchronized (writeLock)
+        {
+            Product previous = getById(productId);
+            productDao.update(productId, product);
+            publish(productId, previous);
+        }
+    }
+
+    @Override
+    public void delete(int productId)
+    {
+        synchronized (writeLock)
+        {
+            Product previous = getById(productId);
+            productDao.delete(productId);
+            writes++;
+            cache.invalidate(productId);
+
+            if (previous != null)
+                events.publish(listener -> listener.onProductDeleted(previous));
+        }
+    }
+
+    @Override
+    public ProductChanges getChanges(long since, int limit)
+    {
+        return productDao.getChanges(since, limit);
+    }
+
+    @Override
+    public void refresh(Collection<Integer> productIds)
+    {
+        synchronized (writeLock)
+        {
+            for (Integer productId : new LinkedHashSet<>(productIds))
+            {
+                publish(productId, getById(productId));
+            }
+        }
+    }
+
+    //drops the cached row and reads it back, so listeners get the row as the database now has it
+    private void publish(int productId, Product previous)
+    {
+        writes++;
+        cache.invalidate(productId);
+        Product current = getById(productId);
+
+        if (current != null)
+            events.publish(listener -> listener.onProductSaved(previous, current));
+        else if (previous != null)
+            events.publish(listener -> listener.onProductDeleted(previous));
+    }
+}
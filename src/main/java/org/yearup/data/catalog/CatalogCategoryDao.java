@@ -0,0 +1,122 @@
+package org.yearup.data.catalog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CategoryDao that keeps the whole categories table in memory.
+ * <p>
+ * The table is loaded at startup and re-read after every create, update and delete, each reload
+ * publishing a new {@link #getVersion() version} and bumping the {@link CatalogVersion}. Reads never touch MySQL.
+ */
+@Primary //controllers get this dao instead of MySqlCategoryDao
+@Component
+public class CatalogCategoryDao implements CategoryDao
+{
+    private final MySqlCategoryDao categoryDao;
+    private final CatalogVersion catalogVersion;
+    private volatile Categories categories = Categories.EMPTY;
+
+    //writers are serialized so a reload can never publish an older table over a newer one
+    private final Object writeLock = new Object();
+
+    @Autowired
+    public CatalogCategoryDao(MySqlCategoryDao categoryDao, CatalogVersion catalogVersion)
+    {
+        this.categoryDao = categoryDao;
+        this.catalogVersion = catalogVersion;
+    }
+
+    @PostConstruct
+    public void load()
+    {
+        synchronized (writeLock)
+        {
+            reload();
+        }
+    }
+
+    //bumped every time the categories change
+    public long getVersion()
+    {
+        return categories.version;
+    }
+
+    @Override
+    public List<Category> getAllCategories()
+    {
+        return categories.all;
+    }
+
+    @Override
+    public Category getById(int categoryId)
+    {
+        return categories.byId.get(categoryId);
+    }
+
+    @Override
+    public Category create(Category category)
+    {
+        synchronized (writeLock)
+        {
+            Category created = categoryDao.create(category);
+            reload();
+            return created;
+        }
+    }
+
+    @Override
+    public void update(int categoryId, Category category)
+    {
+        synchronized (writeLock)
+        {
+            categoryDao.update(categoryId, category);
+            reload();
+        }
+    }
+
+    @Override
+    public void delete(int categoryId)
+    {
+        synchronized (writeLock)
+        {
+            categoryDao.delete(categoryId);
+            reload();
+        }
+    }
+
+    //the table is a handful of rows, re-reading it is simpler and safer than patching the copy
+    private void reload()
+    {
+        categories = new Categories(categories.version + 1, categoryDao.getAllCategories());
+        catalogVersion.bump();
+    }
+
+    private static final class Categories
+    {
+        private static final Categories EMPTY = new Categories(0, List.of());
+
+        private final long version;
+        private final List<Category> all;
+        private final Map<Integer, Category> byId = new LinkedHashMap<>();
+
+        private Categories(long version, List<Category> all)
+        {
+            this.version = version;
+            this.all = List.copyOf(all);
+            for (Category category : all)
+            {
+                byId.put(category.getCategoryId(), category);
+            }
+        }
+    }
+}
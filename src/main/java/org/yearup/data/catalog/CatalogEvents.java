@@ -0,0 +1,46 @@
+package org.yearup.data.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+//delivers catalog changes to every CatalogListener bean
+class CatalogEvents
+{
+    private static final Logger logger = LoggerFactory.getLogger(CatalogEvents.class);
+
+    private final ObjectProvider<CatalogListener> listeners;
+    private final Predicate<CatalogListener> fed;
+
+    CatalogEvents(ObjectProvider<CatalogListener> listeners)
+    {
+        this(listeners, listener -> true);
+    }
+
+    //only the listeners fed accepts are told anything
+    CatalogEvents(ObjectProvider<CatalogListener> listeners, Predicate<CatalogListener> fed)
+    {
+        this.listeners = listeners;
+        this.fed = fed;
+    }
+
+    //the database change is already committed, so a failing listener is logged rather than failing the write
+    void publish(Consumer<CatalogListener> event)
+    {
+        for (CatalogListener listener : listeners.orderedStream().filter(fed).collect(Collectors.toList()))
+        {
+            try
+            {
+                event.accept(listener);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Catalog listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.yearup.data.catalog;
+
+import org.yearup.models.Product;
+
+/**
+ * Implemented by components that keep their own view of the catalog (search indexes, counters, ...).
+ * Every CatalogListener bean is told about the catalog by the product dao in use ({@link CatalogProductDao}
+ * or {@link CachingProductDao}): once with the full snapshot when it is (re)loaded, then about each
+ * product change after it has been published.
+ * Events are delivered one at a time, in the order the changes were made.
+ * <p>
+ * Listeners that keep something per product (names, text) say so with {@link #growsWithCatalog()};
+ * {@link CachingProductDao} doesn't feed those, so they have to be able to answer without their view.
+ */
+public interface CatalogListener
+{
+    void onCatalogLoaded(CatalogSnapshot snapshot);
+
+    //true when the view holds data for every product, so its size follows the catalog's
+    default boolean growsWithCatalog()
+    {
+        return false;
+    }
+
+    //previous is null when the product is new
+    void onProductSaved(Product previous, Product current);
+
+    void onProductDeleted(Product previous);
+}
@@ -0,0 +1,246 @@
+package org.yearup.data.catalog;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductConsumer;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductPage;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ProductDao that answers every read from an in-memory {@link CatalogSnapshot}.
+ * <p>
+ * Writes go to MySQL first; the affected row is then read back and published as a new snapshot
+ * version. Readers always see one complete version and never block on writers.
+ * Every {@link CatalogListener} is told about each published change.
+ * <p>
+ * This is the default. With catalog.snapshot.enabled=false, {@link CachingProductDao} is used instead.
+ */
+@Primary //controllers get this dao instead of MySqlProductDao
+@Component
+@ConditionalOnProperty(name = "catalog.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogProductDao implements ProductDao
+{
+    private final MySqlProductDao productDao;
+    private final CatalogEvents events;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.EMPTY);
+
+    //writers are serialized so a slower writer can never publish an older row over a newer one
+    private final Object writeLock = new Object();
+
+    @Autowired
+    public CatalogProductDao(MySqlProductDao productDao, ObjectProvider<CatalogListener> listeners)
+    {
+        this.productDao = productDao;
+        this.events = new CatalogEvents(listeners);
+    }
+
+    @PostConstruct
+    public void load()
+    {
+        synchronized (writeLock)
+        {
+            long version = snapshot.get().getVersion() + 1;
+            CatalogSnapshot loaded = CatalogSnapshot.of(version, productDao.listAll());
+            snapshot.set(loaded);
+
+            events.publish(listener -> listener.onCatalogLoaded(loaded));
+        }
+    }
+
+    public CatalogSnapshot getSnapshot()
+    {
+        return snapshot.get();
+    }
+
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory)
+    {
+        return snapshot.get().search(categoryId, minPrice, maxPrice, subCategory);
+    }
+
+    //the products are in memory already, only the JSON is narrowed
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                ProductFields fields)
+    {
+        return search(categoryId, minPrice, maxPrice, subCategory);
+    }
+
+    @Override
+    public List<Product> listByCategoryId(int categoryId)
+    {
+        return snapshot.get().listByCategoryId(categoryId);
+    }
+
+    @Override
+    public ProductPage searchPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                  ProductSort sort, ProductCursor after, int limit)
+    {
+        return snapshot.get().page(categoryId, minPrice, maxPrice, subCategory, sort, after, limit);
+    }
+
+    @Override
+    public ProductPage listByCategoryIdPage(int categoryId, ProductSort sort, ProductCursor after, int limit)
+    {
+        return snapshot.get().page(categoryId, null, null, null, sort, after, limit);
+    }
+
+    @Override
+    public void streamSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                             ProductConsumer consumer) throws IOException
+    {
+        //the products already live in the snapshot, the result list only holds references to them
+        for (Product product : snapshot.get().search(categoryId, minPrice, maxPrice, subCategory))
+        {
+            consumer.accept(product);
+        }
+    }
+
+    @Override
+    public void streamByCategoryId(int categoryId, ProductConsumer consumer) throws IOException
+    {
+        for (Product product : snapshot.get().listByCategoryId(categoryId))
+        {
+            consumer.accept(product);
+        }
+    }
+
+    @Override
+    public Product getById(int productId)
+    {
+        return snapshot.get().getById(productId);
+    }
+
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds)
+    {
+        CatalogSnapshot current = snapshot.get();
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (Integer productId : new LinkedHashSet<>(productIds))
+        {
+            Product product = current.getById(productId);
+            if (product != null)
+                products.add(product);
+        }
+        return products;
+    }
+
+    @Override
+    public Product create(Product product)
+    {
+        synchronized (writeLock)
+        {
+            Product created = productDao.create(product);
+            if (created != null)
+                publishSaved(created);
+
+            return created;
+        }
+    }
+
+    @Override
+    public void update(int productId, Product product)
+    {
+        synchronized (writeLock)
+        {
+            productDao.update(productId, product);
+            //update only overwrites non-null fields, so publish the row as the database now has it
+            publish(productId);
+        }
+    }
+
+    @Override
+    public void delete(int productId)
+    {
+        synchronized (writeLock)
+        {
+            productDao.delete(productId);
+            publishDeleted(productId);
+        }
+    }
+
+    //the change log lives in MySQL; the snapshot has no history to answer from
+    @Override
+    public ProductChanges getChanges(long since, int limit)
+    {
+        return productDao.getChanges(since, limit);
+    }
+
+    //one new snapshot for all of them: a snapshot write copies the whole-catalog indexes, so not one per product
+    @Override
+    public void refresh(Collection<Integer> productIds)
+    {
+        synchronized (writeLock)
+        {
+            Map<Integer, Product> changes = new LinkedHashMap<>();
+            for (Integer productId : productIds)
+            {
+                changes.put(productId, null);
+            }
+            for (Product current : productDao.getByIds(changes.keySet()))
+            {
+                changes.put(current.getProductId(), current);
+            }
+
+            CatalogSnapshot before = snapshot.get();
+            snapshot.set(before.withChanges(changes));
+
+            changes.forEach((productId, current) -> {
+                Product previous = before.getById(productId);
+                if (current != null)
+                    events.publish(listener -> listener.onProductSaved(previous, current));
+                else if (previous != null)
+                    events.publish(listener -> listener.onProductDeleted(previous));
+            });
+        }
+    }
+
+    private void publish(int productId)
+    {
+        Product current = productDao.getById(productId);
+
+        if (current == null)
+            publishDeleted(productId);
+        else
+            publishSaved(current);
+    }
+
+    private void publishSaved(Product current)
+    {
+        CatalogSnapshot before = snapshot.get();
+        Product previous = before.getById(current.getProductId());
+
+        snapshot.set(before.withProduct(current));
+        events.publish(listener -> listener.onProductSaved(previous, current));
+    }
+
+    private void publishDeleted(int productId)
+    {
+        CatalogSnapshot before = snapshot.get();
+        Product previous = before.getById(productId);
+
+        snapshot.set(before.withoutProduct(productId));
+        if (previous != null)
+            events.publish(listener -> listener.onProductDeleted(previous));
+    }
+}
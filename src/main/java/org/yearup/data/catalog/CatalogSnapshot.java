@@ -0,0 +1,396 @@
+package org.yearup.data.catalog;
+
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+import org.yearup.models.ProductPage;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An immutable, versioned copy of the products table together with the indexes used to answer
+ * catalog reads: by id, and sorted by id, price and name, for the whole catalog and within each
+ * category and each subcategory.
+ * <p>
+ * Snapshots are never modified after they are built. Writes produce a new snapshot through
+ * {@link #withProduct(Product)} / {@link #withoutProduct(int)}, or {@link #withChanges(Map)} for several
+ * products at once. A new version copies the id map and the whole-catalog sorted arrays, so a write costs
+ * O(catalog size); only the category and subcategory indexes the change touches are copied, the rest are
+ * shared with the previous version. Writers that change several products should hand them over together,
+ * so that cost is paid once rather than per product.
+ * <p>
+ * The Product instances held by a snapshot are shared with every reader and must be treated as read-only.
+ */
+public final class CatalogSnapshot
+{
+    public static final CatalogSnapshot EMPTY = of(0, Collections.emptyList());
+
+    //the orders products are kept sorted in; each ends with product_id so equal keys have a stable position
+    private enum Order
+    {
+        ID(Comparator.comparing(Product::getProductId)),
+        PRICE(Comparator.comparing(Product::getPrice).thenComparing(Product::getProductId)),
+        NAME(Comparator.comparing(Product::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(Product::getProductId));
+
+        private final Comparator<Product> comparator;
+
+        Order(Comparator<Product> comparator)
+        {
+            this.comparator = comparator;
+        }
+
+        static Order of(ProductSort sort)
+        {
+            switch (sort)
+            {
+                case PRICE_ASC:
+                case PRICE_DESC:
+                    return PRICE;
+                case NAME:
+                    return NAME;
+                default:
+                    return ID;
+            }
+        }
+    }
+
+    private final long version;
+    private final Map<Integer, Product> byId;
+    private final EnumMap<Order, SortedProducts> sorted;
+    private final Map<Integer, EnumMap<Order, SortedProducts>> byCategory;
+    private final Map<String, EnumMap<Order, SortedProducts>> bySubCategory;
+
+    private CatalogSnapshot(long version,
+                            Map<Integer, Product> byId,
+                            EnumMap<Order, SortedProducts> sorted,
+                            Map<Integer, EnumMap<Order, SortedProducts>> byCategory,
+                            Map<String, EnumMap<Order, SortedProducts>> bySubCategory)
+    {
+        this.version = version;
+        this.byId = byId;
+        this.sorted = sorted;
+        this.byCategory = byCategory;
+        this.bySubCategory = bySubCategory;
+    }
+
+    //builds a snapshot (and all of its indexes) from a full list of products
+    public static CatalogSnapshot of(long version, Collection<Product> products)
+    {
+        Map<Integer, Product> byId = new HashMap<>(products.size() * 2);
+        Map<Integer, List<Product>> categories = new HashMap<>();
+        Map<String, List<Product>> subCategories = new HashMap<>();
+
+        for (Product product : products)
+        {
+            byId.put(product.getProductId(), product);
+        }
+
+        for (Product product : byId.values())
+        {
+            categories.computeIfAbsent(product.getCategoryId(), k -> new ArrayList<>()).add(product);
+
+            String subCategoryKey = subCategoryKey(product.getSubCategory());
+            if (subCategoryKey != null)
+                subCategories.computeIfAbsent(subCategoryKey, k -> new ArrayList<>()).add(product);
+        }
+
+        Map<Integer, EnumMap<Order, SortedProducts>> byCategory = new HashMap<>();
+        categories.forEach((categoryId, list) -> byCategory.put(categoryId, sortAll(list)));
+
+        Map<String, EnumMap<Order, SortedProducts>> bySubCategory = new HashMap<>();
+        subCategories.forEach((key, list) -> bySubCategory.put(key, sortAll(list)));
+
+        return new CatalogSnapshot(version, byId, sortAll(byId.values()), byCategory, bySubCategory);
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public int size()
+    {
+        return byId.size();
+    }
+
+    public Product getById(int productId)
+    {
+        return byId.get(productId);
+    }
+
+    //every product, in id order
+    public List<Product> getAll()
+    {
+        return sorted.get(Order.ID).asList();
+    }
+
+    public List<Product> listByCategoryId(int categoryId)
+    {
+        EnumMap<Order, SortedProducts> indexes = byCategory.get(categoryId);
+        return indexes == null ? Collections.emptyList() : indexes.get(Order.ID).asList();
+    }
+
+    public List<Product> listBySubCategory(String subCategory)
+    {
+        EnumMap<Order, SortedProducts> indexes = bySubCategory.get(subCategoryKey(subCategory));
+        return indexes == null ? Collections.emptyList() : indexes.get(Order.ID).asList();
+    }
+
+    /**
+     * Returns the products matching every supplied filter, ordered by product id.
+     * Null (or blank, for subCategory) filters are ignored. Price bounds are inclusive.
+     */
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory)
+    {
+        boolean hasSubCategory = subCategory != null && !subCategory.isBlank();
+
+        //start from the narrowest index that applies, then filter on whatever is left
+        Collection<Product> candidates;
+        if (categoryId != null)
+            candidates = listByCategoryId(categoryId);
+        else if (hasSubCategory)
+            candidates = listBySubCategory(subCategory);
+        else if (minPrice != null || maxPrice != null)
+            candidates = priceRange(minPrice, maxPrice);
+        else
+            return getAll();
+
+        String subCategoryKey = hasSubCategory ? subCategoryKey(subCategory) : null;
+
+        List<Product> products = new ArrayList<>();
+        for (Product product : candidates)
+        {
+            if (matches(product, categoryId, minPrice, maxPrice, subCategoryKey))
+                products.add(product);
+        }
+
+        //the price index is not in id order, so results taken from it need sorting
+        if (categoryId == null && !hasSubCategory)
+            products.sort(Order.ID.comparator);
+
+        return products;
+    }
+
+    /**
+     * Returns one page of the products matching every supplied filter, in the given sort order,
+     * starting right after the cursor (or at the beginning when the cursor is null).
+     * <p>
+     * The page is read straight out of the index kept in that sort order (the category's, else the
+     * subcategory's, else the whole catalog's), so the cost of a page does not depend on how deep into
+     * the results it is, and a rare filter doesn't walk past everything it doesn't match.
+     */
+    public ProductPage page(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                            ProductSort sort, ProductCursor after, int limit)
+    {
+        Order order = Order.of(sort);
+        String subCategoryKey = subCategory == null || subCategory.isBlank() ? null : subCategoryKey(subCategory);
+
+        EnumMap<Order, SortedProducts> indexes;
+        if (categoryId != null)
+            indexes = byCategory.get(categoryId);
+        else if (subCategoryKey != null)
+            indexes = bySubCategory.get(subCategoryKey);
+        else
+            indexes = sorted;
+
+        if (indexes == null)
+            return new ProductPage(new ArrayList<>(), null);
+
+        SortedProducts index = indexes.get(order);
+        boolean descending = sort.isDescending();
+
+        //seek to the first position after the cursor
+        int position;
+        if (!descending)
+            position = after == null ? 0 : index.upperBound(after.toProbe());
+        else
+            position = (after == null ? index.size() : index.lowerBound(after.toProbe())) - 1;
+
+        //when sorted by price the price bounds are also a seek and a stop condition
+        if (order == Order.PRICE)
+        {
+            if (!descending && minPrice != null)
+                position = Math.max(position, index.lowerBound(priceProbe(minPrice, Integer.MIN_VALUE)));
+            if (descending && maxPrice != null)
+                position = Math.min(position, index.upperBound(priceProbe(maxPrice, Integer.MAX_VALUE)) - 1);
+        }
+
+        List<Product> products = new ArrayList<>(limit + 1);
+        while (position >= 0 && position < index.size() && products.size() <= limit)
+        {
+            Product product = index.get(position);
+            position += descending ? -1 : 1;
+
+            if (order == Order.PRICE)
+            {
+                if (!descending && maxPrice != null && product.getPrice().compareTo(maxPrice) > 0)
+                    break;
+                if (descending && minPrice != null && product.getPrice().compareTo(minPrice) < 0)
+                    break;
+            }
+
+            if (matches(product, categoryId, minPrice, maxPrice, subCategoryKey))
+                products.add(product);
+        }
+
+        //one extra row was read to find out whether there is a next page
+        String nextCursor = null;
+        if (products.size() > limit)
+        {
+            products.remove(limit);
+            nextCursor = ProductCursor.after(sort, products.get(limit - 1)).encode();
+        }
+
+        return new ProductPage(products, nextCursor);
+    }
+
+    //returns the products with minPrice <= price <= maxPrice, in price order
+    public List<Product> priceRange(BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        SortedProducts byPrice = sorted.get(Order.PRICE);
+
+        int from = minPrice == null ? 0 : byPrice.lowerBound(priceProbe(minPrice, Integer.MIN_VALUE));
+        int to = maxPrice == null ? byPrice.size() : byPrice.upperBound(priceProbe(maxPrice, Integer.MAX_VALUE));
+
+        return byPrice.subList(from, to);
+    }
+
+    //returns a new version of this snapshot with the product added (or replaced, if its id already exists)
+    public CatalogSnapshot withProduct(Product product)
+    {
+        return withChanges(Collections.singletonMap(product.getProductId(), product));
+    }
+
+    //returns a new version of this snapshot without the given product
+    public CatalogSnapshot withoutProduct(int productId)
+    {
+        return withChanges(Collections.singletonMap(productId, null));
+    }
+
+    /**
+     * Returns a new version of this snapshot with every change applied in one pass: product id -> the product
+     * as it is now, or null when it was deleted. Each index is copied at most once, however many products change.
+     */
+    public CatalogSnapshot withChanges(Map<Integer, Product> changes)
+    {
+        List<Product> removed = new ArrayList<>();
+        List<Product> added = new ArrayList<>();
+        changes.forEach((productId, product) -> {
+            Product previous = byId.get(productId);
+            if (previous != null)
+                removed.add(previous);
+            if (product != null)
+                added.add(product);
+        });
+
+        if (removed.isEmpty() && added.isEmpty())
+            return new CatalogSnapshot(version + 1, byId, sorted, byCategory, bySubCategory);
+
+        Map<Integer, Product> newById = new HashMap<>(byId);
+        changes.forEach((productId, product) -> {
+            if (product == null)
+                newById.remove(productId);
+            else
+                newById.put(productId, product);
+        });
+
+        EnumMap<Order, SortedProducts> newSorted = new EnumMap<>(sorted);
+        newSorted.replaceAll((order, products) -> products.replace(removed, added));
+
+        Map<Integer, EnumMap<Order, SortedProducts>> newByCategory = new HashMap<>(byCategory);
+        replaceInGroups(newByCategory, removed, added, Product::getCategoryId);
+
+        Map<String, EnumMap<Order, SortedProducts>> newBySubCategory = new HashMap<>(bySubCategory);
+        replaceInGroups(newBySubCategory, removed, added, product -> subCategoryKey(product.getSubCategory()));
+
+        return new CatalogSnapshot(version + 1, newById, newSorted, newByCategory, newBySubCategory);
+    }
+
+    //copy-on-write: every category's (or subcategory's) indexes the change touches are replaced, never modified
+    //in place, and dropped once empty. products without a key (no subcategory) are in no group
+    private static <K> void replaceInGroups(Map<K, EnumMap<Order, SortedProducts>> groups,
+                                            List<Product> removed, List<Product> added, Function<Product, K> key)
+    {
+        Map<K, List<Product>> removedByKey = new HashMap<>();
+        Map<K, List<Product>> addedByKey = new HashMap<>();
+        for (Product product : removed)
+        {
+            K groupKey = key.apply(product);
+            if (groupKey != null)
+                removedByKey.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(product);
+        }
+        for (Product product : added)
+        {
+            K groupKey = key.apply(product);
+            if (groupKey != null)
+                addedByKey.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(product);
+        }
+
+        Set<K> touched = new HashSet<>(removedByKey.keySet());
+        touched.addAll(addedByKey.keySet());
+        for (K groupKey : touched)
+        {
+            List<Product> groupRemoved = removedByKey.getOrDefault(groupKey, Collections.emptyList());
+            List<Product> groupAdded = addedByKey.getOrDefault(groupKey, Collections.emptyList());
+
+            EnumMap<Order, SortedProducts> indexes = groups.get(groupKey);
+            if (indexes == null)
+            {
+                if (!groupAdded.isEmpty())
+                    groups.put(groupKey, sortAll(groupAdded));
+                continue;
+            }
+
+            EnumMap<Order, SortedProducts> copy = new EnumMap<>(indexes);
+            copy.replaceAll((order, products) -> products.replace(groupRemoved, groupAdded));
+
+            if (copy.get(Order.ID).isEmpty())
+                groups.remove(groupKey);
+            else
+                groups.put(groupKey, copy);
+        }
+    }
+
+    private static EnumMap<Order, SortedProducts> sortAll(Collection<Product> products)
+    {
+        EnumMap<Order, SortedProducts> indexes = new EnumMap<>(Order.class);
+        for (Order order : Order.values())
+        {
+            indexes.put(order, SortedProducts.of(products, order.comparator));
+        }
+        return indexes;
+    }
+
+    private static boolean matches(Product product, Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategoryKey)
+    {
+        if (categoryId != null && !categoryId.equals(product.getCategoryId()))
+            return false;
+        if (minPrice != null && product.getPrice().compareTo(minPrice) < 0)
+            return false;
+        if (maxPrice != null && product.getPrice().compareTo(maxPrice) > 0)
+            return false;
+
+        return subCategoryKey == null || subCategoryKey.equals(subCategoryKey(product.getSubCategory()));
+    }
+
+    private static Product priceProbe(BigDecimal price, int productId)
+    {
+        Product probe = new Product();
+        probe.setPrice(price);
+        probe.setProductId(productId);
+        return probe;
+    }
+
+    /**
+     * The key subcategories are matched and grouped by everywhere in memory (snapshot, bitmaps, facets):
+     * trimmed and lower-cased in the root locale, so matching is case-insensitive like the default MySQL
+     * collation and doesn't depend on the JVM's locale.
+     */
+    public static String subCategoryKey(String subCategory)
+    {
+        return subCategory == null ? null : subCategory.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,55 @@
+package org.yearup.data.catalog;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number that goes up whenever anything in the catalog (products or categories) changes,
+ * so "has the catalog changed since version x?" costs a single read.
+ * <p>
+ * Product changes arrive as catalog events, category changes are reported by {@link CatalogCategoryDao}.
+ * It is bumped after the change has been published, so a reader that sees version x is never served
+ * data older than x. The tag also carries the start time so versions from an earlier run never match.
+ */
+@Component
+public class CatalogVersion implements CatalogListener
+{
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public long get()
+    {
+        return version.get();
+    }
+
+    //e.g. "lq3x9k2a.42", unique to this version of the catalog in this run
+    public String getTag()
+    {
+        return epoch + "." + version.get();
+    }
+
+    public void bump()
+    {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        bump();
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current)
+    {
+        bump();
+    }
+
+    @Override
+    public void onProductDeleted(Product previous)
+    {
+        bump();
+    }
+}
@@ -0,0 +1,139 @@
+package org.yearup.data.catalog;
+
+import org.yearup.models.Product;
+
+import java.util.*;
+
+/**
+ * An immutable array of products kept in one sort order.
+ * Adding or removing a product returns a new copy; the original is never modified.
+ */
+final class SortedProducts
+{
+    private final Product[] products;
+    private final Comparator<Product> order;
+
+    private SortedProducts(Product[] products, Comparator<Product> order)
+    {
+        this.products = products;
+        this.order = order;
+    }
+
+    static SortedProducts of(Collection<Product> products, Comparator<Product> order)
+    {
+        Product[] sorted = products.toArray(new Product[0]);
+        Arrays.sort(sorted, order);
+        return new SortedProducts(sorted, order);
+    }
+
+    int size()
+    {
+        return products.length;
+    }
+
+    boolean isEmpty()
+    {
+        return products.length == 0;
+    }
+
+    Product get(int index)
+    {
+        return products[index];
+    }
+
+    List<Product> asList()
+    {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    List<Product> subList(int from, int to)
+    {
+        if (from >= to)
+            return Collections.emptyList();
+
+        return asList().subList(from, to);
+    }
+
+    SortedProducts with(Product product)
+    {
+        return replace(Collections.emptyList(), List.of(product));
+    }
+
+    SortedProducts without(Product product)
+    {
+        return replace(List.of(product), Collections.emptyList());
+    }
+
+    //one copy with the removed products taken out and the added ones merged in at their positions
+    SortedProducts replace(Collection<Product> removed, Collection<Product> added)
+    {
+        int[] drop = new int[removed.size()];
+        int dropped = 0;
+        for (Product product : removed)
+        {
+            int position = Arrays.binarySearch(products, product, order);
+            if (position >= 0)
+                drop[dropped++] = position;
+        }
+        if (dropped == 0 && added.isEmpty())
+            return this;
+
+        drop = Arrays.copyOf(drop, dropped);
+        Arrays.sort(drop);
+
+        Product[] adding = added.toArray(new Product[0]);
+        Arrays.sort(adding, order);
+
+        Product[] copy = new Product[products.length - dropped + adding.length];
+        int next = 0;
+        int nextDrop = 0;
+        int nextAdd = 0;
+        for (int i = 0; i < products.length; i++)
+        {
+            if (nextDrop < drop.length && drop[nextDrop] == i)
+            {
+                nextDrop++;
+                continue;
+            }
+            while (nextAdd < adding.length && order.compare(adding[nextAdd], products[i]) < 0)
+                copy[next++] = adding[nextAdd++];
+            copy[next++] = products[i];
+        }
+        while (nextAdd < adding.length)
+            copy[next++] = adding[nextAdd++];
+
+        return new SortedProducts(copy, order);
+    }
+
+    //first position whose product sorts at or after the probe
+    int lowerBound(Product probe)
+    {
+        int low = 0;
+        int high = products.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (order.compare(products[mid], probe) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    //first position whose product sorts strictly after the probe
+    int upperBound(Product probe)
+    {
+        int low = 0;
+        int high = products.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (order.compare(products[mid], probe) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,72 @@
+package org.yearup.data.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.mysql.MySqlProductDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts stock taken at checkout into the product change log every catalog.changes.stock-flush-ms.
+ * <p>
+ * A checkout only marks the products it took stock from; each run records every marked product as one
+ * change, however many orders took from it since the run before. Clients syncing through
+ * GET /products/changes therefore see stock at most one interval late, and the change log grows by
+ * one row per product per interval rather than by one per order line.
+ */
+@Component
+public class StockChangeFlusher
+{
+    private static final Logger logger = LoggerFactory.getLogger(StockChangeFlusher.class);
+
+    private final MySqlProductDao productTable;
+    private final long intervalMillis;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public StockChangeFlusher(MySqlProductDao productTable,
+                              @Value("${catalog.changes.stock-flush-ms:1000}") long intervalMillis)
+    {
+        this.productTable = productTable;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-change-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        flusher.shutdown();
+        //the last marks are recorded now rather than on the next start
+        flushQuietly();
+    }
+
+    private void flushQuietly()
+    {
+        try
+        {
+            productTable.flushStockChanges();
+        }
+        catch (RuntimeException e)
+        {
+            //the scheduler would stop running a task that throws; the marks stay for the next run
+            logger.error("Recording stock changes failed", e);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package org.yearup.data.mysql;
 
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.CategoryDao;
 import org.yearup.models.Category;
 
@@ -36,16 +34,11 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
         ){
             //loop through result rows
             while(r.next()){
-                Category cat = new Category();
-                //map each column to a Category object
-                cat.setCategoryId(r.getInt("Category_id"));
-                cat.setName(r.getString("Name"));
-                cat.setDescription(r.getString("Description"));
-
-                categories.add(cat); // Add to the list
+                categories.add(mapRow(r)); // Add to the list
             }
         }catch(SQLException e){
-            System.out.println("Error getting all categories " + e);
+            //export exception as unchecked runtime, the same as the other daos
+            throw new RuntimeException("Error getting all categories", e);
         }
 
         return categories;
@@ -55,8 +48,6 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
     @Override
     public Category getById(int categoryId) {
 
-        Category cat = new Category();
-
         //get category from DB using its ID
         try(Connection c = ds.getConnection();
             PreparedStatement q = c.prepareStatement("""
@@ -72,21 +63,13 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
             try(
                     ResultSet r = q.executeQuery()
             ){
-                if(r.next()){
-                    //populate object if record is found
-                    cat.setCategoryId(r.getInt("Category_id"));
-                    cat.setName(r.getString("Name"));
-                    cat.setDescription(r.getString("Description"));
-                }else{
-                    //throw 404 if category doesn't exist
-                    throw new ResponseStatusException(HttpStatus.NOT_FOUND);
-                }
+                //null if the category doesn't exist, the controller turns that into a 404
+                return r.next() ? mapRow(r) : null;
             }
 
         }catch(SQLException e){
-            System.out.println("Error getting category with id: " + categoryId);
+            throw new RuntimeException("Error getting category with id: " + categoryId, e);
         }
-        return cat;
     }
 
     @Override
@@ -96,13 +79,20 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
         try(Connection c = ds.getConnection();
             PreparedStatement q = c.prepareStatement("""
                 INSERT INTO Categories(Name, Description) VALUES(?,?)
-                """)){
+                """, Statement.RETURN_GENERATED_KEYS)){
             q.setString(1, category.getName());         // Bind values to placeholders
             q.setString(2, category.getDescription());
 
             q.executeUpdate();                          // Execute INSERT
+
+            //hand back the new row's id
+            try(ResultSet keys = q.getGeneratedKeys()){
+                if(keys.next()){
+                    category.setCategoryId(keys.getInt(1));
+                }
+            }
         }catch (SQLException e){
-            System.out.println("Error adding category");
+            throw new RuntimeException("Error adding category", e);
         }
         return category;
     }
@@ -136,7 +126,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
 
             q.executeUpdate();                          // Execute update
         }catch(SQLException e){
-            System.out.println("Error updating category");
+            throw new RuntimeException("Error updating category " + categoryId, e);
         }
 
     }
@@ -153,7 +143,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
 
             q.executeUpdate();            // Execute delete
         }catch(SQLException e){
-            System.out.println("Error removing category" + e);
+            throw new RuntimeException("Error removing category " + categoryId, e);
         }
 
     }
@@ -164,14 +154,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao {
         String name = row.getString("name");
         String description = row.getString("description");
 
-        //double-brace initialization (creates anonymous object w/ setters)
-        Category category = new Category(){{
-            setCategoryId(categoryId);
-            setName(name);
-            setDescription(description);
-        }};
-
-        return category;
+        return new Category(categoryId, name, description);
     }
 
 }
\ No newline at end of file
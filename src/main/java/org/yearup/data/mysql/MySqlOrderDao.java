@@ -1,5 +1,7 @@
 package org.yearup.data.mysql;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.yearup.data.OrderDao;
 import org.yearup.models.Profile;
@@ -11,9 +13,12 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 
 @Component
 public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
+    private static final Logger logger = LoggerFactory.getLogger(MySqlOrderDao.class);
 
     //constructor receives a DataSource from Spring and passes it to the base class
     public MySqlOrderDao(DataSource ds) {
@@ -90,25 +95,66 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
 
     @Override
     public void updateStock(int productId, int quantity) {
+        /* stock taken at checkout doesn't go straight into the product change log: every log entry takes the
+        product_change_sequence row lock until it commits, and every checkout would queue on it.
+        the product is only marked in product_stock_changes (a lock on its own row, which the stock update
+        holds anyway) and MySqlProductDao.flushStockChanges records it in the log shortly after
+         */
+        try(Connection c = ds.getConnection()){
+            c.setAutoCommit(false);
+            try(PreparedStatement q = c.prepareStatement("""
+                    UPDATE products
+                    SET stock = stock - ?
+                    WHERE product_id = ?
+                    AND stock >= ?
+                    """);
+                PreparedStatement mark = c.prepareStatement("""
+                    INSERT IGNORE INTO product_stock_changes (product_id)
+                    VALUES (?)
+                    """)){
+                q.setInt(1, quantity);
+                q.setInt(2, productId);
+                q.setInt(3, quantity);
+
+                int rows = q.executeUpdate();
+
+                if(rows == 0){
+                    c.rollback();
+                    throw new RuntimeException("Were all out of product # " + productId);
+                }
+
+                mark.setInt(1, productId);
+                mark.executeUpdate();
+                c.commit();
+            }catch(SQLException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //the checkout has to stop, it must not go on as if the stock was taken
+            throw new RuntimeException("Error updating stock of product # " + productId, e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getUnitsSoldByProduct() {
+        Map<Integer, Integer> unitsSold = new HashMap<>();
+
         try(Connection c = ds.getConnection();
             PreparedStatement q = c.prepareStatement("""
-                UPDATE products
-                SET stock = stock - ?
-                WHERE product_id = ?
-                AND stock >= ?
-                """)){
-            q.setInt(1, quantity);
-            q.setInt(2, productId);
-            q.setInt(3, quantity);
-
-            int rows = q.executeUpdate();
-
-            if(rows == 0){
-                throw new RuntimeException("Were all out of product # " + productId);
+                SELECT product_id, SUM(quantity) AS units
+                FROM order_line_items
+                GROUP BY product_id
+                """);
+            ResultSet r = q.executeQuery()){
+            while(r.next()){
+                unitsSold.put(r.getInt("product_id"), r.getInt("units"));
             }
-
         }catch(SQLException e){
-            System.out.println("Error updating stock " + e);
+            //an empty map would read as "nothing ever sold", so the caller has to know
+            logger.error("Error getting units sold", e);
+            throw new RuntimeException("Error getting units sold", e);
         }
+        return unitsSold;
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,29 @@
 package org.yearup.data.mysql;
 
 import org.springframework.stereotype.Component;
+import org.yearup.data.ProductConsumer;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
 import org.yearup.models.Product;
 import org.yearup.data.ProductDao;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductPage;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 @Component //marks this class as a Spring bean so it can be injected where needed
 public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 {
+    //ids per IN (...) list in getByIds; keeps each statement well inside the server's packet size
+    static final int IN_CHUNK_SIZE = 500;
+    //how long the query of a streamed listing may run before the first row comes back
+    static final int STREAM_QUERY_TIMEOUT_SECONDS = 30;
+
     //pass the DataSource to the base class to manage connections
     public MySqlProductDao(DataSource dataSource)
     {
@@ -22,43 +33,31 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
     @Override
     public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory)
     {
-        List<Product> products = new ArrayList<>();
+        return search(categoryId, minPrice, maxPrice, subCategory, ProductFields.ALL);
+    }
 
-        //SQL query uses OR logic to allow optional filters using -1 / "" as default values
-        String sql = "SELECT * FROM products " +
-                "WHERE (category_id = ? OR ? = -1) " +
-                "   AND (price >= ? OR ? = -1) " +
-                "   AND (price >= ? OR ? = -1) " +
-                "   AND (subcategory = ? OR ? = '') ";
-
-        //normalize null inputs to fallback values for filtering logic
-        categoryId = categoryId == null ? -1 : categoryId;
-        minPrice = minPrice == null ? new BigDecimal("-1") : minPrice;
-        maxPrice = maxPrice == null ? new BigDecimal("-1") : maxPrice;
-        subCategory = subCategory == null ? "" : subCategory;
-
-        //connection + prepared statement using try-with-resources to avoid leaks
-        try (Connection connection = getConnection())
-        {
-            PreparedStatement statement = connection.prepareStatement(sql);
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                ProductFields fields)
+    {
+        List<Product> products = new ArrayList<>();
 
-            //set filter values twice due to OR matching structure
-            statement.setInt(1, categoryId);
-            statement.setInt(2, categoryId);
-            statement.setBigDecimal(3, minPrice);
-            statement.setBigDecimal(4, minPrice);
-            statement.setBigDecimal(5,maxPrice);
-            statement.setBigDecimal(6,maxPrice);
-            statement.setString(7, subCategory);
-            statement.setString(8, subCategory);
+        //only the filters that were supplied end up in the WHERE clause, so MySQL can use an index
+        ProductSearchQuery query = ProductSearchQuery.of(categoryId, minPrice, maxPrice, subCategory);
 
-            ResultSet row = statement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.getSql(fields)))
+        {
+            query.bind(statement);
 
-            //map every row to a Product model object
-            while (row.next())
+            try (ResultSet row = statement.executeQuery())
             {
-                Product product = mapRow(row);
-                products.add(product);
+                //map every row to a Product model object
+                while (row.next())
+                {
+                    Product product = fields.isAll() ? mapRow(row) : fields.map(row);
+                    products.add(product);
+                }
             }
         }
         catch (SQLException e)
@@ -101,6 +100,197 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return products;
     }
 
+    @Override
+    public ProductPage searchPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                  ProductSort sort, ProductCursor after, int limit)
+    {
+        List<Product> products = new ArrayList<>(limit + 1);
+
+        //keyset paging: seek past the cursor instead of using OFFSET, so every page costs the same
+        ProductSearchQuery query = ProductSearchQuery.of(categoryId, minPrice, maxPrice, subCategory);
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.getPageSql(sort, after != null)))
+        {
+            query.bindPage(statement, sort, after, limit);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    products.add(mapRow(row));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        //the query asks for one extra row to find out whether there is a next page
+        String nextCursor = null;
+        if (products.size() > limit)
+        {
+            products.remove(limit);
+            nextCursor = ProductCursor.after(sort, products.get(limit - 1)).encode();
+        }
+
+        return new ProductPage(products, nextCursor);
+    }
+
+    @Override
+    public ProductPage listByCategoryIdPage(int categoryId, ProductSort sort, ProductCursor after, int limit)
+    {
+        return searchPage(categoryId, null, null, null, sort, after, limit);
+    }
+
+    @Override
+    public void streamSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                             ProductConsumer consumer) throws IOException
+    {
+        ProductSearchQuery query = ProductSearchQuery.of(categoryId, minPrice, maxPrice, subCategory);
+        stream(query, consumer);
+    }
+
+    @Override
+    public void streamByCategoryId(int categoryId, ProductConsumer consumer) throws IOException
+    {
+        stream(ProductSearchQuery.of(categoryId, null, null, null), consumer);
+    }
+
+    //reads the rows through a forward-only cursor and hands each one over as soon as it is read,
+    //so only one row is held in memory no matter how many match.
+    //the connection is held until the last row is written to the client, so the time it may take is bounded:
+    //STREAM_QUERY_TIMEOUT_SECONDS for the query, and netTimeoutForStreamingResults (see DatabaseConfig)
+    //for a client that stops reading, after which MySQL drops the cursor and the write fails
+    private void stream(ProductSearchQuery query, ProductConsumer consumer) throws IOException
+    {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.getSql(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+        {
+            //Integer.MIN_VALUE tells the MySQL driver to stream rows instead of buffering the whole result
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setQueryTimeout(STREAM_QUERY_TIMEOUT_SECONDS);
+            query.bind(statement);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    consumer.accept(mapRow(row));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //loads every product, used to build the in-memory catalog snapshot
+    public List<Product> listAll()
+    {
+        List<Product> products = new ArrayList<>();
+
+        String sql = "SELECT * FROM products";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet row = statement.executeQuery())
+        {
+            while (row.next())
+            {
+                products.add(mapRow(row));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return products;
+    }
+
+    //ids of the products whose name, subcategory or description contains every term, most name matches first;
+    //the full-text search falls back to this when it keeps no index (see CatalogListener#growsWithCatalog)
+    public List<Integer> searchText(List<String> terms, int limit)
+    {
+        List<Integer> productIds = new ArrayList<>();
+        if (terms.isEmpty())
+            return productIds;
+
+        String matches = String.join(" AND ",
+                Collections.nCopies(terms.size(), "(name LIKE ? OR subcategory LIKE ? OR description LIKE ?)"));
+        String nameMatches = String.join(" + ", Collections.nCopies(terms.size(), "(name LIKE ?)"));
+        String sql = "SELECT product_id FROM products WHERE " + matches
+                + " ORDER BY " + nameMatches + " DESC, product_id LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            int index = 1;
+            for (String term : terms)
+            {
+                String pattern = "%" + escapeLike(term) + "%";
+                statement.setString(index++, pattern);
+                statement.setString(index++, pattern);
+                statement.setString(index++, pattern);
+            }
+            for (String term : terms)
+            {
+                statement.setString(index++, "%" + escapeLike(term) + "%");
+            }
+            statement.setInt(index, limit);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    productIds.add(row.getInt("product_id"));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return productIds;
+    }
+
+    //products with a word in their name starting with prefix, featured first;
+    //the typeahead falls back to this when it keeps no index (see CatalogListener#growsWithCatalog)
+    public List<Product> suggestByName(String prefix, int limit)
+    {
+        List<Product> products = new ArrayList<>();
+
+        String sql = "SELECT * FROM products WHERE name LIKE ? OR name LIKE ? ORDER BY featured DESC, name LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            String escaped = escapeLike(prefix);
+            statement.setString(1, escaped + "%");
+            statement.setString(2, "% " + escaped + "%");
+            statement.setInt(3, limit);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    products.add(mapRow(row));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return products;
+    }
+
     @Override
     public Product getById(int productId)
     {
@@ -125,6 +315,54 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return null;
     }
 
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds)
+    {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Integer, Product> found = new HashMap<>();
+
+        //one query per chunk on a single connection, instead of one connection and query per id
+        try (Connection connection = getConnection())
+        {
+            for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE)
+            {
+                List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+                String sql = "SELECT * FROM products WHERE product_id IN ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+
+                try (PreparedStatement statement = connection.prepareStatement(sql))
+                {
+                    for (int i = 0; i < chunk.size(); i++)
+                    {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+
+                    try (ResultSet row = statement.executeQuery())
+                    {
+                        while (row.next())
+                        {
+                            Product product = mapRow(row);
+                            found.put(product.getProductId(), product);
+                        }
+                    }
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (Integer id : ids)
+        {
+            Product product = found.get(id);
+            if (product != null)
+                products.add(product);
+        }
+        return products;
+    }
+
     @Override
     public Product create(Product product)
     {
@@ -132,38 +370,50 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         String sql = "INSERT INTO products(name, price, category_id, description, subcategory, image_url, stock, featured) " +
                 " VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
 
+        int productId = 0;
         try (Connection connection = getConnection())
         {
-            //ask for generated keys because we want the auto-increment ID back
-            PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-            statement.setString(1, product.getName());
-            statement.setBigDecimal(2, product.getPrice());
-            statement.setInt(3, product.getCategoryId());
-            statement.setString(4, product.getDescription());
-            statement.setString(5, product.getSubCategory());
-            statement.setString(6, product.getImageUrl());
-            statement.setInt(7, product.getStock());
-            statement.setBoolean(8, product.isFeatured());
-
-            int rowsAffected = statement.executeUpdate();
-
-            if (rowsAffected > 0) {
-                //retrieve ID from auto-increment column
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-
-                if (generatedKeys.next()) {
-                    int orderId = generatedKeys.getInt(1);
-
-                    //return newly inserted product
-                    return getById(orderId);
+            //the product and its change log entry are committed together
+            connection.setAutoCommit(false);
+            try
+            {
+                //ask for generated keys because we want the auto-increment ID back
+                PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+                statement.setString(1, product.getName());
+                statement.setBigDecimal(2, product.getPrice());
+                statement.setInt(3, product.getCategoryId());
+                statement.setString(4, product.getDescription());
+                statement.setString(5, product.getSubCategory());
+                statement.setString(6, product.getImageUrl());
+                statement.setInt(7, product.getStock());
+                statement.setBoolean(8, product.isFeatured());
+
+                int rowsAffected = statement.executeUpdate();
+
+                if (rowsAffected > 0) {
+                    //retrieve ID from auto-increment column
+                    ResultSet generatedKeys = statement.getGeneratedKeys();
+
+                    if (generatedKeys.next()) {
+                        productId = generatedKeys.getInt(1);
+                        ProductChangeLog.record(connection, productId, false);
+                    }
                 }
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
             }
         }
         catch (SQLException e)
         {
             throw new RuntimeException(e);
         }
-        return null;
+
+        //return newly inserted product
+        return productId == 0 ? null : getById(productId);
     }
 
     @Override
@@ -181,20 +431,32 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
                 "   , featured = COALESCE(?, featured) " +
                 " WHERE product_id = ?;";
 
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)
-        ){
-            statement.setString(1, product.getName());
-            statement.setBigDecimal(2, product.getPrice());
-            statement.setObject(3, product.getCategoryId());
-            statement.setString(4, product.getDescription());
-            statement.setString(5, product.getSubCategory());
-            statement.setString(6, product.getImageUrl());
-            statement.setObject(7, product.getStock());
-            statement.setObject(8, product.isFeatured());
-            statement.setInt(9, productId);
-
-            statement.executeUpdate();
+        try (Connection connection = getConnection())
+        {
+            //the update and its change log entry are committed together
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql))
+            {
+                statement.setString(1, product.getName());
+                statement.setBigDecimal(2, product.getPrice());
+                statement.setObject(3, product.getCategoryId());
+                statement.setString(4, product.getDescription());
+                statement.setString(5, product.getSubCategory());
+                statement.setString(6, product.getImageUrl());
+                statement.setObject(7, product.getStock());
+                statement.setObject(8, product.isFeatured());
+                statement.setInt(9, productId);
+
+                if (statement.executeUpdate() > 0)
+                    ProductChangeLog.record(connection, productId, false);
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
         }
         catch (SQLException e)
         {
@@ -211,10 +473,22 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 
         try (Connection connection = getConnection())
         {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setInt(1, productId);
+            //the delete and its tombstone are committed together
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql))
+            {
+                statement.setInt(1, productId);
 
-            statement.executeUpdate();
+                if (statement.executeUpdate() > 0)
+                    ProductChangeLog.record(connection, productId, true);
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
         }
         catch (SQLException e)
         {
@@ -222,6 +496,120 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         }
     }
 
+    //records every product marked in product_stock_changes (stock taken at checkout) as one change each,
+    //and returns how many there were. the marks are read and cleared in the same transaction, so a checkout
+    //marking a product again meanwhile waits and leaves a new mark for the next flush
+    public int flushStockChanges()
+    {
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                List<Integer> productIds = new ArrayList<>();
+                try (PreparedStatement select = connection.prepareStatement(
+                             "SELECT product_id FROM product_stock_changes ORDER BY product_id FOR UPDATE");
+                     ResultSet row = select.executeQuery())
+                {
+                    while (row.next())
+                    {
+                        productIds.add(row.getInt("product_id"));
+                    }
+                }
+
+                ProductChangeLog.recordAll(connection, productIds);
+
+                try (PreparedStatement clear = connection.prepareStatement(
+                        "DELETE FROM product_stock_changes WHERE product_id = ?"))
+                {
+                    for (Integer productId : productIds)
+                    {
+                        clear.setInt(1, productId);
+                        clear.addBatch();
+                    }
+                    clear.executeBatch();
+                }
+
+                connection.commit();
+                return productIds.size();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void refresh(Collection<Integer> productIds)
+    {
+        //every read goes to the database, so there is nothing to refresh here
+    }
+
+    @Override
+    public ProductChanges getChanges(long since, int limit)
+    {
+        //only each product's latest change counts; the join reads the product as it is now (null once deleted)
+        String sql = """
+                SELECT c.change_id, c.product_id AS changed_product_id, p.*
+                FROM product_changes c
+                LEFT JOIN products p ON p.product_id = c.product_id
+                WHERE c.change_id > ?
+                  AND c.change_id = (SELECT MAX(latest.change_id) FROM product_changes latest
+                                     WHERE latest.product_id = c.product_id)
+                ORDER BY c.change_id
+                LIMIT ?
+                """;
+
+        List<Product> products = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        long version = since;
+        boolean hasMore = false;
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setLong(1, since);
+            //one extra row tells us whether there is more to come
+            statement.setInt(2, limit + 1);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    if (products.size() + deleted.size() == limit)
+                    {
+                        hasMore = true;
+                        break;
+                    }
+
+                    version = row.getLong("change_id");
+                    if (row.getObject("product_id") == null)
+                        deleted.add(row.getInt("changed_product_id"));
+                    else
+                        products.add(mapRow(row));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return new ProductChanges(version, hasMore, products, deleted);
+    }
+
+    //user text used in a LIKE pattern matches literally
+    static String escapeLike(String text)
+    {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     //this is a helper method to convert a ResultSet row into a Product model instance
     protected static Product mapRow(ResultSet row) throws SQLException
     {
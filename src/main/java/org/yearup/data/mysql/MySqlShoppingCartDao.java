@@ -1,68 +1,124 @@
 package org.yearup.data.mysql;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.yearup.data.CartVersionConflictException;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFields;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.models.Product;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.*;
 
 @Component
 public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDao {
+    //rows per multi-row statement in saveCarts
+    static final int WRITE_CHUNK_SIZE = 500;
+
+    //read back on the same round trip as a cart mutation, the product details come from the catalog
+    private static final String SELECT_QUANTITIES = """
+            SELECT product_id, quantity
+            FROM shopping_cart
+            WHERE user_id = ?
+            """;
+
+    //a cart without a row in shopping_cart_versions is at version 0
+    private static final String SELECT_VERSION = """
+            SELECT version
+            FROM shopping_cart_versions
+            WHERE user_id = ?
+            """;
+
+    //moves the cart to its next version whatever it was at
+    private static final String BUMP_VERSION = """
+            INSERT INTO shopping_cart_versions (user_id, version) VALUES (?, 1)
+            ON DUPLICATE KEY UPDATE version = version + 1
+            """;
+
+    //moves a cart from version 0 to 1, only if it has never been changed
+    private static final String CLAIM_FIRST_VERSION = """
+            INSERT IGNORE INTO shopping_cart_versions (user_id, version) VALUES (?, 1)
+            """;
+
+    //moves the cart to its next version, only if it is still at the expected one
+    private static final String CLAIM_VERSION = """
+            UPDATE shopping_cart_versions
+            SET version = version + 1
+            WHERE user_id = ?
+            AND version = ?
+            """;
+
+    //what one deleteIdleCarts call removed: carts, and the shopping_cart rows they held
+    public record IdleCarts(int carts, int rows) {}
+
+    private final ProductDao productDao;
 
     //this is a constructor that passes the DataSource to the base class
-    public MySqlShoppingCartDao(DataSource ds) {
+    //the cart pool allows multi-statement strings, see DatabaseConfig
+    @Autowired
+    public MySqlShoppingCartDao(@Qualifier("cartDataSource") DataSource ds, ProductDao productDao) {
         super(ds);
+        this.productDao = productDao;
     }
 
     @Override
     public ShoppingCart getByUserId(int userId) {
+        return getByUserId(userId, ProductFields.ALL);
+    }
+
+    @Override
+    public ShoppingCart getByUserId(int userId, ProductFields fields) {
         //create an empty ShoppingCart that we will fill with results
         ShoppingCart cart = new ShoppingCart();
 
+        //line totals need the price, even when the client didn't ask to see it
+        ProductFields columns = fields.with(ProductFields.Field.PRICE);
+
         //open a database connection and prepare a SQL query
+        //USING merges the two product_id columns, so the projected column list needs no table prefix
+        //the cart's version is read in the same round trip
         try(Connection c = ds.getConnection();
             PreparedStatement q = c.prepareStatement("""
-                    SELECT user_id, S.product_id, quantity, P.*
+                    SELECT S.quantity, %s
                     FROM shopping_cart S
-                    JOIN products P ON (P.product_id = S.Product_ID)
-                    WHERE user_ID = ?
-                    """)) //get all cart items for this user and join with product details
+                    JOIN products P USING (product_id)
+                    WHERE S.user_id = ?;
+                    """.formatted(columns.getColumns()) + SELECT_VERSION)) //get all cart items for this user and join with product details
         {
-            //bind the userId to the query parameter
+            //bind the userId to both query parameters
             q.setInt(1, userId);
+            q.setInt(2, userId);
 
             //execute the query and receive the result set
-            ResultSet r = q.executeQuery();
-
-            //loop through each row in the result
-            while(r.next()){
-                //create a Product model and set its fields using the row data
-                Product product = new Product();
-                int quantity = r.getInt("quantity");
-
-                product.setProductId(r.getInt("product_id"));
-                product.setName(r.getString("name"));
-                product.setPrice(r.getBigDecimal("price"));
-                product.setCategoryId(r.getInt("category_id"));
-                product.setDescription(r.getString("description"));
-                product.setSubCategory(r.getString("subcategory"));
-                product.setStock(r.getInt("stock"));
-                product.setFeatured(r.getBoolean("featured"));
-                product.setImageUrl(r.getString("image_url"));
-
-                //create a ShoppingCartItem containing product + quantity + user
-                ShoppingCartItem cartItem = new ShoppingCartItem(product, userId, quantity);
-
-                //add the item to the cart
-                cart.add(cartItem);
+            q.execute();
+            try(ResultSet r = q.getResultSet()){
+                //loop through each row in the result
+                while(r.next()){
+                    //create a Product model from the selected columns
+                    Product product = columns.map(r);
+                    int quantity = r.getInt("quantity");
+
+                    //create a ShoppingCartItem containing product + quantity + user
+                    ShoppingCartItem cartItem = new ShoppingCartItem(product, userId, quantity);
+
+                    //add the item to the cart
+                    cart.add(cartItem);
+                }
+            }
+
+            if(q.getMoreResults()){
+                try(ResultSet r = q.getResultSet()){
+                    if(r.next())
+                        cart.setVersion(r.getLong("version"));
+                }
             }
         }catch(SQLException e){
             //log any SQL/connection errors
@@ -75,83 +131,452 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
 
     @Override
     public void addToCart(int productId, int userID) {
-        try (
-                Connection c = ds.getConnection();
-                /* insert the product into the cart with quantity 1.
-                if the user already has this product in their cart, update the existing row
-                by incrementing quantity instead of creating a duplicate row
-                 */
-                PreparedStatement q = c.prepareStatement("""
-                    INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1)
-                    ON DUPLICATE KEY UPDATE quantity = quantity + 1
-                    """)
-        ) {
-            //bind user ID and product ID to the query
-            q.setInt(1, userID);
-            q.setInt(2, productId);
-
-            q.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("Error adding to cart: " + e);
-        }
+        /* insert the product into the cart with quantity 1.
+        if the user already has this product in their cart, update the existing row
+        by incrementing quantity instead of creating a duplicate row
+         */
+        write(userID, """
+                INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1)
+                ON DUPLICATE KEY UPDATE quantity = quantity + 1
+                """, userID, productId);
     }
 
     @Override
     public void clearCart(int userID) {
-        try (
-                Connection c = ds.getConnection();
-                //delete all cart entries for the given user
-                PreparedStatement q = c.prepareStatement("""
-                    DELETE FROM shopping_cart
-                    WHERE user_id = ?
-                    """)
-        ) {
-            q.setInt(1, userID);
+        //delete all cart entries for the given user
+        write(userID, """
+                DELETE FROM shopping_cart
+                WHERE user_id = ?
+                """, userID);
+    }
+
+    @Override
+    public void editCart(int productID, int userID, int quantity) {
+        //a quantity of zero removes the item instead of leaving a row with quantity 0,
+        //either way only this user's row for this product is touched
+        write(userID, editStatement(quantity), editParameters(productID, userID, quantity));
+    }
+
+    @Override
+    public ShoppingCart addToCart(int productID, int userID, Long expectedVersion, ProductFields fields) {
+        //the table's foreign key would refuse an unknown product, so there is nothing to write
+        if (productDao.getById(productID) == null)
+            return mutate(userID, null, null);
+
+        return mutate(userID, expectedVersion, """
+                INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1)
+                ON DUPLICATE KEY UPDATE quantity = quantity + 1
+                """, userID, productID);
+    }
+
+    @Override
+    public ShoppingCart editCart(int productID, int userID, int quantity, Long expectedVersion, ProductFields fields) {
+        return mutate(userID, expectedVersion, editStatement(quantity), editParameters(productID, userID, quantity));
+    }
+
+    /* applies every line as one JDBC batch in one transaction and reads the new cart back before committing.
+    the batches are sent in one round trip each (rewriteBatchedStatements, see DatabaseConfig),
+    so ten changed lines cost about what one does.
+     */
+    @Override
+    public ShoppingCart editCart(Map<Integer, Integer> quantities, int userID, Long expectedVersion, ProductFields fields) {
+        try(Connection c = ds.getConnection()){
+            c.setAutoCommit(false);
+            try(PreparedStatement update = c.prepareStatement(editStatement(1));
+                PreparedStatement delete = c.prepareStatement(editStatement(0))){
+                claimVersion(c, userID, expectedVersion);
+
+                int updates = 0;
+                int deletes = 0;
+                for(Map.Entry<Integer, Integer> line : quantities.entrySet()){
+                    int quantity = line.getValue();
+                    if(quantity > 0){
+                        bind(update, editParameters(line.getKey(), userID, quantity));
+                        update.addBatch();
+                        updates++;
+                    }else{
+                        bind(delete, editParameters(line.getKey(), userID, quantity));
+                        delete.addBatch();
+                        deletes++;
+                    }
+                }
+                if(updates > 0)
+                    update.executeBatch();
+                if(deletes > 0)
+                    delete.executeBatch();
 
-            q.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("Error clearing cart: " + e);
+                ShoppingCart cart = readCart(c, userID, List.of());
+                c.commit();
+                return cart;
+            }catch(SQLException | RuntimeException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //none of the lines were applied, the caller has to know
+            throw new RuntimeException("Error changing the cart of user " + userID, e);
         }
     }
 
+    //every line goes out as one multi-row upsert, in one transaction with the version bump
     @Override
-    public void editCart(int productID, int userID, int quantity) {
-        //update the product quantity in the cart for the user
-        //only update rows where quantity is >= 1
-        try (
-                Connection c = ds.getConnection();
-                PreparedStatement q = c.prepareStatement("""
-                    UPDATE shopping_cart
-                    SET quantity = ?
-                    WHERE user_id = ?
-                    AND product_id = ?
-                    AND quantity >= 1
-                    """)
-        ) {
-            q.setInt(1, quantity);
-            q.setInt(2, userID);
-            q.setInt(3, productID);
-
-            q.executeUpdate();
-
-            /* if the requested quantity is zero
-            remove the item completely instead of leaving a row with quantity 0.
-             */
-            if (quantity == 0) {
-                try (
-                        PreparedStatement rQ = c.prepareStatement("""
-                            DELETE FROM shopping_cart
-                            WHERE quantity = 0
-                            """)
-                ) {
-                    rQ.executeUpdate();
-                } catch (SQLException e) {
-                    System.out.println("Error removing item: " + e);
+    public void mergeCart(Map<Integer, Integer> quantities, int userID) {
+        //the table's foreign key would refuse the whole statement over one unknown product
+        List<Product> known = productDao.getByIds(quantities.keySet());
+        if(known.isEmpty())
+            return;
+
+        List<long[]> rows = new ArrayList<>();
+        for(Product product : known){
+            rows.add(new long[]{userID, product.getProductId(), quantities.get(product.getProductId())});
+        }
+
+        try(Connection c = ds.getConnection()){
+            c.setAutoCommit(false);
+            try{
+                claimVersion(c, userID, null);
+                execute(c, "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES "
+                        + placeholders(rows.size(), "(?, ?, ?)")
+                        + " ON DUPLICATE KEY UPDATE quantity = GREATEST(quantity, VALUES(quantity))", rows);
+                c.commit();
+            }catch(SQLException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //the guest cart only exists on the client, the caller has to tell it to keep it
+            throw new RuntimeException("Error merging a guest cart into the cart of user " + userID, e);
+        }
+    }
+
+    /* runs the write and reads the user's new cart back on one connection, in one transaction.
+    without an expected version the version bump, the write and the reads go to MySQL as one
+    multi-statement string (allowMultiQueries, see DatabaseConfig): one round trip, then the commit.
+    with one, the version is claimed first, and the write only follows if that worked.
+    either way a write that fails takes its version bump with it.
+    the product details are in memory already in the catalog, so the read doesn't join products
+    and the fields projection only narrows the JSON.
+     */
+    private ShoppingCart mutate(int userId, Long expectedVersion, String write, long... parameters) {
+        try(Connection c = ds.getConnection()){
+            if(write == null)
+                return readCart(c, userId, List.of());
+
+            c.setAutoCommit(false);
+            try{
+                ShoppingCart cart;
+                if(expectedVersion == null){
+                    cart = readCart(c, userId, List.of(BUMP_VERSION, write), bumped(userId, parameters));
+                }else{
+                    claimVersion(c, userId, expectedVersion);
+                    cart = readCart(c, userId, List.of(write), parameters);
+                }
+                c.commit();
+                return cart;
+            }catch(SQLException | RuntimeException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //an empty cart would read as if the change went through and everything else was lost
+            throw new RuntimeException("Error changing the cart of user " + userId, e);
+        }
+    }
+
+    //moves the cart to its next version, or fails with a conflict if it isn't at the expected one anymore
+    private static void claimVersion(Connection c, int userId, Long expectedVersion) throws SQLException {
+        String sql = expectedVersion == null ? BUMP_VERSION
+                : expectedVersion == 0 ? CLAIM_FIRST_VERSION
+                : CLAIM_VERSION;
+
+        try(PreparedStatement q = c.prepareStatement(sql)){
+            q.setInt(1, userId);
+            if(expectedVersion != null && expectedVersion != 0)
+                q.setLong(2, expectedVersion);
+
+            //another change got there first, the row didn't match
+            if(q.executeUpdate() == 0 && expectedVersion != null)
+                throw new CartVersionConflictException(userId, expectedVersion);
+        }
+    }
+
+    /* sends the writes followed by the reads of the user's quantities and version as one statement string,
+    then walks its results: the update counts of the writes, the quantities, the version.
+     */
+    private ShoppingCart readCart(Connection c, int userId, List<String> writes, long... parameters) throws SQLException {
+        StringJoiner sql = new StringJoiner(";\n");
+        writes.forEach(write -> sql.add(write.strip()));
+        sql.add(SELECT_QUANTITIES.strip()).add(SELECT_VERSION.strip());
+
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        long version = 0;
+
+        try(PreparedStatement q = c.prepareStatement(sql.toString())){
+            bind(q, parameters);
+            q.setInt(parameters.length + 1, userId);
+            q.setInt(parameters.length + 2, userId);
+
+            //step over the update counts of the writes to the rows of the reads
+            boolean rows = q.execute();
+            while(!rows && q.getUpdateCount() != -1){
+                rows = q.getMoreResults();
+            }
+            if(rows){
+                try(ResultSet r = q.getResultSet()){
+                    while(r.next()){
+                        quantities.put(r.getInt("product_id"), r.getInt("quantity"));
+                    }
+                }
+                if(q.getMoreResults()){
+                    try(ResultSet r = q.getResultSet()){
+                        if(r.next())
+                            version = r.getLong("version");
+                    }
+                }
+            }
+        }
+
+        ShoppingCart cart = toCart(userId, quantities);
+        cart.setVersion(version);
+        return cart;
+    }
+
+    //runs a write together with the version bump it causes, in one round trip and one transaction
+    private void write(int userId, String write, long... parameters) {
+        try(Connection c = ds.getConnection()){
+            c.setAutoCommit(false);
+            try(PreparedStatement q = c.prepareStatement(BUMP_VERSION.strip() + ";\n" + write.strip())){
+                bind(q, bumped(userId, parameters));
+
+                q.execute();
+                c.commit();
+            }catch(SQLException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            System.out.println("Error changing cart: " + e);
+        }
+    }
+
+    //the parameters of a write, after the user id of the version bump that goes with it
+    private static long[] bumped(int userId, long... parameters) {
+        long[] bumped = new long[parameters.length + 1];
+        bumped[0] = userId;
+        System.arraycopy(parameters, 0, bumped, 1, parameters.length);
+        return bumped;
+    }
+
+    //product details come from the catalog, which has them in memory
+    private ShoppingCart toCart(int userId, Map<Integer, Integer> quantities) {
+        ShoppingCart cart = new ShoppingCart();
+        for(Product product : productDao.getByIds(quantities.keySet())){
+            cart.add(new ShoppingCartItem(product, userId, quantities.get(product.getProductId())));
+        }
+        return cart;
+    }
+
+    //only rows already in the cart are changed, a quantity of 0 or less deletes the row
+    private static String editStatement(int quantity) {
+        return quantity > 0
+                ? """
+                UPDATE shopping_cart
+                SET quantity = ?
+                WHERE user_id = ?
+                AND product_id = ?
+                """
+                : """
+                DELETE FROM shopping_cart
+                WHERE user_id = ?
+                AND product_id = ?
+                """;
+    }
+
+    private static long[] editParameters(int productID, int userID, int quantity) {
+        return quantity > 0 ? new long[]{quantity, userID, productID} : new long[]{userID, productID};
+    }
+
+    private static void bind(PreparedStatement q, long... parameters) throws SQLException {
+        for(int i = 0; i < parameters.length; i++){
+            q.setLong(i + 1, parameters[i]);
+        }
+    }
+
+    //product id -> quantity for one user's cart, without the product details
+    public Map<Integer, Integer> getQuantities(int userId) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+
+        try(Connection c = ds.getConnection();
+            PreparedStatement q = c.prepareStatement(SELECT_QUANTITIES)){
+            q.setInt(1, userId);
+
+            try(ResultSet r = q.executeQuery()){
+                while(r.next()){
+                    quantities.put(r.getInt("product_id"), r.getInt("quantity"));
                 }
             }
+        }catch(SQLException e){
+            //callers keep the cart in memory, they have to know it wasn't loaded
+            throw new RuntimeException(e);
+        }
+        return quantities;
+    }
 
-        } catch (SQLException e) {
-            System.out.println("Error editing cart: " + e);
+    //the cart's current version, 0 if it has never been changed
+    public long getVersion(int userId) {
+        try(Connection c = ds.getConnection();
+            PreparedStatement q = c.prepareStatement(SELECT_VERSION)){
+            q.setInt(1, userId);
+
+            try(ResultSet r = q.executeQuery()){
+                return r.next() ? r.getLong("version") : 0;
+            }
+        }catch(SQLException e){
+            //callers keep the cart in memory, they have to know it wasn't loaded
+            throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /* writes the final quantities of many carts in one transaction (userId -> productId -> quantity).
+    carts in replaced lose all their rows first, a quantity of 0 deletes the row.
+    versions holds each cart's version as of these quantities; a stored version never goes down.
+    each kind of write goes out as multi-row statements of up to WRITE_CHUNK_SIZE rows,
+    so a flush costs a handful of round trips however many carts it covers.
+     */
+    public void saveCarts(Map<Integer, Map<Integer, Integer>> quantities, Set<Integer> replaced, Map<Integer, Long> versions) {
+        List<long[]> upserts = new ArrayList<>();
+        List<long[]> deletes = new ArrayList<>();
+        quantities.forEach((userId, products) -> products.forEach((productId, quantity) -> {
+            if (quantity > 0)
+                upserts.add(new long[]{userId, productId, quantity});
+            else if (!replaced.contains(userId))
+                deletes.add(new long[]{userId, productId});
+        }));
+        List<long[]> versionRows = new ArrayList<>();
+        versions.forEach((userId, version) -> versionRows.add(new long[]{userId, version}));
+
+        try(Connection c = ds.getConnection()){
+            c.setAutoCommit(false);
+            try{
+                List<Integer> cleared = new ArrayList<>(replaced);
+                for(int from = 0; from < cleared.size(); from += WRITE_CHUNK_SIZE){
+                    List<Integer> chunk = cleared.subList(from, Math.min(from + WRITE_CHUNK_SIZE, cleared.size()));
+                    executeForUsers(c, "DELETE FROM shopping_cart WHERE user_id IN (" + placeholders(chunk.size(), "?") + ")",
+                            chunk);
+                }
+                for(int from = 0; from < deletes.size(); from += WRITE_CHUNK_SIZE){
+                    List<long[]> chunk = deletes.subList(from, Math.min(from + WRITE_CHUNK_SIZE, deletes.size()));
+                    execute(c, "DELETE FROM shopping_cart WHERE (user_id, product_id) IN ("
+                            + placeholders(chunk.size(), "(?, ?)") + ")", chunk);
+                }
+                for(int from = 0; from < upserts.size(); from += WRITE_CHUNK_SIZE){
+                    List<long[]> chunk = upserts.subList(from, Math.min(from + WRITE_CHUNK_SIZE, upserts.size()));
+                    execute(c, "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES "
+                            + placeholders(chunk.size(), "(?, ?, ?)")
+                            + " ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)", chunk);
+                }
+                for(int from = 0; from < versionRows.size(); from += WRITE_CHUNK_SIZE){
+                    List<long[]> chunk = versionRows.subList(from, Math.min(from + WRITE_CHUNK_SIZE, versionRows.size()));
+                    execute(c, "INSERT INTO shopping_cart_versions (user_id, version) VALUES "
+                            + placeholders(chunk.size(), "(?, ?)")
+                            + " ON DUPLICATE KEY UPDATE version = GREATEST(version, VALUES(version))", chunk);
+                }
+                c.commit();
+            }catch(SQLException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //the caller keeps the changes pending and tries again
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* deletes up to limit carts that haven't changed for idleSeconds, oldest first, with their version rows.
+    the candidates are read from the last_modified index without locking; they are then locked by primary key
+    and checked again in a short transaction, so a cart changed in between is kept and nothing but the
+    deleted carts' own rows is ever locked.
+     */
+    public IdleCarts deleteIdleCarts(long idleSeconds, int limit) {
+        try(Connection c = ds.getConnection()){
+            List<Integer> candidates = new ArrayList<>();
+            try(PreparedStatement q = c.prepareStatement("""
+                    SELECT user_id
+                    FROM shopping_cart_versions
+                    WHERE last_modified < NOW() - INTERVAL ? SECOND
+                    ORDER BY last_modified
+                    LIMIT ?
+                    """)){
+                q.setLong(1, idleSeconds);
+                q.setInt(2, limit);
+                try(ResultSet r = q.executeQuery()){
+                    while(r.next()){
+                        candidates.add(r.getInt("user_id"));
+                    }
+                }
+            }
+            if(candidates.isEmpty())
+                return new IdleCarts(0, 0);
+
+            c.setAutoCommit(false);
+            try{
+                List<Integer> expired = new ArrayList<>();
+                try(PreparedStatement q = c.prepareStatement("SELECT user_id FROM shopping_cart_versions WHERE user_id IN ("
+                        + placeholders(candidates.size(), "?") + ") AND last_modified < NOW() - INTERVAL ? SECOND FOR UPDATE")){
+                    int index = 1;
+                    for(int candidate : candidates){
+                        q.setInt(index++, candidate);
+                    }
+                    q.setLong(index, idleSeconds);
+                    try(ResultSet r = q.executeQuery()){
+                        while(r.next()){
+                            expired.add(r.getInt("user_id"));
+                        }
+                    }
+                }
+
+                int rows = 0;
+                if(!expired.isEmpty()){
+                    String userIds = placeholders(expired.size(), "?");
+                    rows = executeForUsers(c, "DELETE FROM shopping_cart WHERE user_id IN (" + userIds + ")", expired);
+                    executeForUsers(c, "DELETE FROM shopping_cart_versions WHERE user_id IN (" + userIds + ")", expired);
+                }
+                c.commit();
+                return new IdleCarts(expired.size(), rows);
+            }catch(SQLException e){
+                c.rollback();
+                throw e;
+            }
+        }catch(SQLException e){
+            //the sweeper counts the failure and tries again on its next run
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int execute(Connection c, String sql, List<long[]> rows) throws SQLException {
+        try(PreparedStatement q = c.prepareStatement(sql)){
+            int index = 1;
+            for(long[] row : rows){
+                for(long value : row){
+                    q.setLong(index++, value);
+                }
+            }
+            return q.executeUpdate();
+        }
+    }
+
+    //binds one user id per placeholder
+    private static int executeForUsers(Connection c, String sql, List<Integer> userIds) throws SQLException {
+        try(PreparedStatement q = c.prepareStatement(sql)){
+            int index = 1;
+            for(int userId : userIds){
+                q.setInt(index++, userId);
+            }
+            return q.executeUpdate();
+        }
+    }
+
+    private static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+}
@@ -0,0 +1,82 @@
+package org.yearup.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writes to the product_changes table, always on the connection (and so in the transaction)
+ * of the product write being recorded.
+ * <p>
+ * The next change id is taken from product_change_sequence, whose row stays locked until that
+ * transaction commits. Writers therefore commit in change id order, and a client that has seen
+ * change n has seen everything before it.
+ * <p>
+ * That lock makes every recorded write queue behind the one before it, which is fine for catalog edits
+ * (create, update, delete). Stock taken at checkout is too frequent to take it every time: a checkout only
+ * marks the product in product_stock_changes, and {@link #recordAll} later turns the marked products into
+ * one change each, however many orders took from them in between.
+ */
+final class ProductChangeLog
+{
+    private static final String NEXT_ID_SQL = """
+            UPDATE product_change_sequence
+            SET last_change_id = LAST_INSERT_ID(last_change_id + 1)
+            WHERE id = 1
+            """;
+    private static final String INSERT_SQL = """
+            INSERT INTO product_changes (change_id, product_id, deleted)
+            VALUES (LAST_INSERT_ID(), ?, ?)
+            """;
+
+    //reserves a block of ids in one go; LAST_INSERT_ID() is then the last id of the block
+    private static final String RESERVE_IDS_SQL = """
+            UPDATE product_change_sequence
+            SET last_change_id = LAST_INSERT_ID(last_change_id + ?)
+            WHERE id = 1
+            """;
+    private static final String INSERT_RESERVED_SQL = """
+            INSERT INTO product_changes (change_id, product_id, deleted)
+            VALUES (LAST_INSERT_ID() - ?, ?, 0)
+            """;
+
+    private ProductChangeLog()
+    {
+    }
+
+    static void record(Connection connection, int productId, boolean deleted) throws SQLException
+    {
+        try (PreparedStatement nextId = connection.prepareStatement(NEXT_ID_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL))
+        {
+            nextId.executeUpdate();
+
+            insert.setInt(1, productId);
+            insert.setBoolean(2, deleted);
+            insert.executeUpdate();
+        }
+    }
+
+    //one change per product, all under a single take of the sequence lock
+    static void recordAll(Connection connection, List<Integer> productIds) throws SQLException
+    {
+        if (productIds.isEmpty())
+            return;
+
+        try (PreparedStatement reserve = connection.prepareStatement(RESERVE_IDS_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_RESERVED_SQL))
+        {
+            reserve.setInt(1, productIds.size());
+            reserve.executeUpdate();
+
+            for (int i = 0; i < productIds.size(); i++)
+            {
+                insert.setInt(1, productIds.size() - 1 - i);
+                insert.setInt(2, productIds.get(i));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.yearup.data.mysql;
+
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the SQL for a product search using only the filters that were actually supplied.
+ * <p>
+ * Leaving out unused filters (instead of writing {@code (category_id = ? OR ? = -1)}) lets MySQL
+ * pick an index. Predicates are written in the same order as the columns of
+ * ix_products_category_subcategory_price (category_id, subcategory, price).
+ * <p>
+ * There are only 16 possible combinations of filters, so the SQL text for every combination is
+ * built once up front. Each search therefore reuses the exact same statement text, which is what
+ * lets the driver's prepared statement cache recognize it. The same goes for the paged form of each
+ * combination, which adds a keyset condition ("after this row"), an ORDER BY and a LIMIT.
+ */
+public final class ProductSearchQuery
+{
+    //one bit per filter, the combination of bits is the query "shape"
+    static final int CATEGORY = 1;
+    static final int SUB_CATEGORY = 2;
+    static final int MIN_PRICE = 4;
+    static final int MAX_PRICE = 8;
+
+    private static final String SELECT = "SELECT * FROM products";
+    private static final String[] WHERE_CLAUSES = new String[16];
+
+    //indexed by [shape][sort][0 = first page, 1 = page after a cursor]
+    private static final String[][][] PAGE_SQL = new String[16][ProductSort.values().length][2];
+
+    static
+    {
+        for (int shape = 0; shape < WHERE_CLAUSES.length; shape++)
+        {
+            WHERE_CLAUSES[shape] = buildWhere(shape);
+
+            for (ProductSort sort : ProductSort.values())
+            {
+                PAGE_SQL[shape][sort.ordinal()][0] = buildPage(shape, sort, false);
+                PAGE_SQL[shape][sort.ordinal()][1] = buildPage(shape, sort, true);
+            }
+        }
+    }
+
+    private final int shape;
+    private final List<Object> parameters;
+
+    private ProductSearchQuery(int shape, List<Object> parameters)
+    {
+        this.shape = shape;
+        this.parameters = parameters;
+    }
+
+    //null filters (and a blank subCategory) are left out of the query
+    public static ProductSearchQuery of(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory)
+    {
+        int shape = 0;
+        List<Object> parameters = new ArrayList<>(4);
+
+        //parameters are added in the same order the predicates are written
+        if (categoryId != null)
+        {
+            shape |= CATEGORY;
+            parameters.add(categoryId);
+        }
+        if (subCategory != null && !subCategory.isBlank())
+        {
+            shape |= SUB_CATEGORY;
+            parameters.add(subCategory);
+        }
+        if (minPrice != null)
+        {
+            shape |= MIN_PRICE;
+            parameters.add(minPrice);
+        }
+        if (maxPrice != null)
+        {
+            shape |= MAX_PRICE;
+            parameters.add(maxPrice);
+        }
+
+        return new ProductSearchQuery(shape, parameters);
+    }
+
+    public int getShape()
+    {
+        return shape;
+    }
+
+    //the WHERE clause (including the leading " WHERE"), or an empty string when nothing is filtered
+    public String getWhere()
+    {
+        return WHERE_CLAUSES[shape];
+    }
+
+    public String getSql()
+    {
+        return SELECT + WHERE_CLAUSES[shape];
+    }
+
+    //the same search reading only the projected columns
+    public String getSql(ProductFields fields)
+    {
+        return fields.isAll() ? getSql() : "SELECT " + fields.getColumns() + " FROM products" + WHERE_CLAUSES[shape];
+    }
+
+    public String getPageSql(ProductSort sort, boolean afterCursor)
+    {
+        return PAGE_SQL[shape][sort.ordinal()][afterCursor ? 1 : 0];
+    }
+
+    public List<Object> getParameters()
+    {
+        return parameters;
+    }
+
+    //binds the filter values starting at the first parameter, returns the next free parameter index
+    public int bind(PreparedStatement statement) throws SQLException
+    {
+        int index = 1;
+        for (Object parameter : parameters)
+        {
+            statement.setObject(index++, parameter);
+        }
+        return index;
+    }
+
+    //binds the filters, the cursor (if any) and the limit for getPageSql; one extra row is asked for
+    //so the caller can tell whether there is a next page
+    public void bindPage(PreparedStatement statement, ProductSort sort, ProductCursor after, int limit) throws SQLException
+    {
+        int index = bind(statement);
+
+        if (after != null)
+        {
+            if (sort == ProductSort.NEWEST)
+            {
+                statement.setInt(index++, after.getProductId());
+            }
+            else
+            {
+                statement.setObject(index++, after.getSortValue());
+                statement.setObject(index++, after.getSortValue());
+                statement.setInt(index++, after.getProductId());
+            }
+        }
+
+        statement.setInt(index, limit + 1);
+    }
+
+    private static String buildPage(int shape, ProductSort sort, boolean afterCursor)
+    {
+        StringBuilder sql = new StringBuilder(SELECT).append(WHERE_CLAUSES[shape]);
+        String direction = sort.isDescending() ? " DESC" : "";
+        String comparison = sort.isDescending() ? " < ?" : " > ?";
+
+        if (afterCursor)
+        {
+            sql.append(shape == 0 ? " WHERE " : " AND ");
+
+            //(column, product_id) > (?, ?) written out so MySQL can use it as an index range
+            if (sort == ProductSort.NEWEST)
+                sql.append("product_id").append(comparison);
+            else
+                sql.append("(").append(sort.getColumn()).append(comparison)
+                   .append(" OR (").append(sort.getColumn()).append(" = ? AND product_id").append(comparison).append("))");
+        }
+
+        sql.append(" ORDER BY ");
+        if (sort != ProductSort.NEWEST)
+            sql.append(sort.getColumn()).append(direction).append(", ");
+        sql.append("product_id").append(direction);
+
+        return sql.append(" LIMIT ?").toString();
+    }
+
+    private static String buildWhere(int shape)
+    {
+        List<String> predicates = new ArrayList<>(4);
+
+        if ((shape & CATEGORY) != 0)
+            predicates.add("category_id = ?");
+        if ((shape & SUB_CATEGORY) != 0)
+            predicates.add("subcategory = ?");
+        if ((shape & MIN_PRICE) != 0)
+            predicates.add("price >= ?");
+        if ((shape & MAX_PRICE) != 0)
+            predicates.add("price <= ?");
+
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+}
@@ -0,0 +1,41 @@
+package org.yearup.models;
+
+//one line of a PUT /cart body: the new quantity of a product already in the cart, 0 removes it
+public class CartLineUpdate
+{
+    //lines per PUT /cart request
+    public static final int MAX_LINES = 100;
+
+    private int productId;
+    private int quantity;
+
+    public CartLineUpdate()
+    {
+    }
+
+    public CartLineUpdate(int productId, int quantity)
+    {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity)
+    {
+        this.quantity = quantity;
+    }
+}
@@ -9,6 +9,8 @@ import org.yearup.data.ProfileDao;
 import org.yearup.data.ShoppingCartDao;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service //marks this as a Spring service component (business logic layer)
 public class CheckoutService {
@@ -61,10 +63,18 @@ public class CheckoutService {
         //loop through each item in the cart:
         //reduce stock from inventory
         //write individual line items to order_items table
-        cart.getItems().values().forEach(item -> {
-            orderDao.updateStock(item.getProductId(), item.getQuantity());
-            orderDao.addOrderToDatabase(orderId, item);
-        });
+        List<Integer> stockTaken = new ArrayList<>();
+        try {
+            for (ShoppingCartItem item : cart.getItems().values()) {
+                orderDao.updateStock(item.getProductId(), item.getQuantity());
+                stockTaken.add(item.getProductId());
+                orderDao.addOrderToDatabase(orderId, item);
+            }
+        } finally {
+            //stock was changed behind the product dao, so let it re-read those products, all in one go.
+            //each decrement is committed on its own, so this is needed even when a later item failed
+            productDao.refresh(stockTaken);
+        }
 
         //clear the cart after successful checkout
         shoppingCartDao.clearCart(userId);
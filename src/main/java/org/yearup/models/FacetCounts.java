@@ -0,0 +1,54 @@
+package org.yearup.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class FacetCounts
+{
+    //number of products per category id, per subcategory and per price band (e.g. "25-50", "500+")
+    private Map<Integer, Integer> categories = new TreeMap<>();
+    private Map<String, Integer> subCategories = new TreeMap<>();
+    private Map<String, Integer> priceBands = new LinkedHashMap<>();
+
+    public FacetCounts()
+    {
+    }
+
+    public FacetCounts(Map<Integer, Integer> categories, Map<String, Integer> subCategories, Map<String, Integer> priceBands)
+    {
+        this.categories = categories;
+        this.subCategories = subCategories;
+        this.priceBands = priceBands;
+    }
+
+    public Map<Integer, Integer> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(Map<Integer, Integer> categories)
+    {
+        this.categories = categories;
+    }
+
+    public Map<String, Integer> getSubCategories()
+    {
+        return subCategories;
+    }
+
+    public void setSubCategories(Map<String, Integer> subCategories)
+    {
+        this.subCategories = subCategories;
+    }
+
+    public Map<String, Integer> getPriceBands()
+    {
+        return priceBands;
+    }
+
+    public void setPriceBands(Map<String, Integer> priceBands)
+    {
+        this.priceBands = priceBands;
+    }
+}
@@ -0,0 +1,76 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money as a long count of cents, so cart and checkout arithmetic runs on primitives
+ * instead of allocating a BigDecimal per step. BigDecimal is only used where an amount comes in
+ * or goes out: JSON, JDBC.
+ * <p>
+ * The rounding rules:
+ * <ul>
+ *     <li>an amount with more than two decimals is rounded half-even to the cent when it comes in
+ *     (prices are DECIMAL(10, 2), so stored ones never are)</li>
+ *     <li>a discount rate is kept in basis points (0.25 is 2500), rounded half-even</li>
+ *     <li>the discount on a line is rounded half-even to the cent, once per line</li>
+ *     <li>sums and products are exact: they fail with ArithmeticException rather than overflow</li>
+ * </ul>
+ * Amounts going out always have two decimals, 19.9 goes out as 19.90.
+ */
+public final class Money
+{
+    public static final int SCALE = 2;
+
+    private static final int BASIS_POINTS = 10_000;
+
+    private Money()
+    {
+    }
+
+    //19.99 -> 1999; null counts as nothing
+    public static long cents(BigDecimal amount)
+    {
+        if (amount == null)
+            return 0;
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    //1999 -> 19.99
+    public static BigDecimal toBigDecimal(long cents)
+    {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    //a fraction such as 0.25 -> 2500; null counts as no discount
+    public static int basisPoints(BigDecimal fraction)
+    {
+        if (fraction == null)
+            return 0;
+        return fraction.movePointRight(4).setScale(0, RoundingMode.HALF_EVEN).intValueExact();
+    }
+
+    public static long times(long cents, int quantity)
+    {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    public static long plus(long cents, long moreCents)
+    {
+        return Math.addExact(cents, moreCents);
+    }
+
+    //the given share of an amount, rounded half-even to the cent
+    public static long share(long cents, int basisPoints)
+    {
+        if (basisPoints == 0)
+            return 0;
+
+        long scaled = Math.multiplyExact(cents, basisPoints);
+        long share = Math.floorDiv(scaled, BASIS_POINTS);
+        long remainder = Math.floorMod(scaled, BASIS_POINTS);
+        if (remainder * 2 > BASIS_POINTS || (remainder * 2 == BASIS_POINTS && (share & 1) != 0))
+            share++;
+        return share;
+    }
+}
@@ -1,5 +1,7 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 
 public class Product{
@@ -7,6 +9,8 @@ public class Product{
     private Integer productId;
     private String name;
     private BigDecimal price;
+    //the price in cents, kept next to it for cart arithmetic (see Money)
+    private long priceCents;
     private Integer categoryId;
     private String description;
     private String subCategory;
@@ -20,6 +24,7 @@ public class Product{
         this.productId = productId;
         this.name = name;
         this.price = price;
+        this.priceCents = Money.cents(price);
         this.categoryId = categoryId;
         this.description = description;
         this.subCategory = subCategory;
@@ -56,6 +61,13 @@ public class Product{
     public void setPrice(BigDecimal price)
     {
         this.price = price;
+        this.priceCents = Money.cents(price);
+    }
+
+    @JsonIgnore
+    public long getPriceCents()
+    {
+        return priceCents;
     }
 
     public Integer getCategoryId()
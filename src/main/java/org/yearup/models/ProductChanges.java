@@ -0,0 +1,71 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductChanges
+{
+    //most changes a client may ask for in one call
+    public static final int MAX_LIMIT = 1000;
+
+    //pass as since= on the next call
+    private long version;
+    //true when there are more changes after version, ask again straight away
+    private boolean hasMore;
+    //products created or updated since the requested version, as they are now
+    private List<Product> products = new ArrayList<>();
+    //ids of products deleted since the requested version (tombstones)
+    private List<Integer> deleted = new ArrayList<>();
+
+    public ProductChanges()
+    {
+    }
+
+    public ProductChanges(long version, boolean hasMore, List<Product> products, List<Integer> deleted)
+    {
+        this.version = version;
+        this.hasMore = hasMore;
+        this.products = products;
+        this.deleted = deleted;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    public boolean isHasMore()
+    {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore)
+    {
+        this.hasMore = hasMore;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public List<Integer> getDeleted()
+    {
+        return deleted;
+    }
+
+    public void setDeleted(List<Integer> deleted)
+    {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,45 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductPage
+{
+    //largest page a client may ask for
+    public static final int MAX_LIMIT = 100;
+
+    private List<Product> products = new ArrayList<>();
+
+    //opaque token for the next page, null when this is the last page
+    private String nextCursor;
+
+    public ProductPage()
+    {
+    }
+
+    public ProductPage(List<Product> products, String nextCursor)
+    {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor)
+    {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,40 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductSearchResult
+{
+    private List<Product> products = new ArrayList<>();
+    private FacetCounts facets = new FacetCounts();
+
+    public ProductSearchResult()
+    {
+    }
+
+    public ProductSearchResult(List<Product> products, FacetCounts facets)
+    {
+        this.products = products;
+        this.facets = facets;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public FacetCounts getFacets()
+    {
+        return facets;
+    }
+
+    public void setFacets(FacetCounts facets)
+    {
+        this.facets = facets;
+    }
+}
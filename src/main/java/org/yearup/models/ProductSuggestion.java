@@ -0,0 +1,37 @@
+package org.yearup.models;
+
+public class ProductSuggestion
+{
+    private int productId;
+    private String name;
+
+    public ProductSuggestion()
+    {
+    }
+
+    public ProductSuggestion(int productId, String name)
+    {
+        this.productId = productId;
+        this.name = name;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+}
@@ -1,5 +1,7 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
@@ -7,6 +9,8 @@ import java.util.Map;
 public class ShoppingCart
 {
     private Map<Integer, ShoppingCartItem> items = new HashMap<>();
+    //goes up with every change to the cart, sent as the ETag rather than in the body
+    private long version;
 
     public ShoppingCart() {}
 
@@ -24,6 +28,17 @@ public class ShoppingCart
         this.items = items;
     }
 
+    @JsonIgnore
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
     public boolean contains(int productId)
     {
         return items.containsKey(productId);
@@ -41,11 +56,18 @@ public class ShoppingCart
 
     public BigDecimal getTotal()
     {
-        BigDecimal total = items.values()
-                                .stream()
-                                .map(i -> i.getLineTotal())
-                                .reduce( BigDecimal.ZERO, (lineTotal, subTotal) -> subTotal.add(lineTotal));
+        return Money.toBigDecimal(getTotalCents());
+    }
 
+    //the sum of the line totals in cents, see Money
+    @JsonIgnore
+    public long getTotalCents()
+    {
+        long total = 0;
+        for (ShoppingCartItem item : items.values())
+        {
+            total = Money.plus(total, item.getLineTotalCents());
+        }
         return total;
     }
 
@@ -9,8 +9,13 @@ public class ShoppingCartItem
     private Product product = null;
     private int quantity = 1;
     private BigDecimal discountPercent = BigDecimal.ZERO;
+    //the same discount in basis points, for the arithmetic in cents
+    private int discountBasisPoints;
     private Integer userID;
 
+    //request bodies (PUT /cart/products/{id}) are read through this one
+    public ShoppingCartItem() {}
+
     public ShoppingCartItem(Product product, Integer userID, int quantity) {
         this.product = product;
         this.quantity = quantity;
@@ -45,6 +50,7 @@ public class ShoppingCartItem
     public void setDiscountPercent(BigDecimal discountPercent)
     {
         this.discountPercent = discountPercent;
+        this.discountBasisPoints = Money.basisPoints(discountPercent);
     }
 
     @JsonIgnore
@@ -55,12 +61,14 @@ public class ShoppingCartItem
 
     public BigDecimal getLineTotal()
     {
-        BigDecimal basePrice = product.getPrice();
-        BigDecimal quantity = new BigDecimal(this.quantity);
-
-        BigDecimal subTotal = basePrice.multiply(quantity);
-        BigDecimal discountAmount = subTotal.multiply(discountPercent);
+        return Money.toBigDecimal(getLineTotalCents());
+    }
 
-        return subTotal.subtract(discountAmount);
+    //price x quantity less the discount, rounded to the cent (see Money); nothing is allocated
+    @JsonIgnore
+    public long getLineTotalCents()
+    {
+        long subTotal = Money.times(product.getPriceCents(), quantity);
+        return subTotal - Money.share(subTotal, discountBasisPoints);
     }
 }
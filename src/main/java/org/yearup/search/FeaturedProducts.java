@@ -0,0 +1,191 @@
+package org.yearup.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+
+import java.util.*;
+
+/**
+ * The featured products, ranked ahead of time for the home page: in stock first, then best sellers
+ * (units sold, loaded from order history when the catalog is loaded and refreshed by
+ * {@link UnitsSoldRefresher}), then cheapest first.
+ * <p>
+ * Readers get a prebuilt list, overall or per category, without touching the database.
+ * The ranking is redone only when a change can move a product in it: the featured flag, stock,
+ * price or category. Any other edit to a featured product just swaps the product in place.
+ */
+@Component
+public class FeaturedProducts implements CatalogListener
+{
+    //one consistent view for readers, replaced as a whole on every change
+    private static final class Ranking
+    {
+        private static final Ranking EMPTY = new Ranking(Collections.emptyList(), Collections.emptyMap());
+
+        private final List<Product> all;
+        private final Map<Integer, List<Product>> byCategory;
+
+        private Ranking(List<Product> all, Map<Integer, List<Product>> byCategory)
+        {
+            this.all = all;
+            this.byCategory = byCategory;
+        }
+    }
+
+    private final OrderDao orderDao;
+    private final Map<Integer, Product> featured = new HashMap<>();
+    private Map<Integer, Integer> unitsSold = Collections.emptyMap();
+    private volatile Ranking ranking = Ranking.EMPTY;
+
+    @Autowired
+    public FeaturedProducts(OrderDao orderDao)
+    {
+        this.orderDao = orderDao;
+    }
+
+    //the first limit featured products, best first; categoryId null means the whole catalog
+    public List<Product> top(Integer categoryId, int limit)
+    {
+        Ranking current = ranking;
+        List<Product> ranked = categoryId == null
+                ? current.all
+                : current.byCategory.getOrDefault(categoryId, Collections.emptyList());
+
+        return ranked.subList(0, Math.min(limit, ranked.size()));
+    }
+
+    public int size()
+    {
+        return ranking.all.size();
+    }
+
+    @Override
+    public synchronized void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        unitsSold = loadUnitsSold();
+
+        featured.clear();
+        for (Product product : snapshot.getAll())
+        {
+            if (isFeatured(product))
+                featured.put(product.getProductId(), product);
+        }
+        rank();
+    }
+
+    //the order history only adds the best seller order, so the last figures (or none) are used
+    //when it can't be read; the dao has logged why
+    private Map<Integer, Integer> loadUnitsSold()
+    {
+        try
+        {
+            return orderDao.getUnitsSoldByProduct();
+        }
+        catch (RuntimeException e)
+        {
+            return unitsSold;
+        }
+    }
+
+    //ranks again if the new figures change the units sold of a featured product
+    public synchronized void onUnitsSold(Map<Integer, Integer> latest)
+    {
+        Map<Integer, Integer> previous = unitsSold;
+        unitsSold = latest;
+
+        for (Integer productId : featured.keySet())
+        {
+            if (!Objects.equals(previous.get(productId), latest.get(productId)))
+            {
+                rank();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onProductSaved(Product previous, Product current)
+    {
+        boolean wasFeatured = previous != null && isFeatured(previous);
+        if (!wasFeatured && !isFeatured(current))
+            return;
+
+        if (wasFeatured && isFeatured(current) && sameRank(previous, current))
+        {
+            featured.put(current.getProductId(), current);
+            ranking = swap(ranking, current);
+            return;
+        }
+
+        if (isFeatured(current))
+            featured.put(current.getProductId(), current);
+        else
+            featured.remove(current.getProductId());
+        rank();
+    }
+
+    @Override
+    public synchronized void onProductDeleted(Product previous)
+    {
+        if (featured.remove(previous.getProductId()) != null)
+            rank();
+    }
+
+    private void rank()
+    {
+        Comparator<Product> order = Comparator
+                .comparing((Product product) -> inStock(product) ? 0 : 1)
+                .thenComparing(product -> -unitsSold.getOrDefault(product.getProductId(), 0))
+                .thenComparing(Product::getPrice, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Product::getProductId);
+
+        List<Product> all = new ArrayList<>(featured.values());
+        all.sort(order);
+
+        Map<Integer, List<Product>> byCategory = new HashMap<>();
+        for (Product product : all)
+        {
+            byCategory.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+        }
+        byCategory.replaceAll((id, products) -> Collections.unmodifiableList(products));
+
+        ranking = new Ranking(Collections.unmodifiableList(all), byCategory);
+    }
+
+    //same position in every list, so only the lists holding the product are copied
+    private static Ranking swap(Ranking ranking, Product product)
+    {
+        Map<Integer, List<Product>> byCategory = new HashMap<>(ranking.byCategory);
+        byCategory.computeIfPresent(product.getCategoryId(), (id, products) -> swap(products, product));
+
+        return new Ranking(swap(ranking.all, product), byCategory);
+    }
+
+    private static List<Product> swap(List<Product> products, Product product)
+    {
+        List<Product> copy = new ArrayList<>(products);
+        copy.replaceAll(existing -> existing.getProductId().equals(product.getProductId()) ? product : existing);
+        return Collections.unmodifiableList(copy);
+    }
+
+    private static boolean sameRank(Product previous, Product current)
+    {
+        return inStock(previous) == inStock(current)
+                && Objects.equals(previous.getPrice(), current.getPrice())
+                && Objects.equals(previous.getCategoryId(), current.getCategoryId());
+    }
+
+    private static boolean isFeatured(Product product)
+    {
+        return Boolean.TRUE.equals(product.isFeatured());
+    }
+
+    private static boolean inStock(Product product)
+    {
+        return product.getStock() != null && product.getStock() > 0;
+    }
+}
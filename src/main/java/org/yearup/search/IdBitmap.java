@@ -0,0 +1,615 @@
+package org.yearup.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable compressed set of product ids, laid out like a Roaring bitmap.
+ * <p>
+ * Ids are split into a high and a low 16-bit half. Each distinct high half gets a container for its
+ * low halves: a sorted array while it holds at most 4096 values, a 65536-bit bitmap (8 KB) once it
+ * holds more. Sparse sets stay small, dense sets get fast word-at-a-time AND / OR.
+ * <p>
+ * {@link #with(int)} and {@link #without(int)} return a new bitmap that shares every untouched container.
+ */
+final class IdBitmap
+{
+    static final IdBitmap EMPTY = new IdBitmap(new char[0], new Container[0]);
+
+    //above this many values an array container is bigger than a bitmap container
+    private static final int ARRAY_LIMIT = 4096;
+    //when one array is this many times longer than the other, the short one gallops through the long one
+    //instead of both being walked side by side
+    private static final int GALLOP_RATIO = 32;
+
+    private final char[] keys;
+    private final Container[] containers;
+
+    private IdBitmap(char[] keys, Container[] containers)
+    {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    //builds a bitmap from ids in ascending order
+    static IdBitmap ofSorted(int[] ids, int count)
+    {
+        List<Character> keys = new ArrayList<>();
+        List<Container> containers = new ArrayList<>();
+
+        int start = 0;
+        while (start < count)
+        {
+            char key = high(ids[start]);
+            int end = start;
+            while (end < count && high(ids[end]) == key)
+            {
+                end++;
+            }
+
+            char[] values = new char[end - start];
+            for (int i = start; i < end; i++)
+            {
+                values[i - start] = low(ids[i]);
+            }
+
+            keys.add(key);
+            containers.add(new ArrayContainer(values).normalize());
+            start = end;
+        }
+
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++)
+        {
+            keyArray[i] = keys.get(i);
+        }
+        return new IdBitmap(keyArray, containers.toArray(new Container[0]));
+    }
+
+    boolean contains(int id)
+    {
+        int index = Arrays.binarySearch(keys, high(id));
+        return index >= 0 && containers[index].contains(low(id));
+    }
+
+    int cardinality()
+    {
+        int cardinality = 0;
+        for (Container container : containers)
+        {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty()
+    {
+        return containers.length == 0;
+    }
+
+    IdBitmap with(int id)
+    {
+        char key = high(id);
+        int index = Arrays.binarySearch(keys, key);
+
+        if (index >= 0)
+        {
+            Container[] copy = containers.clone();
+            copy[index] = containers[index].add(low(id));
+            return new IdBitmap(keys, copy);
+        }
+
+        int position = -index - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, position);
+        System.arraycopy(containers, 0, newContainers, 0, position);
+        newKeys[position] = key;
+        newContainers[position] = new ArrayContainer(new char[]{low(id)});
+        System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+        System.arraycopy(containers, position, newContainers, position + 1, containers.length - position);
+        return new IdBitmap(newKeys, newContainers);
+    }
+
+    IdBitmap without(int id)
+    {
+        int index = Arrays.binarySearch(keys, high(id));
+        if (index < 0 || !containers[index].contains(low(id)))
+            return this;
+
+        Container container = containers[index].remove(low(id));
+        if (container.cardinality() > 0)
+        {
+            Container[] copy = containers.clone();
+            copy[index] = container;
+            return new IdBitmap(keys, copy);
+        }
+
+        char[] newKeys = new char[keys.length - 1];
+        Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+        return new IdBitmap(newKeys, newContainers);
+    }
+
+    IdBitmap and(IdBitmap other)
+    {
+        Builder result = new Builder(Math.min(keys.length, other.keys.length));
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length)
+        {
+            if (keys[i] < other.keys[j])
+                i++;
+            else if (keys[i] > other.keys[j])
+                j++;
+            else
+                result.add(keys[i], containers[i++].and(other.containers[j++]));
+        }
+        return result.build();
+    }
+
+    IdBitmap or(IdBitmap other)
+    {
+        Builder result = new Builder(keys.length + other.keys.length);
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length)
+        {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j]))
+                result.add(keys[i], containers[i++]);
+            else if (i == keys.length || keys[i] > other.keys[j])
+                result.add(other.keys[j], other.containers[j++]);
+            else
+                result.add(keys[i], containers[i++].or(other.containers[j++]));
+        }
+        return result.build();
+    }
+
+    IdBitmap andNot(IdBitmap other)
+    {
+        Builder result = new Builder(keys.length);
+        int j = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            while (j < other.keys.length && other.keys[j] < keys[i])
+            {
+                j++;
+            }
+
+            if (j < other.keys.length && other.keys[j] == keys[i])
+                result.add(keys[i], containers[i].andNot(other.containers[j]));
+            else
+                result.add(keys[i], containers[i]);
+        }
+        return result.build();
+    }
+
+    //visits the ids in ascending order
+    void forEach(IntConsumer consumer)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    int[] toArray()
+    {
+        int[] ids = new int[cardinality()];
+        int[] next = {0};
+        forEach(id -> ids[next[0]++] = id);
+        return ids;
+    }
+
+    private static char high(int id)
+    {
+        return (char) (id >>> 16);
+    }
+
+    private static char low(int id)
+    {
+        return (char) id;
+    }
+
+    //collects the non-empty containers of an operation's result
+    private static final class Builder
+    {
+        private final char[] keys;
+        private final Container[] containers;
+        private int size;
+
+        private Builder(int capacity)
+        {
+            keys = new char[capacity];
+            containers = new Container[capacity];
+        }
+
+        private void add(char key, Container container)
+        {
+            if (container.cardinality() == 0)
+                return;
+
+            keys[size] = key;
+            containers[size++] = container;
+        }
+
+        private IdBitmap build()
+        {
+            return new IdBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+        }
+    }
+
+    private abstract static class Container
+    {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract BitmapContainer toBitmap();
+    }
+
+    private static final class ArrayContainer extends Container
+    {
+        private final char[] values;
+
+        private ArrayContainer(char[] values)
+        {
+            this.values = values;
+        }
+
+        //switches to a bitmap once the array would be the bigger of the two
+        private Container normalize()
+        {
+            return values.length > ARRAY_LIMIT ? toBitmap() : this;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            int index = Arrays.binarySearch(values, value);
+            if (index >= 0)
+                return this;
+
+            int position = -index - 1;
+            char[] copy = new char[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, position);
+            copy[position] = value;
+            System.arraycopy(values, position, copy, position + 1, values.length - position);
+            return new ArrayContainer(copy).normalize();
+        }
+
+        @Override
+        Container remove(char value)
+        {
+            int index = Arrays.binarySearch(values, value);
+            if (index < 0)
+                return this;
+
+            char[] copy = new char[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+            return new ArrayContainer(copy);
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if (other instanceof BitmapContainer)
+                return filter(((BitmapContainer) other).words, 1);
+
+            char[] otherValues = ((ArrayContainer) other).values;
+            char[] small = values.length <= otherValues.length ? values : otherValues;
+            char[] large = small == values ? otherValues : values;
+            boolean gallop = large.length > small.length * GALLOP_RATIO;
+
+            char[] result = new char[small.length];
+            int size = 0;
+            int j = 0;
+            for (char value : small)
+            {
+                j = seek(large, j, value, gallop);
+                if (j == large.length)
+                    break;
+                if (large[j] == value)
+                    result[size++] = value;
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            if (other instanceof BitmapContainer)
+                return other.or(this);
+
+            //merge two sorted arrays
+            char[] otherValues = ((ArrayContainer) other).values;
+            char[] result = new char[values.length + otherValues.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < values.length || j < otherValues.length)
+            {
+                if (j == otherValues.length || (i < values.length && values[i] < otherValues[j]))
+                    result[size++] = values[i++];
+                else if (i == values.length || values[i] > otherValues[j])
+                    result[size++] = otherValues[j++];
+                else
+                {
+                    result[size++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size)).normalize();
+        }
+
+        @Override
+        Container andNot(Container other)
+        {
+            if (other instanceof BitmapContainer)
+                return filter(((BitmapContainer) other).words, 0);
+
+            char[] removed = ((ArrayContainer) other).values;
+            boolean gallop = removed.length > values.length * GALLOP_RATIO;
+
+            char[] result = new char[values.length];
+            int size = 0;
+            int j = 0;
+            for (char value : values)
+            {
+                j = seek(removed, j, value, gallop);
+                if (j == removed.length || removed[j] != value)
+                    result[size++] = value;
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        //the first index from `from` on whose value is not below value (values.length if there is none)
+        private static int seek(char[] values, int from, char value, boolean gallop)
+        {
+            if (!gallop)
+            {
+                while (from < values.length && values[from] < value)
+                    from++;
+                return from;
+            }
+
+            if (from == values.length || values[from] >= value)
+                return from;
+
+            //double the step until it overshoots, then binary search the last step; values[low] < value throughout
+            int low = from;
+            int step = 1;
+            while (from + step < values.length && values[from + step] < value)
+            {
+                low = from + step;
+                step <<= 1;
+            }
+            int high = Math.min(from + step, values.length);
+            while (low + 1 < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value)
+                    low = middle;
+                else
+                    high = middle;
+            }
+            return high;
+        }
+
+        //keeps the values whose bit in words equals keep, written without a branch so random data costs no mispredictions
+        private Container filter(long[] words, int keep)
+        {
+            char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values)
+            {
+                result[size] = value;
+                size += (int) ((words[value >>> 6] >>> value) & 1) ^ keep ^ 1;
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer)
+        {
+            for (char value : values)
+            {
+                consumer.accept(high | value);
+            }
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            long[] words = new long[1024];
+            for (char value : values)
+            {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, values.length);
+        }
+    }
+
+    private static final class BitmapContainer extends Container
+    {
+        private final long[] words;
+        private final int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        private static Container of(long[] words)
+        {
+            int cardinality = 0;
+            for (long word : words)
+            {
+                cardinality += Long.bitCount(word);
+            }
+
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality > ARRAY_LIMIT ? bitmap : bitmap.toArray();
+        }
+
+        private ArrayContainer toArray()
+        {
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < words.length; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            if (contains(value))
+                return this;
+
+            long[] copy = words.clone();
+            copy[value >>> 6] |= 1L << value;
+            return new BitmapContainer(copy, cardinality + 1);
+        }
+
+        @Override
+        Container remove(char value)
+        {
+            if (!contains(value))
+                return this;
+
+            long[] copy = words.clone();
+            copy[value >>> 6] &= ~(1L << value);
+            return cardinality - 1 > ARRAY_LIMIT ? new BitmapContainer(copy, cardinality - 1) : BitmapContainer.of(copy);
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if (other instanceof ArrayContainer)
+                return other.and(this);
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            for (int i = 0; i < result.length; i++)
+            {
+                result[i] = words[i] & otherWords[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                long[] result = words.clone();
+                for (char value : ((ArrayContainer) other).values)
+                {
+                    result[value >>> 6] |= 1L << value;
+                }
+                return of(result);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            for (int i = 0; i < result.length; i++)
+            {
+                result[i] = words[i] | otherWords[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        Container andNot(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                long[] result = words.clone();
+                for (char value : ((ArrayContainer) other).values)
+                {
+                    result[value >>> 6] &= ~(1L << value);
+                }
+                return of(result);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            for (int i = 0; i < result.length; i++)
+            {
+                result[i] = words[i] & ~otherWords[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer)
+        {
+            for (int i = 0; i < words.length; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    consumer.accept(high | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            return this;
+        }
+    }
+}
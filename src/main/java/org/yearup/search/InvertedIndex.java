@@ -0,0 +1,180 @@
+package org.yearup.search;
+
+import org.yearup.models.Product;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Term -> product postings over product name, subcategory and description, ranked with BM25.
+ * <p>
+ * Fields are weighted by counting a term found in the name 3 times and in the subcategory 2 times,
+ * so a match in the name ranks above the same match buried in a description.
+ * <p>
+ * Adding products is safe from several threads at once (that is how the index is built at startup);
+ * updates and removals are expected to come from a single thread.
+ */
+final class InvertedIndex
+{
+    private static final int NAME_WEIGHT = 3;
+    private static final int SUB_CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    //standard BM25 tuning
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    //how many dictionary terms a single query word may expand to, and how much less a prefix match is worth
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_MATCH_FACTOR = 0.8;
+
+    //a product as the index sees it: weighted term frequencies and the total (weighted) length
+    private static final class Document
+    {
+        private final Map<String, Integer> terms;
+        private final int length;
+
+        private Document(Map<String, Integer> terms, int length)
+        {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    //the sorted dictionary is what makes prefix lookups a range scan
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, Document> documents = new ConcurrentHashMap<>();
+    private final LongAdder totalLength = new LongAdder();
+
+    //tokenizing is the expensive part, so the initial build spreads the products over all cores
+    static InvertedIndex build(Collection<Product> products)
+    {
+        InvertedIndex index = new InvertedIndex();
+        products.parallelStream().forEach(index::add);
+        return index;
+    }
+
+    int size()
+    {
+        return documents.size();
+    }
+
+    void add(Product product)
+    {
+        Map<String, Integer> terms = new HashMap<>();
+        int length = 0;
+        length += count(terms, product.getName(), NAME_WEIGHT);
+        length += count(terms, product.getSubCategory(), SUB_CATEGORY_WEIGHT);
+        length += count(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        int productId = product.getProductId();
+        documents.put(productId, new Document(terms, length));
+        totalLength.add(length);
+
+        terms.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(productId, frequency));
+    }
+
+    void remove(int productId)
+    {
+        Document document = documents.remove(productId);
+        if (document == null)
+            return;
+
+        totalLength.add(-document.length);
+
+        for (String term : document.terms.keySet())
+        {
+            ConcurrentHashMap<Integer, Integer> products = postings.get(term);
+            if (products == null)
+                continue;
+
+            products.remove(productId);
+            if (products.isEmpty())
+                postings.remove(term, products);
+        }
+    }
+
+    /**
+     * Returns up to limit product ids, best match first.
+     * Every query word matches itself and (at a slightly lower score) any term that starts with it,
+     * so "zel" finds "zelda". A product only has to match one word, products that match more rank higher.
+     */
+    List<Integer> search(String query, int limit)
+    {
+        int documentCount = documents.size();
+        if (documentCount == 0 || limit <= 0)
+            return Collections.emptyList();
+
+        double averageLength = Math.max(1.0, (double) totalLength.sum() / documentCount);
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String word : new LinkedHashSet<>(Tokenizer.tokenize(query)))
+        {
+            //per word keep the best scoring term for each product, so "play" matching both
+            //"player" and "playstation" in one product is not counted twice
+            Map<Integer, Double> wordScores = new HashMap<>();
+
+            int expansions = 0;
+            for (Map.Entry<String, ConcurrentHashMap<Integer, Integer>> entry : postings.tailMap(word).entrySet())
+            {
+                String term = entry.getKey();
+                if (!term.startsWith(word) || expansions++ >= MAX_PREFIX_EXPANSIONS)
+                    break;
+
+                Map<Integer, Integer> products = entry.getValue();
+                double idf = Math.log(1 + (documentCount - products.size() + 0.5) / (products.size() + 0.5));
+                double factor = term.equals(word) ? 1.0 : PREFIX_MATCH_FACTOR;
+
+                products.forEach((productId, frequency) -> {
+                    Document document = documents.get(productId);
+                    if (document == null)
+                        return;
+
+                    double norm = K1 * (1 - B + B * document.length / averageLength);
+                    double score = factor * idf * frequency * (K1 + 1) / (frequency + norm);
+                    wordScores.merge(productId, score, Math::max);
+                });
+            }
+
+            wordScores.forEach((productId, score) -> scores.merge(productId, score, Double::sum));
+        }
+
+        return top(scores, limit);
+    }
+
+    //partial sort: only the best `limit` entries are ever kept
+    private static List<Integer> top(Map<Integer, Double> scores, int limit)
+    {
+        Comparator<Map.Entry<Integer, Double>> ranking = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed());
+
+        PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(limit + 1, ranking);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet())
+        {
+            best.offer(entry);
+            if (best.size() > limit)
+                best.poll();
+        }
+
+        List<Integer> productIds = new ArrayList<>(best.size());
+        while (!best.isEmpty())
+        {
+            productIds.add(best.poll().getKey());
+        }
+        Collections.reverse(productIds);
+        return productIds;
+    }
+
+    private static int count(Map<String, Integer> terms, String text, int weight)
+    {
+        List<String> tokens = Tokenizer.tokenize(text);
+        for (String token : tokens)
+        {
+            terms.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+}
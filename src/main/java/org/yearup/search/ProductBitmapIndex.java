@@ -0,0 +1,199 @@
+package org.yearup.search;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+
+import java.util.*;
+
+/**
+ * Compressed bitmaps over the product id space for the low-cardinality filters:
+ * category, subcategory, featured and in stock (stock > 0).
+ * <p>
+ * A filtered search ANDs one bitmap per filter; several values of the same filter (e.g. two subcategories)
+ * are ORed first. Every change publishes a new State; only the bitmaps the product is in are copied,
+ * and those share all their untouched containers, so readers never lock.
+ */
+@Component
+public class ProductBitmapIndex implements CatalogListener
+{
+    private volatile State state = State.EMPTY;
+
+    /**
+     * Product ids matching every given filter, in id order. A null (or empty) filter is not applied.
+     * inStock=false / featured=false select the products that are out of stock / not featured.
+     */
+    public int[] search(Integer categoryId, Collection<String> subCategories, Boolean inStock, Boolean featured)
+    {
+        State current = state;
+        IdBitmap result = null;
+
+        if (categoryId != null)
+            result = current.byCategory.getOrDefault(categoryId, IdBitmap.EMPTY);
+
+        if (subCategories != null && !subCategories.isEmpty())
+        {
+            IdBitmap anyOf = IdBitmap.EMPTY;
+            for (String subCategory : subCategories)
+            {
+                anyOf = anyOf.or(current.bySubCategory.getOrDefault(key(subCategory), IdBitmap.EMPTY));
+            }
+            result = result == null ? anyOf : result.and(anyOf);
+        }
+
+        if (result == null)
+            result = current.all;
+
+        if (inStock != null)
+            result = inStock ? result.and(current.inStock) : result.andNot(current.inStock);
+
+        if (featured != null)
+            result = featured ? result.and(current.featured) : result.andNot(current.featured);
+
+        return result.toArray();
+    }
+
+    public int size()
+    {
+        return state.all.cardinality();
+    }
+
+    @Override
+    public synchronized void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        state = State.of(snapshot.getAll());
+    }
+
+    @Override
+    public synchronized void onProductSaved(Product previous, Product current)
+    {
+        State next = previous == null ? state : state.without(previous);
+        state = next.with(current);
+    }
+
+    @Override
+    public synchronized void onProductDeleted(Product previous)
+    {
+        state = state.without(previous);
+    }
+
+    private static String key(String subCategory)
+    {
+        return subCategory == null ? "" : CatalogSnapshot.subCategoryKey(subCategory);
+    }
+
+    private static boolean isInStock(Product product)
+    {
+        return product.getStock() != null && product.getStock() > 0;
+    }
+
+    private static boolean isFeatured(Product product)
+    {
+        return Boolean.TRUE.equals(product.isFeatured());
+    }
+
+    private static final class State
+    {
+        private static final State EMPTY = new State(IdBitmap.EMPTY, IdBitmap.EMPTY, IdBitmap.EMPTY, Map.of(), Map.of());
+
+        private final IdBitmap all;
+        private final IdBitmap inStock;
+        private final IdBitmap featured;
+        private final Map<Integer, IdBitmap> byCategory;
+        private final Map<String, IdBitmap> bySubCategory;
+
+        private State(IdBitmap all, IdBitmap inStock, IdBitmap featured,
+                      Map<Integer, IdBitmap> byCategory, Map<String, IdBitmap> bySubCategory)
+        {
+            this.all = all;
+            this.inStock = inStock;
+            this.featured = featured;
+            this.byCategory = byCategory;
+            this.bySubCategory = bySubCategory;
+        }
+
+        //products come in id order, so every id list is already sorted
+        private static State of(List<Product> products)
+        {
+            IdList all = new IdList();
+            IdList inStock = new IdList();
+            IdList featured = new IdList();
+            Map<Integer, IdList> byCategory = new HashMap<>();
+            Map<String, IdList> bySubCategory = new HashMap<>();
+
+            for (Product product : products)
+            {
+                int id = product.getProductId();
+                all.add(id);
+                if (isInStock(product))
+                    inStock.add(id);
+                if (isFeatured(product))
+                    featured.add(id);
+                if (product.getCategoryId() != null)
+                    byCategory.computeIfAbsent(product.getCategoryId(), k -> new IdList()).add(id);
+                if (product.getSubCategory() != null)
+                    bySubCategory.computeIfAbsent(key(product.getSubCategory()), k -> new IdList()).add(id);
+            }
+
+            Map<Integer, IdBitmap> categories = new HashMap<>();
+            byCategory.forEach((category, ids) -> categories.put(category, ids.toBitmap()));
+            Map<String, IdBitmap> subCategories = new HashMap<>();
+            bySubCategory.forEach((subCategory, ids) -> subCategories.put(subCategory, ids.toBitmap()));
+
+            return new State(all.toBitmap(), inStock.toBitmap(), featured.toBitmap(), categories, subCategories);
+        }
+
+        private State with(Product product)
+        {
+            int id = product.getProductId();
+            return new State(all.with(id),
+                    isInStock(product) ? inStock.with(id) : inStock,
+                    isFeatured(product) ? featured.with(id) : featured,
+                    product.getCategoryId() == null ? byCategory : update(byCategory, product.getCategoryId(), id, true),
+                    product.getSubCategory() == null ? bySubCategory : update(bySubCategory, key(product.getSubCategory()), id, true));
+        }
+
+        private State without(Product product)
+        {
+            int id = product.getProductId();
+            return new State(all.without(id),
+                    inStock.without(id),
+                    featured.without(id),
+                    product.getCategoryId() == null ? byCategory : update(byCategory, product.getCategoryId(), id, false),
+                    product.getSubCategory() == null ? bySubCategory : update(bySubCategory, key(product.getSubCategory()), id, false));
+        }
+
+        private static <K> Map<K, IdBitmap> update(Map<K, IdBitmap> bitmaps, K key, int id, boolean add)
+        {
+            IdBitmap bitmap = bitmaps.getOrDefault(key, IdBitmap.EMPTY);
+            bitmap = add ? bitmap.with(id) : bitmap.without(id);
+
+            Map<K, IdBitmap> copy = new HashMap<>(bitmaps);
+            if (bitmap.isEmpty())
+                copy.remove(key);
+            else
+                copy.put(key, bitmap);
+            return copy;
+        }
+    }
+
+    //growable int array, used while loading
+    private static final class IdList
+    {
+        private int[] ids = new int[16];
+        private int size;
+
+        private void add(int id)
+        {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        private IdBitmap toBitmap()
+        {
+            return IdBitmap.ofSorted(ids, size);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.yearup.search;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.FacetCounts;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Facet counts (products per category, per subcategory and per price band). Subcategories are counted
+ * under {@link CatalogSnapshot#subCategoryKey}, the case-insensitive key searches match them by.
+ * <p>
+ * Counts for a filtered search are taken in a single pass over its results. Counts for the whole
+ * catalog are kept up to date as products change, so the unfiltered view is returned as-is.
+ * Each change publishes a new FacetCounts; a published one is never modified and must be treated as read-only.
+ */
+@Component
+public class ProductFacets implements CatalogListener
+{
+    //upper bounds (exclusive) of each price band, the last band is open ended
+    private static final BigDecimal[] BAND_LIMITS = {
+            new BigDecimal("25"), new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("250"), new BigDecimal("500")
+    };
+    private static final String[] BAND_LABELS = {"0-25", "25-50", "50-100", "100-250", "250-500", "500+"};
+
+    private volatile FacetCounts all = empty();
+
+    //counts for the whole catalog
+    public FacetCounts countAll()
+    {
+        return all;
+    }
+
+    //counts for a set of products (e.g. search results), in one pass
+    public FacetCounts count(Collection<Product> products)
+    {
+        FacetCounts counts = empty();
+        for (Product product : products)
+        {
+            add(counts, product, 1);
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        all = count(snapshot.getAll());
+    }
+
+    @Override
+    public synchronized void onProductSaved(Product previous, Product current)
+    {
+        FacetCounts counts = copy(all);
+        if (previous != null)
+            add(counts, previous, -1);
+        add(counts, current, 1);
+
+        all = counts;
+    }
+
+    @Override
+    public synchronized void onProductDeleted(Product previous)
+    {
+        FacetCounts counts = copy(all);
+        add(counts, previous, -1);
+
+        all = counts;
+    }
+
+    static String priceBand(BigDecimal price)
+    {
+        for (int i = 0; i < BAND_LIMITS.length; i++)
+        {
+            if (price.compareTo(BAND_LIMITS[i]) < 0)
+                return BAND_LABELS[i];
+        }
+        return BAND_LABELS[BAND_LABELS.length - 1];
+    }
+
+    private static void add(FacetCounts counts, Product product, int delta)
+    {
+        increment(counts.getCategories(), product.getCategoryId(), delta, false);
+        increment(counts.getSubCategories(), subCategoryKey(product.getSubCategory()), delta, false);
+        if (product.getPrice() != null)
+            increment(counts.getPriceBands(), priceBand(product.getPrice()), delta, true);
+    }
+
+    //subcategories are counted under the key they are searched by, so "Red" and "red" share a bucket
+    private static String subCategoryKey(String subCategory)
+    {
+        String key = CatalogSnapshot.subCategoryKey(subCategory);
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    //price bands are a fixed list so they keep their zero counts, other facet values are dropped at zero
+    private static <K> void increment(Map<K, Integer> counts, K key, int delta, boolean keepZero)
+    {
+        if (key == null)
+            return;
+
+        int count = counts.merge(key, delta, Integer::sum);
+        if (count <= 0 && !keepZero)
+            counts.remove(key);
+    }
+
+    private static FacetCounts empty()
+    {
+        Map<String, Integer> priceBands = new LinkedHashMap<>();
+        for (String label : BAND_LABELS)
+        {
+            priceBands.put(label, 0);
+        }
+        return new FacetCounts(new TreeMap<>(), new TreeMap<>(), priceBands);
+    }
+
+    private static FacetCounts copy(FacetCounts counts)
+    {
+        return new FacetCounts(new TreeMap<>(counts.getCategories()),
+                new TreeMap<>(counts.getSubCategories()),
+                new LinkedHashMap<>(counts.getPriceBands()));
+    }
+}
@@ -0,0 +1,78 @@
+package org.yearup.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * In-process full-text search over product name, subcategory and description.
+ * <p>
+ * The index is built in parallel whenever the catalog is (re)loaded and then kept current one
+ * product at a time as products are created, updated and deleted. A rebuild produces a whole new
+ * index and swaps it in, so searches keep using the old one until the new one is complete.
+ * <p>
+ * The index holds the text of every product, so it isn't fed when the catalog is served through the
+ * bounded cache; until it has been loaded, searches go to MySQL (every term must match, most name
+ * matches first) instead.
+ */
+@Component
+public class ProductSearchIndex implements CatalogListener
+{
+    private final MySqlProductDao productDao;
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile boolean loaded;
+
+    @Autowired
+    public ProductSearchIndex(MySqlProductDao productDao)
+    {
+        this.productDao = productDao;
+    }
+
+    //returns up to limit product ids, best match first
+    public List<Integer> search(String query, int limit)
+    {
+        if (!loaded)
+            return productDao.searchText(Tokenizer.tokenize(query), limit);
+
+        return index.search(query, limit);
+    }
+
+    public int size()
+    {
+        return index.size();
+    }
+
+    @Override
+    public void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        index = InvertedIndex.build(snapshot.getAll());
+        loaded = true;
+    }
+
+    @Override
+    public boolean growsWithCatalog()
+    {
+        return true;
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current)
+    {
+        InvertedIndex target = index;
+        if (previous != null)
+            target.remove(previous.getProductId());
+
+        target.add(current);
+    }
+
+    @Override
+    public void onProductDeleted(Product previous)
+    {
+        index.remove(previous.getProductId());
+    }
+}
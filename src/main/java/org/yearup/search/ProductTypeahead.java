@@ -0,0 +1,255 @@
+package org.yearup.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+
+import java.util.*;
+
+/**
+ * Typeahead suggestions for the storefront search box, answered entirely from memory.
+ * <p>
+ * Suggestions are ranked by weight: featured products get a fixed boost on top of their popularity
+ * (units sold, loaded from order history when the catalog is loaded and refreshed by {@link UnitsSoldRefresher}).
+ * <p>
+ * Product changes are not written into the main {@link TypeaheadIndex} (which is immutable). Instead
+ * the changed products go into a small delta that is searched alongside it, and the product's old
+ * entries in the main index are skipped. New sales figures are applied the same way, for the products
+ * whose figures changed. Once the delta grows past {@link #MAX_DELTA} the two are
+ * merged into a new main index.
+ * <p>
+ * The index holds every product name, so it isn't fed when the catalog is served through the bounded
+ * cache; until it has been loaded, suggestions come from MySQL (featured first, then by name).
+ */
+@Component
+public class ProductTypeahead implements CatalogListener
+{
+    static final int MAX_DELTA = 1024;
+    private static final float FEATURED_BOOST = 10f;
+
+    //one consistent view for readers, replaced as a whole on every change
+    private static final class State
+    {
+        private final TypeaheadIndex main;
+        private final Map<Integer, TypeaheadIndex.Item> delta;
+        private final Set<Integer> stale;
+
+        private State(TypeaheadIndex main, Map<Integer, TypeaheadIndex.Item> delta, Set<Integer> stale)
+        {
+            this.main = main;
+            this.delta = delta;
+            this.stale = stale;
+        }
+    }
+
+    private final OrderDao orderDao;
+    private final MySqlProductDao productDao;
+    private volatile boolean loaded;
+    private volatile State state = new State(TypeaheadIndex.EMPTY, Collections.emptyMap(), Collections.emptySet());
+    private volatile Map<Integer, Integer> unitsSold = Collections.emptyMap();
+
+    @Autowired
+    public ProductTypeahead(OrderDao orderDao, MySqlProductDao productDao)
+    {
+        this.orderDao = orderDao;
+        this.productDao = productDao;
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit)
+    {
+        String normalized = prefix == null ? "" : Tokenizer.normalize(prefix).stripLeading();
+        if (normalized.isEmpty())
+            return new ArrayList<>();
+
+        if (!loaded)
+            return suggestFromDatabase(normalized, limit);
+
+        State current = state;
+
+        //changed products are skipped in the main index and come from the delta instead
+        List<TypeaheadIndex.Item> candidates = new ArrayList<>(current.main.top(normalized, limit, current.stale));
+        for (TypeaheadIndex.Item item : current.delta.values())
+        {
+            if (item.matches(normalized))
+                candidates.add(item);
+        }
+
+        candidates.sort(Comparator.comparing((TypeaheadIndex.Item item) -> item.weight).reversed()
+                .thenComparing(item -> item.normalized));
+
+        List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+        for (TypeaheadIndex.Item item : candidates)
+        {
+            if (suggestions.size() == limit)
+                break;
+            suggestions.add(new ProductSuggestion(item.productId, item.name));
+        }
+        return suggestions;
+    }
+
+    @Override
+    public synchronized void onCatalogLoaded(CatalogSnapshot snapshot)
+    {
+        unitsSold = loadUnitsSold();
+
+        List<TypeaheadIndex.Item> items = new ArrayList<>(snapshot.size());
+        for (Product product : snapshot.getAll())
+        {
+            items.add(item(product));
+        }
+
+        state = new State(TypeaheadIndex.build(items), Collections.emptyMap(), Collections.emptySet());
+        loaded = true;
+    }
+
+    @Override
+    public boolean growsWithCatalog()
+    {
+        return true;
+    }
+
+    //the order history only adds the best seller order, so the last figures (or none) are used
+    //when it can't be read; the dao has logged why
+    private Map<Integer, Integer> loadUnitsSold()
+    {
+        try
+        {
+            return orderDao.getUnitsSoldByProduct();
+        }
+        catch (RuntimeException e)
+        {
+            return unitsSold;
+        }
+    }
+
+    @Override
+    public synchronized void onProductSaved(Product previous, Product current)
+    {
+        //only the name and the featured flag affect suggestions
+        if (previous != null
+                && Objects.equals(previous.getName(), current.getName())
+                && Objects.equals(previous.isFeatured(), current.isFeatured()))
+            return;
+
+        Map<Integer, TypeaheadIndex.Item> delta = new HashMap<>(state.delta);
+        delta.put(current.getProductId(), item(current));
+        apply(delta, current.getProductId());
+    }
+
+    //reweights the products whose units sold changed since the figures in use
+    public synchronized void onUnitsSold(Map<Integer, Integer> latest)
+    {
+        Map<Integer, Integer> previous = unitsSold;
+        unitsSold = latest;
+        if (!loaded)
+            return;
+
+        Set<Integer> changed = new HashSet<>();
+        for (Integer productId : union(previous.keySet(), latest.keySet()))
+        {
+            if (!Objects.equals(previous.get(productId), latest.get(productId)))
+                changed.add(productId);
+        }
+        if (changed.isEmpty())
+            return;
+
+        //the current item of each changed product: from the delta, else from the main index unless deleted
+        State current = state;
+        Map<Integer, TypeaheadIndex.Item> delta = new HashMap<>(current.delta);
+        List<TypeaheadIndex.Item> reweighted = new ArrayList<>();
+        for (Integer productId : changed)
+        {
+            TypeaheadIndex.Item item = current.delta.get(productId);
+            if (item != null)
+                reweighted.add(item);
+        }
+        for (TypeaheadIndex.Item item : current.main.items())
+        {
+            if (changed.contains(item.productId) && !current.stale.contains(item.productId))
+                reweighted.add(item);
+        }
+        if (reweighted.isEmpty())
+            return;
+
+        List<Integer> productIds = new ArrayList<>(reweighted.size());
+        for (TypeaheadIndex.Item item : reweighted)
+        {
+            float weight = item.weight - popularity(previous, item.productId) + popularity(latest, item.productId);
+            delta.put(item.productId, new TypeaheadIndex.Item(item.productId, item.name, weight));
+            productIds.add(item.productId);
+        }
+        apply(delta, productIds);
+    }
+
+    @Override
+    public synchronized void onProductDeleted(Product previous)
+    {
+        Map<Integer, TypeaheadIndex.Item> delta = new HashMap<>(state.delta);
+        delta.remove(previous.getProductId());
+        apply(delta, previous.getProductId());
+    }
+
+    private void apply(Map<Integer, TypeaheadIndex.Item> delta, int changedProductId)
+    {
+        apply(delta, Collections.singletonList(changedProductId));
+    }
+
+    private void apply(Map<Integer, TypeaheadIndex.Item> delta, Collection<Integer> changedProductIds)
+    {
+        Set<Integer> stale = new HashSet<>(state.stale);
+        stale.addAll(changedProductIds);
+
+        if (stale.size() <= MAX_DELTA)
+        {
+            state = new State(state.main, delta, stale);
+            return;
+        }
+
+        //merge: everything still current in the main index plus the delta
+        List<TypeaheadIndex.Item> items = new ArrayList<>(state.main.size() + delta.size());
+        for (TypeaheadIndex.Item item : state.main.items())
+        {
+            if (!stale.contains(item.productId))
+                items.add(item);
+        }
+        items.addAll(delta.values());
+
+        state = new State(TypeaheadIndex.build(items), Collections.emptyMap(), Collections.emptySet());
+    }
+
+    private List<ProductSuggestion> suggestFromDatabase(String prefix, int limit)
+    {
+        List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+        for (Product product : productDao.suggestByName(prefix, limit))
+        {
+            suggestions.add(new ProductSuggestion(product.getProductId(), product.getName()));
+        }
+        return suggestions;
+    }
+
+    private TypeaheadIndex.Item item(Product product)
+    {
+        float weight = popularity(unitsSold, product.getProductId());
+        if (Boolean.TRUE.equals(product.isFeatured()))
+            weight += FEATURED_BOOST;
+
+        return new TypeaheadIndex.Item(product.getProductId(), product.getName(), weight);
+    }
+
+    private static float popularity(Map<Integer, Integer> unitsSold, int productId)
+    {
+        return (float) Math.log1p(unitsSold.getOrDefault(productId, 0));
+    }
+
+    private static Set<Integer> union(Set<Integer> first, Set<Integer> second)
+    {
+        Set<Integer> union = new HashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+}
@@ -0,0 +1,63 @@
+package org.yearup.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lower-case search terms.
+ * Anything that is not a letter or digit separates terms, and accents are removed
+ * so "Pokémon" and "pokemon" end up as the same term.
+ */
+public final class Tokenizer
+{
+    private Tokenizer()
+    {
+    }
+
+    public static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty())
+            return tokens;
+
+        String normalized = normalize(text);
+
+        int start = -1;
+        for (int i = 0; i < normalized.length(); i++)
+        {
+            boolean partOfTerm = Character.isLetterOrDigit(normalized.charAt(i));
+
+            if (partOfTerm && start < 0)
+            {
+                start = i;
+            }
+            else if (!partOfTerm && start >= 0)
+            {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0)
+            tokens.add(normalized.substring(start));
+
+        return tokens;
+    }
+
+    //lower case with accents stripped, also used for prefix lookups
+    public static String normalize(String text)
+    {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++)
+        {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK)
+                builder.append(c);
+        }
+
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,263 @@
+package org.yearup.search;
+
+import java.util.*;
+
+/**
+ * Immutable prefix index over product names for typeahead.
+ * <p>
+ * Every word start in a (normalized) name is an entry, so "zel" finds "The Legend of Zelda".
+ * Entries are kept in one sorted array: the entries for a prefix are a contiguous range found with
+ * two binary searches. A segment tree over the entry weights returns the heaviest entry of any
+ * range in O(log n), so the best N suggestions are pulled out of the range one at a time without
+ * ever scanning it, however many names share the prefix.
+ * <p>
+ * Entries are stored as (item, offset) int pairs rather than substrings to keep the index compact.
+ */
+final class TypeaheadIndex
+{
+    //a product as the typeahead sees it
+    static final class Item
+    {
+        final int productId;
+        final String name;
+        final String normalized;
+        final float weight;
+        final int[] wordStarts;
+
+        Item(int productId, String name, float weight)
+        {
+            this.productId = productId;
+            this.name = name;
+            this.normalized = Tokenizer.normalize(name == null ? "" : name);
+            this.weight = weight;
+            this.wordStarts = wordStarts(normalized);
+        }
+
+        boolean matches(String prefix)
+        {
+            for (int start : wordStarts)
+            {
+                if (normalized.startsWith(prefix, start))
+                    return true;
+            }
+            return false;
+        }
+
+        private static int[] wordStarts(String text)
+        {
+            int[] starts = new int[text.length()];
+            int count = 0;
+            for (int i = 0; i < text.length(); i++)
+            {
+                boolean letterOrDigit = Character.isLetterOrDigit(text.charAt(i));
+                if (letterOrDigit && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))))
+                    starts[count++] = i;
+            }
+            return Arrays.copyOf(starts, count);
+        }
+    }
+
+    static final TypeaheadIndex EMPTY = build(Collections.emptyList());
+
+    private final Item[] items;
+    private final int[] entryItem;
+    private final int[] entryOffset;
+    private final float[] entryWeight;
+
+    //iterative segment tree: leaves at [n, 2n) hold entry positions, inner nodes the heaviest of their children
+    private final int[] tree;
+
+    private TypeaheadIndex(Item[] items, int[] entryItem, int[] entryOffset)
+    {
+        this.items = items;
+        this.entryItem = entryItem;
+        this.entryOffset = entryOffset;
+
+        int n = entryItem.length;
+        this.entryWeight = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            entryWeight[i] = items[entryItem[i]].weight;
+        }
+
+        this.tree = new int[2 * n];
+        for (int i = 0; i < n; i++)
+        {
+            tree[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--)
+        {
+            tree[i] = heavier(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    static TypeaheadIndex build(Collection<Item> source)
+    {
+        Item[] items = source.toArray(new Item[0]);
+
+        int count = 0;
+        for (Item item : items)
+        {
+            count += item.wordStarts.length;
+        }
+
+        //sort (item, offset) pairs by the text from the offset onwards
+        long[] entries = new long[count];
+        int next = 0;
+        for (int i = 0; i < items.length; i++)
+        {
+            for (int start : items[i].wordStarts)
+            {
+                entries[next++] = ((long) i << 32) | start;
+            }
+        }
+
+        Long[] boxed = Arrays.stream(entries).boxed().toArray(Long[]::new);
+        Arrays.parallelSort(boxed, (a, b) -> compareEntries(items, a, b));
+
+        int[] entryItem = new int[count];
+        int[] entryOffset = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            entryItem[i] = (int) (boxed[i] >>> 32);
+            entryOffset[i] = (int) (long) boxed[i];
+        }
+
+        return new TypeaheadIndex(items, entryItem, entryOffset);
+    }
+
+    int size()
+    {
+        return items.length;
+    }
+
+    List<Item> items()
+    {
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * Returns up to limit items with a word starting with the (already normalized) prefix,
+     * heaviest first, skipping the given product ids.
+     */
+    List<Item> top(String prefix, int limit, Set<Integer> skip)
+    {
+        List<Item> results = new ArrayList<>(limit);
+        int n = entryItem.length;
+        if (n == 0 || limit <= 0)
+            return results;
+
+        int from = firstEntry(prefix, false);
+        int to = firstEntry(prefix, true);
+        if (from >= to)
+            return results;
+
+        //best-first over sub ranges: take the heaviest entry, then split its range around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compareWeights(b[2], a[2]));
+        ranges.add(new int[]{from, to, heaviest(from, to)});
+
+        Set<Integer> seen = new HashSet<>();
+        while (!ranges.isEmpty() && results.size() < limit)
+        {
+            int[] range = ranges.poll();
+            int best = range[2];
+
+            Item item = items[entryItem[best]];
+            if (!skip.contains(item.productId) && seen.add(item.productId))
+                results.add(item);
+
+            if (range[0] < best)
+                ranges.add(new int[]{range[0], best, heaviest(range[0], best)});
+            if (best + 1 < range[1])
+                ranges.add(new int[]{best + 1, range[1], heaviest(best + 1, range[1])});
+        }
+
+        return results;
+    }
+
+    //first entry >= prefix, or (after = true) first entry past every entry starting with prefix
+    private int firstEntry(String prefix, boolean after)
+    {
+        int low = 0;
+        int high = entryItem.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            int comparison = comparePrefix(mid, prefix);
+            if (comparison < 0 || (after && comparison == 0))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    //< 0 if the entry sorts before every text starting with prefix, 0 if it starts with it, > 0 if after
+    private int comparePrefix(int entry, String prefix)
+    {
+        String text = items[entryItem[entry]].normalized;
+        int offset = entryOffset[entry];
+        int length = Math.min(text.length() - offset, prefix.length());
+
+        for (int i = 0; i < length; i++)
+        {
+            int difference = text.charAt(offset + i) - prefix.charAt(i);
+            if (difference != 0)
+                return difference;
+        }
+
+        return text.length() - offset < prefix.length() ? -1 : 0;
+    }
+
+    private int heaviest(int from, int to)
+    {
+        int n = entryItem.length;
+        int best = -1;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1)
+        {
+            if ((l & 1) == 1)
+                best = heavier(best, tree[l++]);
+            if ((r & 1) == 1)
+                best = heavier(best, tree[--r]);
+        }
+        return best;
+    }
+
+    //ties go to the earlier (alphabetically first) entry
+    private int heavier(int a, int b)
+    {
+        if (a < 0)
+            return b;
+        if (b < 0)
+            return a;
+
+        int comparison = compareWeights(a, b);
+        if (comparison != 0)
+            return comparison > 0 ? a : b;
+
+        return Math.min(a, b);
+    }
+
+    private int compareWeights(int a, int b)
+    {
+        int comparison = Float.compare(entryWeight[a], entryWeight[b]);
+        return comparison != 0 ? comparison : Integer.compare(b, a);
+    }
+
+    private static int compareEntries(Item[] items, long a, long b)
+    {
+        String left = items[(int) (a >>> 32)].normalized;
+        String right = items[(int) (b >>> 32)].normalized;
+        int leftOffset = (int) a;
+        int rightOffset = (int) b;
+
+        int length = Math.min(left.length() - leftOffset, right.length() - rightOffset);
+        for (int i = 0; i < length; i++)
+        {
+            int difference = left.charAt(leftOffset + i) - right.charAt(rightOffset + i);
+            if (difference != 0)
+                return difference;
+        }
+        return (left.length() - leftOffset) - (right.length() - rightOffset);
+    }
+}
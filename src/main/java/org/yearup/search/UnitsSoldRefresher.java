@@ -0,0 +1,79 @@
+package org.yearup.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-reads units sold from the order history every catalog.units-sold.refresh-ms and hands the figures
+ * to the typeahead and the featured ranking, so best sellers keep rising without a catalog reload.
+ * One aggregate query per interval serves both; each only reworks the products whose figures changed.
+ */
+@Component
+public class UnitsSoldRefresher
+{
+    private static final Logger logger = LoggerFactory.getLogger(UnitsSoldRefresher.class);
+
+    private final OrderDao orderDao;
+    private final ProductTypeahead typeahead;
+    private final FeaturedProducts featuredProducts;
+    private final long intervalMillis;
+    private ScheduledExecutorService refresher;
+
+    @Autowired
+    public UnitsSoldRefresher(OrderDao orderDao, ProductTypeahead typeahead, FeaturedProducts featuredProducts,
+                              @Value("${catalog.units-sold.refresh-ms:300000}") long intervalMillis)
+    {
+        this.orderDao = orderDao;
+        this.typeahead = typeahead;
+        this.featuredProducts = featuredProducts;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "units-sold-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        refresher.shutdownNow();
+    }
+
+    public void refresh()
+    {
+        Map<Integer, Integer> unitsSold = orderDao.getUnitsSoldByProduct();
+        typeahead.onUnitsSold(unitsSold);
+        featuredProducts.onUnitsSold(unitsSold);
+    }
+
+    private void refreshQuietly()
+    {
+        try
+        {
+            refresh();
+        }
+        catch (RuntimeException e)
+        {
+            //the scheduler would stop running a task that throws; the last figures stay in use
+            logger.error("Refreshing units sold failed", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.yearup.security.jwt;
+
+import io.jsonwebtoken.CompressionCodecs;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.models.CartLineUpdate;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Keeps the cart of a shopper who isn't logged in on the client, in a token sent back and forth in the
+ * X-Guest-Cart header, so browsing bots and casual visitors cost no writes to shopping_cart.
+ * <p>
+ * The token is a JWS signed with the same key as the login tokens ({@link TokenProvider}), with the audience
+ * "guest-cart" and no subject, so neither kind of token is accepted as the other. The cart is a claim of
+ * the form "productId:quantity,productId:quantity", and the payload is DEFLATE compressed.
+ * A guest cart holds up to {@link CartLineUpdate#MAX_LINES} products and expires
+ * cart.guest.token-timeout-seconds after its last change.
+ */
+@Component
+public class GuestCartTokenProvider
+{
+    public static final String HEADER = "X-Guest-Cart";
+    public static final int MAX_LINES = CartLineUpdate.MAX_LINES;
+
+    private final Logger logger = LoggerFactory.getLogger(GuestCartTokenProvider.class);
+
+    private static final String CART_KEY = "c";
+    //sets guest cart tokens apart from login tokens, which are signed with the same key
+    private static final String AUDIENCE = "guest-cart";
+
+    private final TokenProvider tokenProvider;
+    private final long tokenTimeout;
+
+    public GuestCartTokenProvider(
+            TokenProvider tokenProvider,
+            @Value("${cart.guest.token-timeout-seconds:2592000}") long tokenTimeoutSeconds)
+    {
+        this.tokenProvider = tokenProvider;
+        this.tokenTimeout = tokenTimeoutSeconds * 1000;
+    }
+
+    //productId -> quantity, in the order they were added
+    public String createToken(Map<Integer, Integer> quantities)
+    {
+        if (quantities.size() > MAX_LINES)
+            throw new IllegalArgumentException("A guest cart holds up to " + MAX_LINES + " products");
+
+        StringJoiner cart = new StringJoiner(",");
+        quantities.forEach((productId, quantity) -> cart.add(productId + ":" + quantity));
+
+        long now = (new Date()).getTime();
+        Date expirationDate = new Date(now + this.tokenTimeout);
+
+        return Jwts.builder()
+                .setAudience(AUDIENCE)
+                .claim(CART_KEY, cart.toString())
+                .compressWith(CompressionCodecs.DEFLATE)
+                .signWith(tokenProvider.getKey(), SignatureAlgorithm.HS512)
+                .setExpiration(expirationDate)
+                .compact();
+    }
+
+    /**
+     * The cart in the token, productId -> quantity. No token, or one that is expired, wasn't signed
+     * here or isn't a guest cart token, is an empty cart.
+     */
+    public Map<Integer, Integer> getQuantities(String token)
+    {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        if (token == null || token.isBlank())
+            return quantities;
+
+        try
+        {
+            String cart = Jwts.parserBuilder()
+                    .setSigningKey(tokenProvider.getKey())
+                    .requireAudience(AUDIENCE)
+                    .build()
+                    .parseClaimsJws(token.trim())
+                    .getBody()
+                    .get(CART_KEY, String.class);
+
+            if (cart == null || cart.isEmpty())
+                return quantities;
+
+            for (String line : cart.split(","))
+            {
+                int colon = line.indexOf(':');
+                int quantity = Integer.parseInt(line.substring(colon + 1));
+                if (quantity > 0 && quantities.size() < MAX_LINES)
+                    quantities.put(Integer.parseInt(line.substring(0, colon)), quantity);
+            }
+            return quantities;
+        }
+        catch (Exception e)
+        {
+            logger.info("Guest cart token invalid.");
+            logger.trace("Guest cart token invalid trace: {}.", e.toString());
+        }
+        return new LinkedHashMap<>();
+    }
+}
@@ -1,6 +1,7 @@
 package org.yearup.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -51,6 +52,12 @@ public class TokenProvider implements InitializingBean
         this.key = Keys.hmacShaKeyFor(keyBytes);
     }
 
+    //the signing key, shared with GuestCartTokenProvider
+    Key getKey()
+    {
+        return key;
+    }
+
     public String createToken(Authentication authentication, boolean rememberMe)
     {
         String authorities = authentication.getAuthorities().stream()
@@ -70,11 +77,7 @@ public class TokenProvider implements InitializingBean
 
     public Authentication getAuthentication(String token)
     {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = getLoginClaims(token);
 
         Collection<? extends GrantedAuthority> authorities =
                 Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
@@ -90,7 +93,7 @@ public class TokenProvider implements InitializingBean
     {
         try
         {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
+            getLoginClaims(authToken);
             return true;
         }
         catch (Exception e)
@@ -100,4 +103,19 @@ public class TokenProvider implements InitializingBean
         }
         return false;
     }
+
+    //a token signed with our key is only a login token if it names a user and their authorities,
+    //guest cart tokens (GuestCartTokenProvider) are signed with the same key and have neither
+    private Claims getLoginClaims(String token)
+    {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+
+        if (claims.getSubject() == null || claims.getSubject().isBlank() || claims.get(AUTHORITIES_KEY) == null)
+            throw new JwtException("Not a login token");
+        return claims;
+    }
 }
@@ -0,0 +1,88 @@
+package org.yearup.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.yearup.data.catalog.CatalogVersion;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Objects;
+
+/**
+ * Conditional GETs for the catalog endpoints (/products, /categories).
+ * <p>
+ * Every response gets a strong ETag built from the {@link CatalogVersion}, so any product or category
+ * write changes every tag. A request whose If-None-Match still matches is answered 304 here,
+ * before the controller runs: no query, no serialization.
+ * <p>
+ * The URL (with its query) identifies the resource; the Accept header picks between JSON and NDJSON,
+ * so it is part of the tag as well.
+ * <p>
+ * The tag is only sent with a 2xx response (see {@link SuccessHeadersFilter}): when the controller fails,
+ * the error doesn't carry it.
+ */
+@Component
+public class CatalogEtagInterceptor implements HandlerInterceptor
+{
+    private final CatalogVersion catalogVersion;
+
+    @Autowired
+    public CatalogEtagInterceptor(CatalogVersion catalogVersion)
+    {
+        this.catalogVersion = catalogVersion;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+    {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()))
+            return true;
+
+        String etag = etag(request);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        //cached copies may be kept, but have to be revalidated each time
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag))
+        {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return false;
+        }
+
+        SuccessHeadersFilter.Response onSuccess = SuccessHeadersFilter.find(response);
+        if (onSuccess != null)
+            onSuccess.setOnSuccess(HttpHeaders.ETAG, etag);
+        else
+            response.setHeader(HttpHeaders.ETAG, etag);
+        return true;
+    }
+
+    private String etag(HttpServletRequest request)
+    {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return "\"" + catalogVersion.getTag() + "-" + Integer.toHexString(Objects.hashCode(accept)) + "\"";
+    }
+
+    //If-None-Match uses the weak comparison: W/ prefixes are ignored, * matches anything.
+    //the tag of the gzip variant CatalogResponseCache serves names the same resource, so it matches too
+    static boolean matches(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null)
+            return false;
+
+        for (String candidate : ifNoneMatch.split(","))
+        {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(CatalogResponseCache.gzipEtag(etag)))
+                return true;
+        }
+        return false;
+    }
+}
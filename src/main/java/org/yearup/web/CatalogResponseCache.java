@@ -0,0 +1,249 @@
+package org.yearup.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.yearup.data.cache.CacheStats;
+import org.yearup.data.cache.TinyLfuCache;
+import org.yearup.data.catalog.CatalogVersion;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the finished bytes of catalog GET responses, so a repeat request is neither queried nor serialized.
+ * <p>
+ * Responses are keyed by URL, query, Accept, Origin and the {@link CatalogVersion}, so any catalog write
+ * retires every entry (they are dropped as soon as the version moves on). Each entry holds the JSON and,
+ * compressed once at the highest level, its gzip variant, both in direct buffers that are handed to
+ * Tomcat's output stream as they are (see {@link ResponseBodyWriter}). Headers written the first time
+ * (ETag, CORS, ...) are replayed on hits, and If-None-Match is answered 304 from the stored ETag.
+ * <p>
+ * The gzip variant is a different representation, so it gets its own ETag: the stored one with a -gzip
+ * suffix ("v" becomes "v-gzip"). Either form in If-None-Match revalidates the resource.
+ * <p>
+ * Streamed listings (stream=true, NDJSON) are never buffered, and bodies over catalog.response-cache.max-body-bytes
+ * are passed through without being stored.
+ */
+@Component
+public class CatalogResponseCache extends OncePerRequestFilter
+{
+    //headers that describe the bytes on the wire or the session, rather than the resource
+    private static final Set<String> NOT_REPLAYED = Set.of(
+            "content-length", "content-encoding", "transfer-encoding", "set-cookie", "date");
+
+    private static final class CachedResponse
+    {
+        private final String contentType;
+        private final Map<String, String> headers;
+        private final String etag;
+        private final String gzipEtag;
+        private final ByteBuffer identity;
+        private final ByteBuffer gzip; //null when compression didn't make it smaller
+
+        private CachedResponse(String contentType, Map<String, String> headers, ByteBuffer identity, ByteBuffer gzip)
+        {
+            this.contentType = contentType;
+            this.headers = headers;
+            this.etag = headers.get(HttpHeaders.ETAG);
+            this.gzipEtag = etag == null ? null : gzipEtag(etag);
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+    }
+
+    private final CatalogVersion catalogVersion;
+    private final TinyLfuCache<String, CachedResponse> cache;
+    private final int maxBodyBytes;
+    private final ResponseBodyWriter bodyWriter = ResponseBodyWriter.forContainer();
+    private volatile String cachedVersion = "";
+
+    @Autowired
+    public CatalogResponseCache(CatalogVersion catalogVersion,
+                                @Value("${catalog.response-cache.maximum-size:256}") int maximumSize,
+                                @Value("${catalog.response-cache.max-body-bytes:262144}") int maxBodyBytes)
+    {
+        this.catalogVersion = catalogVersion;
+        this.cache = new TinyLfuCache<>(maximumSize);
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public CacheStats getStats()
+    {
+        return cache.stats();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        if (!"GET".equals(request.getMethod()))
+            return true;
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!isCatalogPath(path))
+            return true;
+
+        //streamed responses are written as they are produced and must not be held in memory
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return request.getParameter("stream") != null
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        String version = catalogVersion.getTag();
+        if (!version.equals(cachedVersion))
+        {
+            //every stored response belongs to an older catalog
+            cache.invalidateAll();
+            cachedVersion = version;
+        }
+
+        String key = key(request, version);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null)
+        {
+            write(cached, request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+
+        if (wrapper.getStatus() != HttpStatus.OK.value() || request.isAsyncStarted()
+                || wrapper.getContentSize() > maxBodyBytes || !isJson(wrapper.getContentType()))
+        {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        CachedResponse stored = store(wrapper);
+        //the key was taken before the controller ran, don't file newer data under it
+        if (version.equals(catalogVersion.getTag()))
+            cache.put(key, stored);
+
+        //the first caller gets the stored bytes too, compressed if it asked for that
+        write(stored, request, response);
+    }
+
+    static boolean isCatalogPath(String path)
+    {
+        return path.equals("/products") || path.startsWith("/products/")
+                || path.equals("/categories") || path.startsWith("/categories/");
+    }
+
+    private static String key(HttpServletRequest request, String version)
+    {
+        return version + ' ' + request.getRequestURI() + '?' + request.getQueryString()
+                + ' ' + request.getHeader(HttpHeaders.ACCEPT) + ' ' + request.getHeader(HttpHeaders.ORIGIN);
+    }
+
+    private static boolean isJson(String contentType)
+    {
+        return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    private static CachedResponse store(ContentCachingResponseWrapper response) throws IOException
+    {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : new LinkedHashSet<>(response.getHeaderNames()))
+        {
+            if (!NOT_REPLAYED.contains(name.toLowerCase()))
+                headers.put(name, String.join(", ", response.getHeaders(name)));
+        }
+        headers.merge(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING, (existing, added) -> existing + ", " + added);
+
+        byte[] body = response.getContentAsByteArray();
+        byte[] gzip = gzip(body);
+
+        return new CachedResponse(response.getContentType(), headers, direct(body),
+                gzip.length < body.length ? direct(gzip) : null);
+    }
+
+    private void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+            throws IOException
+    {
+        cached.headers.forEach(response::setHeader);
+
+        boolean gzip = cached.gzip != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (gzip && cached.gzipEtag != null)
+            response.setHeader(HttpHeaders.ETAG, cached.gzipEtag);
+
+        //matches() takes the -gzip form of the tag too
+        if (cached.etag != null && CatalogEtagInterceptor.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.etag))
+        {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        ByteBuffer body = cached.identity;
+        if (gzip)
+        {
+            body = cached.gzip;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        response.setContentType(cached.contentType);
+        response.setContentLength(body.remaining());
+        bodyWriter.write(body.duplicate(), response);
+    }
+
+    //"v" -> "v-gzip", W/"v" -> W/"v-gzip"
+    static String gzipEtag(String etag)
+    {
+        return etag.endsWith("\"") ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag + "-gzip";
+    }
+
+    static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+            return false;
+
+        for (String coding : acceptEncoding.split(","))
+        {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip"))
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    static byte[] gzip(byte[] body) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream gzip = new GZIPOutputStream(bytes)
+        {
+            {
+                //compressed once, served many times: worth the slowest setting
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        })
+        {
+            gzip.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer direct(byte[] bytes)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+}
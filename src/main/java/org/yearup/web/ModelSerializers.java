@@ -0,0 +1,210 @@
+package org.yearup.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductFields.Field;
+import org.yearup.models.Money;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Hand-written serializers for the models on the hot paths: Product, ShoppingCartItem and ShoppingCart.
+ * <p>
+ * Each one writes its fields straight to the generator in the order Jackson's bean serializer uses,
+ * with property names encoded once up front, so the output is byte for byte what reflection would
+ * produce (golden tests pin it down) without the introspection and per-property dispatch. A cart's
+ * line totals are computed once, in cents, and summed into its total as the items are written.
+ * <p>
+ * They are picked up by Spring Boot through {@link JsonComponent} and so apply to JSON, CBOR and Smile.
+ * A fields= projection is honoured by reading it back from the active {@link ProductFields.Filters}.
+ */
+@JsonComponent
+public class ModelSerializers
+{
+    private static final SerializableString PRODUCT_ID = new SerializedString("productId");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString PRICE = new SerializedString("price");
+    private static final SerializableString CATEGORY_ID = new SerializedString("categoryId");
+    private static final SerializableString DESCRIPTION = new SerializedString("description");
+    private static final SerializableString SUB_CATEGORY = new SerializedString("subCategory");
+    private static final SerializableString STOCK = new SerializedString("stock");
+    private static final SerializableString IMAGE_URL = new SerializedString("imageUrl");
+    private static final SerializableString FEATURED = new SerializedString("featured");
+
+    private static final SerializableString PRODUCT = new SerializedString("product");
+    private static final SerializableString QUANTITY = new SerializedString("quantity");
+    private static final SerializableString DISCOUNT_PERCENT = new SerializedString("discountPercent");
+    private static final SerializableString LINE_TOTAL = new SerializedString("lineTotal");
+
+    private static final SerializableString ITEMS = new SerializedString("items");
+    private static final SerializableString TOTAL = new SerializedString("total");
+
+    public static class ProductSerializer extends StdSerializer<Product>
+    {
+        public ProductSerializer()
+        {
+            super(Product.class);
+        }
+
+        @Override
+        public void serialize(Product product, JsonGenerator generator, SerializerProvider provider) throws IOException
+        {
+            writeProduct(product, ProductFields.of(provider.getFilterProvider()), generator);
+        }
+    }
+
+    public static class ShoppingCartItemSerializer extends StdSerializer<ShoppingCartItem>
+    {
+        public ShoppingCartItemSerializer()
+        {
+            super(ShoppingCartItem.class);
+        }
+
+        @Override
+        public void serialize(ShoppingCartItem item, JsonGenerator generator, SerializerProvider provider) throws IOException
+        {
+            writeItem(item, ProductFields.of(provider.getFilterProvider()), generator);
+        }
+    }
+
+    public static class ShoppingCartSerializer extends StdSerializer<ShoppingCart>
+    {
+        public ShoppingCartSerializer()
+        {
+            super(ShoppingCart.class);
+        }
+
+        @Override
+        public void serialize(ShoppingCart cart, JsonGenerator generator, SerializerProvider provider) throws IOException
+        {
+            ProductFields fields = ProductFields.of(provider.getFilterProvider());
+            long total = 0;
+
+            generator.writeStartObject(cart);
+            generator.writeFieldName(ITEMS);
+            if (cart.getItems() == null)
+            {
+                generator.writeNull();
+            }
+            else
+            {
+                generator.writeStartObject(cart.getItems());
+                for (Map.Entry<Integer, ShoppingCartItem> entry : cart.getItems().entrySet())
+                {
+                    generator.writeFieldId(entry.getKey());
+                    total = Money.plus(total, writeItem(entry.getValue(), fields, generator));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeFieldName(TOTAL);
+            generator.writeNumber(Money.toBigDecimal(total));
+            generator.writeEndObject();
+        }
+    }
+
+    //writes the item and returns its line total in cents, so the cart doesn't have to compute it again
+    private static long writeItem(ShoppingCartItem item, ProductFields fields, JsonGenerator generator)
+            throws IOException
+    {
+        long lineTotal = item.getLineTotalCents();
+
+        generator.writeStartObject(item);
+        generator.writeFieldName(PRODUCT);
+        if (item.getProduct() == null)
+            generator.writeNull();
+        else
+            writeProduct(item.getProduct(), fields, generator);
+        generator.writeFieldName(QUANTITY);
+        generator.writeNumber(item.getQuantity());
+        generator.writeFieldName(DISCOUNT_PERCENT);
+        writeNumber(item.getDiscountPercent(), generator);
+        generator.writeFieldName(LINE_TOTAL);
+        generator.writeNumber(Money.toBigDecimal(lineTotal));
+        generator.writeEndObject();
+
+        return lineTotal;
+    }
+
+    private static void writeProduct(Product product, ProductFields fields, JsonGenerator generator) throws IOException
+    {
+        boolean all = fields.isAll();
+
+        generator.writeStartObject(product);
+        if (all || fields.contains(Field.PRODUCT_ID))
+        {
+            generator.writeFieldName(PRODUCT_ID);
+            writeNumber(product.getProductId(), generator);
+        }
+        if (all || fields.contains(Field.NAME))
+        {
+            generator.writeFieldName(NAME);
+            generator.writeString(product.getName());
+        }
+        if (all || fields.contains(Field.PRICE))
+        {
+            generator.writeFieldName(PRICE);
+            writeNumber(product.getPrice(), generator);
+        }
+        if (all || fields.contains(Field.CATEGORY_ID))
+        {
+            generator.writeFieldName(CATEGORY_ID);
+            writeNumber(product.getCategoryId(), generator);
+        }
+        if (all || fields.contains(Field.DESCRIPTION))
+        {
+            generator.writeFieldName(DESCRIPTION);
+            generator.writeString(product.getDescription());
+        }
+        if (all || fields.contains(Field.SUB_CATEGORY))
+        {
+            generator.writeFieldName(SUB_CATEGORY);
+            generator.writeString(product.getSubCategory());
+        }
+        if (all || fields.contains(Field.STOCK))
+        {
+            generator.writeFieldName(STOCK);
+            writeNumber(product.getStock(), generator);
+        }
+        if (all || fields.contains(Field.IMAGE_URL))
+        {
+            generator.writeFieldName(IMAGE_URL);
+            generator.writeString(product.getImageUrl());
+        }
+        //Jackson finds featured through its field rather than a getter, which puts it last
+        if (all || fields.contains(Field.FEATURED))
+        {
+            generator.writeFieldName(FEATURED);
+            if (product.isFeatured() == null)
+                generator.writeNull();
+            else
+                generator.writeBoolean(product.isFeatured());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeNumber(Integer value, JsonGenerator generator) throws IOException
+    {
+        if (value == null)
+            generator.writeNull();
+        else
+            generator.writeNumber(value.intValue());
+    }
+
+    private static void writeNumber(BigDecimal value, JsonGenerator generator) throws IOException
+    {
+        if (value == null)
+            generator.writeNull();
+        else
+            generator.writeNumber(value);
+    }
+}
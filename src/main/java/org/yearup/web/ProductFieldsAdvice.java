@@ -0,0 +1,49 @@
+package org.yearup.web;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+import org.yearup.controllers.ProductsController;
+import org.yearup.controllers.ShoppingCartController;
+import org.yearup.data.ProductFields;
+
+/**
+ * Applies the fields= parameter of the product and cart endpoints to their JSON: only the requested
+ * product properties are written, wherever the products sit in the response (a list, a page, cart items).
+ * <p>
+ * The controllers pass the same projection to the dao, which narrows the SELECT where it goes to MySQL.
+ */
+@ControllerAdvice(assignableTypes = {ProductsController.class, ShoppingCartController.class})
+public class ProductFieldsAdvice extends AbstractMappingJacksonResponseBodyAdvice
+{
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response)
+    {
+        if (!(request instanceof ServletServerHttpRequest))
+            return;
+
+        String fields = ((ServletServerHttpRequest) request).getServletRequest().getParameter("fields");
+        if (fields == null)
+            return;
+
+        try
+        {
+            ProductFields projection = ProductFields.fromParameter(fields);
+            if (!projection.isAll())
+                bodyContainer.setFilters(projection.getFilters());
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.yearup.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yearup.data.ProductConsumer;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+
+/**
+ * Writes products to the response as they are produced instead of collecting them into a list first.
+ * <p>
+ * Each product is serialized straight onto the servlet output stream, so memory per request stays the
+ * same however many products match. Two formats are supported: a regular JSON array, and
+ * newline-delimited JSON (one product per line) for clients that process rows as they arrive.
+ */
+@Component
+public class ProductStreamWriter
+{
+    //where the products come from, e.g. consumer -> productDao.streamSearch(..., consumer)
+    @FunctionalInterface
+    public interface ProductSource
+    {
+        void forEach(ProductConsumer consumer) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter productWriter;
+
+    @Autowired
+    public ProductStreamWriter(ObjectMapper objectMapper)
+    {
+        this.objectMapper = objectMapper;
+        //the generator is flushed by its buffer filling up, not after every product
+        this.productWriter = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public ResponseEntity<StreamingResponseBody> jsonArray(ProductSource source)
+    {
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output))
+            {
+                generator.writeStartArray();
+                source.forEach(product -> productWriter.writeValue(generator, product));
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    public ResponseEntity<StreamingResponseBody> ndjson(ProductSource source)
+    {
+        return ndjson(source, ProductFields.ALL);
+    }
+
+    //only the projected properties of each product, like fields= does for the JSON endpoints
+    public ResponseEntity<StreamingResponseBody> ndjson(ProductSource source, ProductFields fields)
+    {
+        ObjectWriter productWriter = fields.isAll() ? this.productWriter : this.productWriter.with(fields.getFilters());
+
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output))
+            {
+                //the line break after each product is the only separator
+                generator.setRootValueSeparator(null);
+                source.forEach(product -> {
+                    productWriter.writeValue(generator, product);
+                    generator.writeRaw('\n');
+                });
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -0,0 +1,39 @@
+package org.yearup.web;
+
+import org.springframework.util.ClassUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a body that {@link CatalogResponseCache} keeps in a (direct) buffer to the response.
+ * <p>
+ * The plain servlet API only takes byte arrays, so the portable writer copies the buffer out in chunks.
+ * On Tomcat, {@link TomcatResponseBodyWriter} hands the buffer to the connector as it is.
+ */
+interface ResponseBodyWriter
+{
+    void write(ByteBuffer body, HttpServletResponse response) throws IOException;
+
+    //the Tomcat writer only when Tomcat's classes are there, so other containers never load it
+    static ResponseBodyWriter forContainer()
+    {
+        return ClassUtils.isPresent("org.apache.catalina.connector.CoyoteOutputStream", ResponseBodyWriter.class.getClassLoader())
+                ? new TomcatResponseBodyWriter()
+                : ResponseBodyWriter::copy;
+    }
+
+    static void copy(ByteBuffer body, HttpServletResponse response) throws IOException
+    {
+        ServletOutputStream output = response.getOutputStream();
+        byte[] chunk = new byte[Math.min(body.remaining(), 8192)];
+        while (body.hasRemaining())
+        {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            output.write(chunk, 0, length);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.yearup.web;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lets catalog GETs hold back headers that only describe a successful response, the ETag in particular.
+ * <p>
+ * {@link CatalogEtagInterceptor} picks the tag before the controller runs, but the controller can still fail,
+ * and an error page carrying the tag of the resource would be cached (and revalidated) as if it were the resource.
+ * Headers added through {@link Response#setOnSuccess} are sent once the body starts with a 2xx status,
+ * and dropped by sendError or any other status.
+ */
+@Component
+public class SuccessHeadersFilter extends OncePerRequestFilter
+{
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))
+                || !CatalogResponseCache.isCatalogPath(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException
+    {
+        Response wrapper = new Response(response);
+        chain.doFilter(request, wrapper);
+        //a 2xx response without a body
+        wrapper.release();
+    }
+
+    //finds the wrapper under any others, or null when the request didn't go through this filter
+    static Response find(ServletResponse response)
+    {
+        while (response instanceof HttpServletResponseWrapper)
+        {
+            if (response instanceof Response)
+                return (Response) response;
+            response = ((HttpServletResponseWrapper) response).getResponse();
+        }
+        return null;
+    }
+
+    static final class Response extends HttpServletResponseWrapper
+    {
+        private final Map<String, String> pending = new LinkedHashMap<>();
+
+        private Response(HttpServletResponse response)
+        {
+            super(response);
+        }
+
+        void setOnSuccess(String name, String value)
+        {
+            pending.put(name, value);
+        }
+
+        //the status is final by the time the body (or its type) is written
+        private void release()
+        {
+            if (pending.isEmpty())
+                return;
+
+            if (getStatus() / 100 == 2 && !isCommitted())
+                pending.forEach(super::setHeader);
+            pending.clear();
+        }
+
+        @Override
+        public void setContentType(String type)
+        {
+            release();
+            super.setContentType(type);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException
+        {
+            release();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException
+        {
+            release();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException
+        {
+            release();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException
+        {
+            pending.clear();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException
+        {
+            pending.clear();
+            super.sendError(sc, msg);
+        }
+    }
+}
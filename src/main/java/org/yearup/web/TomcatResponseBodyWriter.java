@@ -0,0 +1,42 @@
+package org.yearup.web;
+
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.apache.catalina.connector.ResponseFacade;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tomcat's own output stream takes a direct buffer as is. It sits underneath the security
+ * wrappers, which add their headers when the response is committed, so the response is committed first.
+ * Anything that isn't Tomcat's response underneath (a mock, another filter's stream) gets the bytes copied.
+ */
+class TomcatResponseBodyWriter implements ResponseBodyWriter
+{
+    @Override
+    public void write(ByteBuffer body, HttpServletResponse response) throws IOException
+    {
+        ServletResponse container = response;
+        while (container instanceof ServletResponseWrapper)
+        {
+            container = ((ServletResponseWrapper) container).getResponse();
+        }
+
+        if (container instanceof ResponseFacade)
+        {
+            response.flushBuffer();
+            ServletOutputStream output = container.getOutputStream();
+            if (output instanceof CoyoteOutputStream)
+            {
+                ((CoyoteOutputStream) output).write(body);
+                return;
+            }
+        }
+
+        ResponseBodyWriter.copy(body, response);
+    }
+}
@@ -0,0 +1,112 @@
+package org.yearup.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of JSON, CBOR and Smile for a page of products and a cart.
+ * The encoded size of each payload is printed once per trial, before the measurements.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main BinaryFormatBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark
+{
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"products", "cart"})
+    public String payload;
+
+    private ObjectMapper objectMapper;
+    private JavaType type;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        switch (format)
+        {
+            case "cbor":
+                objectMapper = new ObjectMapper(new CBORFactory());
+                break;
+            case "smile":
+                objectMapper = new ObjectMapper(new SmileFactory());
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        //as Spring Boot configures it: computed properties such as lineTotal are skipped on the way in
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        if (payload.equals("products"))
+        {
+            List<Product> products = new ArrayList<>();
+            for (int id = 1; id <= 100; id++)
+            {
+                products.add(product(id));
+            }
+            value = products;
+            type = objectMapper.getTypeFactory().constructCollectionType(List.class, Product.class);
+        }
+        else
+        {
+            ShoppingCart cart = new ShoppingCart();
+            for (int id = 1; id <= 10; id++)
+            {
+                cart.add(new ShoppingCartItem(product(id), 1, 1 + id % 3));
+            }
+            value = cart;
+            type = objectMapper.getTypeFactory().constructType(ShoppingCart.class);
+        }
+
+        encoded = objectMapper.writeValueAsBytes(value);
+        System.out.printf("%n%s %s: %d bytes%n", format, payload, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException
+    {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException
+    {
+        return objectMapper.readValue(encoded, type);
+    }
+
+    private static Product product(int id)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("59.99"), 1 + id % 3,
+                "A longer description of product " + id + " as it would appear on its page.",
+                "Action", 10, id % 10 == 0, "product-" + id + ".jpg");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(BinaryFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+}
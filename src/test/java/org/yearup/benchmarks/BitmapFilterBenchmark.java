@@ -0,0 +1,189 @@
+package org.yearup.benchmarks;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+import org.yearup.search.ProductBitmapIndex;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Low-cardinality filters (category AND (subcategory OR subcategory) AND in stock AND featured)
+ * answered three ways: from the bitmap index, by scanning the in-memory catalog, and by MySQL.
+ * <p>
+ * The sql benchmark loads the same catalog into a scratch table, so it needs a database:
+ * add -Ddatasource.url=jdbc:mysql://localhost:3306/videogamestore -DdbUsername=... -DdbPassword=...
+ * before -cp in exec.args. Without them only the in-memory benchmarks run.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main BitmapFilterBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class BitmapFilterBenchmark
+{
+    private static final String[] SUB_CATEGORIES = {
+            "Action", "RPG", "Racing", "Puzzle", "Sports", "Shooter", "Strategy", "Platformer", "Fighting", "Horror"
+    };
+    private static final List<String> FILTER = List.of("RPG", "Strategy");
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private List<Product> products;
+    private ProductBitmapIndex bitmapIndex;
+
+    @Setup
+    public void setup()
+    {
+        products = catalog(catalogSize);
+        bitmapIndex = new ProductBitmapIndex();
+        bitmapIndex.onCatalogLoaded(CatalogSnapshot.of(1, products));
+    }
+
+    @Benchmark
+    public int[] bitmap()
+    {
+        return bitmapIndex.search(3, FILTER, true, true);
+    }
+
+    @Benchmark
+    public List<Integer> scan()
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (Product product : products)
+        {
+            if (product.getCategoryId() == 3 && FILTER.contains(product.getSubCategory())
+                    && product.getStock() > 0 && product.isFeatured())
+                ids.add(product.getProductId());
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public List<Integer> sql(Database database) throws SQLException
+    {
+        try (Connection connection = database.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("""
+                     SELECT product_id FROM bench_products
+                     WHERE category_id = ? AND subcategory IN (?, ?) AND stock > 0 AND featured = 1
+                     ORDER BY product_id
+                     """))
+        {
+            statement.setInt(1, 3);
+            statement.setString(2, FILTER.get(0));
+            statement.setString(3, FILTER.get(1));
+
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    ids.add(row.getInt(1));
+                }
+            }
+            return ids;
+        }
+    }
+
+    //same shape and indexes as the products table, filled with the benchmark's catalog
+    @State(Scope.Benchmark)
+    public static class Database
+    {
+        private BasicDataSource dataSource;
+
+        @Setup
+        public void setup(BitmapFilterBenchmark benchmark) throws SQLException
+        {
+            String url = System.getProperty("datasource.url");
+            if (url == null)
+                throw new IllegalStateException("-Ddatasource.url is needed for the sql benchmark");
+
+            dataSource = new BasicDataSource();
+            dataSource.setUrl(url);
+            dataSource.setUsername(System.getProperty("dbUsername"));
+            dataSource.setPassword(System.getProperty("dbPassword"));
+            dataSource.setConnectionProperties("rewriteBatchedStatements=true;cachePrepStmts=true");
+
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement())
+            {
+                statement.execute("DROP TABLE IF EXISTS bench_products");
+                statement.execute("CREATE TABLE bench_products LIKE products");
+                statement.execute("ALTER TABLE bench_products ADD INDEX ix_bench_category_featured_stock (category_id, featured, stock)");
+            }
+
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement insert = connection.prepareStatement("""
+                         INSERT INTO bench_products (product_id, name, price, category_id, description, subcategory, image_url, stock, featured)
+                         VALUES (?, ?, ?, ?, '', ?, '', ?, ?)
+                         """))
+            {
+                connection.setAutoCommit(false);
+                int batched = 0;
+                for (Product product : benchmark.products)
+                {
+                    insert.setInt(1, product.getProductId());
+                    insert.setString(2, product.getName());
+                    insert.setBigDecimal(3, product.getPrice());
+                    insert.setInt(4, product.getCategoryId());
+                    insert.setString(5, product.getSubCategory());
+                    insert.setInt(6, product.getStock());
+                    insert.setBoolean(7, product.isFeatured());
+                    insert.addBatch();
+
+                    if (++batched % 5000 == 0)
+                        insert.executeBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement())
+            {
+                statement.execute("ANALYZE TABLE bench_products");
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException
+        {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement())
+            {
+                statement.execute("DROP TABLE IF EXISTS bench_products");
+            }
+            dataSource.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(BitmapFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    //categories 1-3 as in the sample data, one product in 20 featured, one in 4 out of stock
+    private static List<Product> catalog(int size)
+    {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++)
+        {
+            products.add(new Product(id, "Product " + id, BigDecimal.valueOf(500 + random.nextInt(50000), 2),
+                    1 + random.nextInt(3), "", SUB_CATEGORIES[random.nextInt(SUB_CATEGORIES.length)],
+                    random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(50), random.nextInt(20) == 0, ""));
+        }
+        return products;
+    }
+}
@@ -0,0 +1,92 @@
+package org.yearup.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.models.Money;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+import org.yearup.web.ModelSerializers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart totals with BigDecimal arithmetic (how ShoppingCartItem.getLineTotal and ShoppingCart.getTotal
+ * used to work) against the long cents arithmetic in {@link Money}, and the encode time of a cart,
+ * for carts of 1 to 200 lines.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main CartTotalBenchmark -prof gc"
+ * (-prof gc reports the bytes allocated per operation)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartTotalBenchmark
+{
+    @Param({"1", "10", "200"})
+    public int lines;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new SimpleModule()
+            .addSerializer(new ModelSerializers.ProductSerializer())
+            .addSerializer(new ModelSerializers.ShoppingCartItemSerializer())
+            .addSerializer(new ModelSerializers.ShoppingCartSerializer()));
+    private ShoppingCart cart;
+
+    @Setup
+    public void setup()
+    {
+        cart = new ShoppingCart();
+        for (int id = 1; id <= lines; id++)
+        {
+            Product product = new Product(id, "Product " + id, new BigDecimal(id % 90 + ".99"), 1, "", "", 10, false, "");
+            cart.add(new ShoppingCartItem(product, 1, 1 + id % 3));
+        }
+    }
+
+    //the arithmetic getLineTotal and getTotal did before Money, kept here as the baseline
+    @Benchmark
+    public BigDecimal bigDecimalTotal()
+    {
+        return cart.getItems().values()
+                .stream()
+                .map(item -> {
+                    BigDecimal subTotal = item.getProduct().getPrice().multiply(new BigDecimal(item.getQuantity()));
+                    BigDecimal discountAmount = subTotal.multiply(item.getDiscountPercent());
+                    return subTotal.subtract(discountAmount);
+                })
+                .reduce(BigDecimal.ZERO, (lineTotal, subTotal) -> subTotal.add(lineTotal));
+    }
+
+    @Benchmark
+    public long centsTotal()
+    {
+        return cart.getTotalCents();
+    }
+
+    //what checkout hands back: the sum in cents, converted once
+    @Benchmark
+    public BigDecimal total()
+    {
+        return cart.getTotal();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException
+    {
+        return objectMapper.writeValueAsBytes(cart);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(CartTotalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+import org.yearup.web.ModelSerializers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encode time for a page of products and a cart, with Jackson's bean serializers
+ * and with the hand-written ones in {@link ModelSerializers}.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main ModelSerializerBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelSerializerBenchmark
+{
+    @Param({"reflection", "handWritten"})
+    public String serializers;
+
+    @Param({"products", "cart"})
+    public String payload;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Object value;
+
+    @Setup
+    public void setup()
+    {
+        if (serializers.equals("handWritten"))
+        {
+            objectMapper.registerModule(new SimpleModule()
+                    .addSerializer(new ModelSerializers.ProductSerializer())
+                    .addSerializer(new ModelSerializers.ShoppingCartItemSerializer())
+                    .addSerializer(new ModelSerializers.ShoppingCartSerializer()));
+        }
+
+        if (payload.equals("products"))
+        {
+            List<Product> products = new ArrayList<>();
+            for (int id = 1; id <= 100; id++)
+            {
+                products.add(product(id));
+            }
+            value = products;
+        }
+        else
+        {
+            ShoppingCart cart = new ShoppingCart();
+            for (int id = 1; id <= 10; id++)
+            {
+                cart.add(new ShoppingCartItem(product(id), 1, 1 + id % 3));
+            }
+            value = cart;
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException
+    {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    private static Product product(int id)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("59.99"), 1 + id % 3,
+                "A longer description of product " + id + " as it would appear on its page.",
+                "Action", 10, id % 10 == 0, "product-" + id + ".jpg");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(ModelSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package org.yearup.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per request for a hot catalog payload (the category list, a page of products):
+ * serializing it with Jackson each time, serializing and gzipping it each time,
+ * and copying the bytes CatalogResponseCache keeps in a direct buffer.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main ResponseCacheBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCacheBenchmark
+{
+    @Param({"categories", "products"})
+    public String payload;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Object value;
+    private ByteBuffer cached;
+    private byte[] sink;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        if (payload.equals("categories"))
+        {
+            List<Category> categories = new ArrayList<>();
+            for (int id = 1; id <= 12; id++)
+            {
+                categories.add(new Category(id, "Category " + id, "Everything in category " + id + ", new and pre-owned"));
+            }
+            value = categories;
+        }
+        else
+        {
+            List<Product> products = new ArrayList<>();
+            for (int id = 1; id <= 100; id++)
+            {
+                products.add(new Product(id, "Product " + id, new BigDecimal("59.99"), 1 + id % 3,
+                        "A longer description of product " + id + " as it would appear on its page.",
+                        "Action", 10, id % 10 == 0, "product-" + id + ".jpg"));
+            }
+            value = products;
+        }
+
+        byte[] json = objectMapper.writeValueAsBytes(value);
+        cached = ByteBuffer.allocateDirect(json.length).put(json).flip();
+        sink = new byte[json.length];
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException
+    {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzip() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes))
+        {
+            objectMapper.writeValue(gzip, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    //what a cache hit costs before the bytes reach the socket
+    @Benchmark
+    public byte[] cachedBytes()
+    {
+        cached.duplicate().get(sink);
+        return sink;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(ResponseCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package org.yearup.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.data.OrderDao;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+import org.yearup.models.Profile;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+import org.yearup.search.ProductTypeahead;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead latency on a 500k product catalog.
+ * SampleTime mode reports the latency distribution, the p0.99 line is the number to watch (target: under 1 ms).
+ * <p>
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main TypeaheadBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TypeaheadBenchmark
+{
+    private static final String[] WORDS = {
+            "super", "mario", "legend", "zelda", "dark", "souls", "final", "fantasy", "call", "duty",
+            "street", "fighter", "mortal", "kombat", "halo", "gears", "war", "racing", "kart", "party",
+            "pokemon", "crystal", "metroid", "prime", "kirby", "star", "fox", "donkey", "kong", "sonic",
+            "edition", "deluxe", "remastered", "collection", "controller", "headset", "console", "pro", "mini", "ultimate"
+    };
+
+    @Param({"500000"})
+    public int catalogSize;
+
+    private ProductTypeahead typeahead;
+    private String[] prefixes;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+
+        List<Product> products = new ArrayList<>(catalogSize);
+        Map<Integer, Integer> unitsSold = new HashMap<>();
+        for (int id = 1; id <= catalogSize; id++)
+        {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + WORDS[random.nextInt(WORDS.length)] + " " + id;
+            products.add(new Product(id, name, new BigDecimal("19.99"), 1, "", "", 10, random.nextInt(50) == 0, ""));
+            unitsSold.put(id, random.nextInt(1000));
+        }
+
+        typeahead = new ProductTypeahead(new UnitsSold(unitsSold), null);
+        typeahead.onCatalogLoaded(CatalogSnapshot.of(1, products));
+
+        //what people type: the first 1 to 5 letters of a word
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            prefixes[i] = word.substring(0, 1 + random.nextInt(Math.min(5, word.length())));
+        }
+    }
+
+    @Benchmark
+    public List<ProductSuggestion> suggest()
+    {
+        return typeahead.suggest(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)], 8);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(TypeaheadBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    //only the popularity figures are needed from the order dao
+    private static class UnitsSold implements OrderDao
+    {
+        private final Map<Integer, Integer> unitsSold;
+
+        UnitsSold(Map<Integer, Integer> unitsSold)
+        {
+            this.unitsSold = unitsSold;
+        }
+
+        @Override
+        public Map<Integer, Integer> getUnitsSoldByProduct()
+        {
+            return unitsSold;
+        }
+
+        @Override
+        public int createOrder(Profile profile, ShoppingCart cart)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addOrderToDatabase(int orderId, ShoppingCartItem item)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateStock(int productId, int quantity)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.yearup.configurations;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonConfigTest
+{
+    private final JacksonConfig config = new JacksonConfig();
+
+    @Test
+    public void cbor_andSmile_shouldRoundTrip_aProduct_andBe_smallerThanJson() throws Exception
+    {
+        // arrange
+        var product = new Product(7, "Halo", new BigDecimal("59.99"), 1, "A shooter", "Shooter", 3, true, "halo.jpg");
+        var json = builder().build().writeValueAsBytes(product);
+        var cbor = config.cborHttpMessageConverter(builder());
+        var smile = config.smileHttpMessageConverter(builder());
+
+        // act
+        var cborBytes = write(cbor, product, MediaType.APPLICATION_CBOR);
+        var smileBytes = write(smile, product, new MediaType("application", "x-jackson-smile"));
+        var fromCbor = (Product) cbor.read(Product.class, new MockHttpInputMessage(cborBytes));
+        var fromSmile = (Product) smile.read(Product.class, new MockHttpInputMessage(smileBytes));
+
+        // assert
+        assertEquals("Halo", fromCbor.getName());
+        assertEquals(new BigDecimal("59.99"), fromSmile.getPrice());
+        assertTrue(cborBytes.length < json.length);
+        assertTrue(smileBytes.length < json.length);
+    }
+
+    @Test
+    public void cbor_shouldRead_aCartItem_requestBody() throws Exception
+    {
+        // arrange
+        var cbor = config.cborHttpMessageConverter(builder());
+        var body = cbor.getObjectMapper().writeValueAsBytes(Map.of("quantity", 3));
+
+        // act
+        var item = (ShoppingCartItem) cbor.read(ShoppingCartItem.class, new MockHttpInputMessage(body));
+
+        // assert
+        assertEquals(3, item.getQuantity());
+    }
+
+    //Boot hands each bean its own builder, with the customizers already applied
+    private Jackson2ObjectMapperBuilder builder()
+    {
+        var builder = new Jackson2ObjectMapperBuilder();
+        config.productFieldsFilter().customize(builder);
+        return builder;
+    }
+
+    private static byte[] write(AbstractGenericHttpMessageConverter<Object> converter, Object value, MediaType mediaType)
+            throws Exception
+    {
+        var output = new MockHttpOutputMessage();
+        converter.write(value, mediaType, output);
+        return output.getBodyAsBytes();
+    }
+}
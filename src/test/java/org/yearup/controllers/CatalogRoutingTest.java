@@ -0,0 +1,120 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.method.HandlerMethod;
+import org.yearup.data.ProductConsumer;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ProductSort;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductPage;
+import org.yearup.search.ProductBitmapIndex;
+import org.yearup.web.ProductStreamWriter;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+//which handler a catalog listing goes to, by Accept header: JSON unless NDJSON is asked for by name
+class CatalogRoutingTest
+{
+    private MockMvc mvc;
+
+    @BeforeEach
+    public void setup()
+    {
+        var productDao = new NoProducts();
+        var streamWriter = new ProductStreamWriter(new ObjectMapper());
+        mvc = MockMvcBuilders.standaloneSetup(
+                new ProductsController(productDao, streamWriter, null, null, null, new ProductBitmapIndex(), null),
+                new CategoriesController(null, productDao, streamWriter)).build();
+    }
+
+    @Test
+    public void productSearch_shouldAnswerJson_toBrowsersAndDefaultClients() throws Exception
+    {
+        assertEquals("search", handler("/products", "*/*"));
+        assertEquals("search", handler("/products", "application/json, text/plain, */*"));
+        assertEquals("search", handler("/products", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"));
+        assertEquals("search", handler("/products", "application/json"));
+        assertEquals("search", handler("/products", null));
+    }
+
+    @Test
+    public void productSearch_shouldStreamNdjson_onlyWhenAskedFor() throws Exception
+    {
+        assertEquals("searchNdjson", handler("/products", "application/x-ndjson"));
+        assertEquals("searchNdjson", handler("/products?subCategory=rpg&subCategory=shooter&inStock=true", "application/x-ndjson"));
+        assertEquals("searchPage", handler("/products?limit=5", "application/x-ndjson"), "a page is still a page");
+    }
+
+    @Test
+    public void categoryProducts_shouldAnswerJson_unlessNdjsonIsAskedFor() throws Exception
+    {
+        assertEquals("getProductsById", handler("/categories/1/products", "*/*"));
+        assertEquals("getProductsById", handler("/categories/1/products", "application/json, text/plain, */*"));
+        assertEquals("getProductsById", handler("/categories/1/products", "application/json"));
+        assertEquals("getProductsNdjsonById", handler("/categories/1/products", "application/x-ndjson"));
+    }
+
+    private String handler(String url, String accept) throws Exception
+    {
+        var request = get(url);
+        if (accept != null)
+            request.header("Accept", accept);
+
+        var handler = (HandlerMethod) mvc.perform(request).andReturn().getHandler();
+        return handler.getMethod().getName();
+    }
+
+    private static class NoProducts extends MySqlProductDao
+    {
+        NoProducts()
+        {
+            super(null);
+        }
+
+        @Override
+        public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory, ProductFields fields)
+        {
+            return List.of();
+        }
+
+        @Override
+        public List<Product> getByIds(Collection<Integer> productIds)
+        {
+            return List.of();
+        }
+
+        @Override
+        public ProductPage searchPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory,
+                                      ProductSort sort, ProductCursor after, int limit)
+        {
+            return new ProductPage(List.of(), null);
+        }
+
+        @Override
+        public List<Product> listByCategoryId(int categoryId)
+        {
+            return List.of();
+        }
+
+        @Override
+        public void streamSearch(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String subCategory, ProductConsumer consumer)
+        {
+        }
+
+        @Override
+        public void streamByCategoryId(int categoryId, ProductConsumer consumer)
+        {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.yearup.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.yearup.configurations.JacksonConfig;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFieldsTest
+{
+    @Test
+    public void fromParameter_shouldAlwaysInclude_theId_andReuse_theSameProjection()
+    {
+        // act
+        var actual = ProductFields.fromParameter(" imageUrl, NAME,price ");
+
+        // assert
+        assertEquals("product_id, name, price, image_url", actual.getColumns());
+        assertSame(actual, ProductFields.fromParameter("price,name,imageUrl"));
+        assertSame(ProductFields.ALL, ProductFields.fromParameter(null));
+        assertTrue(ProductFields.fromParameter("").isAll());
+        assertThrows(IllegalArgumentException.class, () -> ProductFields.fromParameter("name,secret"));
+    }
+
+    @Test
+    public void filters_shouldNarrow_products_atAnyDepth_andLeave_everythingElse() throws Exception
+    {
+        // arrange
+        var builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfig().productFieldsFilter().customize(builder);
+        ObjectMapper mapper = builder.build();
+        var product = new Product(7, "Halo", new BigDecimal("59.99"), 1, "A very long description", "Shooter", 3, true, "halo.jpg");
+        var cart = new ShoppingCart();
+        cart.add(new ShoppingCartItem(product, 1, 2));
+        var fields = ProductFields.fromParameter("name,price");
+
+        // act
+        var full = mapper.writeValueAsString(product);
+        var projected = mapper.writer(fields.getFilters()).writeValueAsString(product);
+        var projectedCart = mapper.writer(fields.getFilters()).writeValueAsString(cart);
+
+        // assert
+        assertTrue(full.contains("\"description\":\"A very long description\""), "no projection writes every field");
+        assertEquals("{\"productId\":7,\"name\":\"Halo\",\"price\":59.99}", projected);
+        assertEquals("{\"items\":{\"7\":{\"product\":{\"productId\":7,\"name\":\"Halo\",\"price\":59.99},"
+                + "\"quantity\":2,\"discountPercent\":0,\"lineTotal\":119.98}},\"total\":119.98}", projectedCart);
+    }
+}
@@ -0,0 +1,111 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyLfuCacheTest
+{
+    @Test
+    public void get_shouldLoadOnce_andCount_hitsAndMisses()
+    {
+        // arrange
+        var cache = new TinyLfuCache<Integer, String>(10);
+        var loads = new AtomicInteger();
+
+        // act
+        cache.get(1, key -> "product " + loads.incrementAndGet());
+        cache.get(1, key -> "product " + loads.incrementAndGet());
+        var actual = cache.get(1, key -> "product " + loads.incrementAndGet());
+        var missing = cache.get(2, key -> null);
+
+        // assert
+        assertEquals("product 1", actual);
+        assertNull(missing);
+        assertEquals(2, cache.stats().getHits());
+        assertEquals(2, cache.stats().getMisses());
+        assertEquals(1, cache.size(), "null values are not cached");
+    }
+
+    @Test
+    public void invalidate_shouldMake_theNextGet_reload()
+    {
+        // arrange
+        var cache = new TinyLfuCache<Integer, String>(10);
+        cache.get(1, key -> "old");
+
+        // act
+        cache.invalidate(1);
+        var actual = cache.get(1, key -> "new");
+
+        // assert
+        assertEquals("new", actual);
+    }
+
+    @Test
+    public void invalidate_duringALoad_shouldNotLet_theLoadedValueBeCached()
+    {
+        // arrange
+        var cache = new TinyLfuCache<Integer, String>(10);
+
+        // act - the row is changed and invalidated while it is being read
+        var loaded = cache.get(1, key -> {
+            cache.invalidate(1);
+            return "stale";
+        });
+        var actual = cache.get(1, key -> "fresh");
+
+        // assert
+        assertEquals("stale", loaded);
+        assertEquals("fresh", actual);
+    }
+
+    @Test
+    public void get_shouldLoad_outsideTheMap_soALoaderCanUseTheCache()
+    {
+        // arrange
+        var cache = new TinyLfuCache<Integer, String>(10);
+
+        // act - 1 and 17 share a bin in the map, so loading inside computeIfAbsent would throw here
+        var actual = cache.get(1, key -> "product 1 with " + cache.get(17, other -> "product 17"));
+
+        // assert
+        assertEquals("product 1 with product 17", actual);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void get_shouldKeep_theHotSet_whenAScanOfOneOffKeysGoesThrough()
+    {
+        // arrange - 50 products viewed over and over in a cache of 100
+        var cache = new TinyLfuCache<Integer, Integer>(100);
+        for (int round = 0; round < 20; round++)
+        {
+            for (int key = 0; key < 50; key++)
+            {
+                cache.get(key, k -> k);
+            }
+        }
+
+        // act - a crawler reads 10,000 other products once each, while shoppers keep viewing the popular ones
+        for (int key = 1000; key < 11_000; key++)
+        {
+            cache.get(key, k -> k);
+            if (key % 4 == 0)
+                cache.get(key / 4 % 50, k -> k);
+        }
+
+        // assert
+        int resident = 0;
+        for (int key = 0; key < 50; key++)
+        {
+            if (cache.getIfPresent(key) != null)
+                resident++;
+        }
+        assertEquals(50, resident);
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.stats().getEvictions() >= 9_950);
+    }
+}
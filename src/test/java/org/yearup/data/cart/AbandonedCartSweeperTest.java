@@ -0,0 +1,79 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbandonedCartSweeperTest
+{
+    @Test
+    public void sweep_shouldDelete_theBacklog_inBoundedBatches_untilABatchComesBackShort()
+    {
+        // arrange - 1200 idle carts of 2 rows each, 500 per batch
+        var table = new IdleCartTable(1200);
+        var sweeper = new AbandonedCartSweeper(table, 24, 500, 0, 3_600_000);
+
+        // act
+        var stats = sweeper.sweep();
+
+        // assert
+        assertEquals(List.of(500, 500, 500), table.limits, "no batch asks for more than 500 carts");
+        assertEquals(0, table.idle);
+        assertEquals(1200, stats.getCartsReclaimed());
+        assertEquals(2400, stats.getRowsReclaimed());
+        assertEquals(3, stats.getBatches());
+        assertEquals(86_400, table.idleSeconds);
+    }
+
+    @Test
+    public void failedBatch_shouldEnd_theRun_andLeave_theRest_forTheNextOne()
+    {
+        // arrange
+        var table = new IdleCartTable(700);
+        var sweeper = new AbandonedCartSweeper(table, 24, 500, 0, 3_600_000);
+        table.failAfter = 1;
+
+        // act
+        var afterFailure = sweeper.sweep();
+        table.failAfter = Integer.MAX_VALUE;
+        var afterRetry = sweeper.sweep();
+
+        // assert
+        assertEquals(1, afterFailure.getFailures());
+        assertEquals(500, afterFailure.getCartsReclaimed());
+        assertEquals(700, afterRetry.getCartsReclaimed());
+        assertEquals(2, afterRetry.getRuns());
+    }
+
+    //a shopping_cart_versions table with the given number of idle carts
+    private static class IdleCartTable extends MySqlShoppingCartDao
+    {
+        private final List<Integer> limits = new ArrayList<>();
+        private int idle;
+        private long idleSeconds;
+        private int failAfter = Integer.MAX_VALUE;
+
+        IdleCartTable(int idle)
+        {
+            super(null, null);
+            this.idle = idle;
+        }
+
+        @Override
+        public IdleCarts deleteIdleCarts(long idleSeconds, int limit)
+        {
+            if (limits.size() >= failAfter)
+                throw new RuntimeException("lock wait timeout");
+
+            this.idleSeconds = idleSeconds;
+            limits.add(limit);
+            int carts = Math.min(limit, idle);
+            idle -= carts;
+            return new IdleCarts(carts, carts * 2);
+        }
+    }
+}
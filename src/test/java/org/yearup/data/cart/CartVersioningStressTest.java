@@ -0,0 +1,115 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CartVersionConflictException;
+import org.yearup.data.ProductFields;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.models.ShoppingCart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Several "tabs" of one customer raise the quantity of the same product at once, each by reading the cart
+ * and sending back quantity + 1: the read-modify-write a cart page does. With If-Match (the version read)
+ * and a retry on conflict no increment is lost; without it, increments that race are overwritten.
+ * Prints the throughput, conflicts and lost updates of both runs.
+ */
+class CartVersioningStressTest
+{
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 2_000;
+    private static final int USER_ID = 1;
+    private static final int PRODUCT_ID = 1;
+
+    @Test
+    public void conditionalEdits_withRetries_shouldLose_noUpdates_underContention() throws Exception
+    {
+        // arrange
+        var dao = dao();
+
+        // act
+        Result versioned = run(dao, true);
+        Result lastWriteWins = run(dao(), false);
+        System.out.printf("If-Match + retry: %,d increments/s, %,d conflicts retried, %,d lost%n",
+                versioned.perSecond(), versioned.conflicts, versioned.lost);
+        System.out.printf("last write wins:  %,d increments/s, %,d lost%n",
+                lastWriteWins.perSecond(), lastWriteWins.lost);
+
+        // assert
+        assertEquals(0, versioned.lost);
+        assertEquals(1 + THREADS * INCREMENTS_PER_THREAD, quantity(dao.getByUserId(USER_ID)));
+    }
+
+    private static Result run(ShoppingCartDao dao, boolean conditional) throws Exception
+    {
+        AtomicLong conflicts = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> done = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++)
+        {
+            done.add(threads.submit(() -> {
+                start.await();
+                for (int i = 0; i < INCREMENTS_PER_THREAD; i++)
+                {
+                    while (true)
+                    {
+                        ShoppingCart cart = dao.getByUserId(USER_ID);
+                        Long expectedVersion = conditional ? cart.getVersion() : null;
+                        try
+                        {
+                            dao.editCart(PRODUCT_ID, USER_ID, quantity(cart) + 1, expectedVersion, ProductFields.ALL);
+                            break;
+                        }
+                        catch (CartVersionConflictException e)
+                        {
+                            //somebody else changed the cart since we read it: read it again and redo the change
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> thread : done)
+        {
+            thread.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - started;
+        threads.shutdown();
+
+        long lost = 1 + THREADS * INCREMENTS_PER_THREAD - quantity(dao.getByUserId(USER_ID));
+        return new Result(elapsed, conflicts.get(), lost);
+    }
+
+    //an in-memory cart holding one of the product, never flushed during the run
+    private static WriteBehindShoppingCartDao dao()
+    {
+        var dao = new WriteBehindShoppingCartDao(new WriteBehindShoppingCartDaoTest.CartTable(),
+                new WriteBehindShoppingCartDaoTest.Catalog(), 3_600_000, Integer.MAX_VALUE, 3_600_000);
+        dao.addToCart(PRODUCT_ID, USER_ID);
+        return dao;
+    }
+
+    private static int quantity(ShoppingCart cart)
+    {
+        return cart.get(PRODUCT_ID).getQuantity();
+    }
+
+    private record Result(long elapsedNanos, long conflicts, long lost)
+    {
+        long perSecond()
+        {
+            return THREADS * (long) INCREMENTS_PER_THREAD * 1_000_000_000L / Math.max(1, elapsedNanos);
+        }
+    }
+}
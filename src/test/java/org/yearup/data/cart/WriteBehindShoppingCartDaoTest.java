@@ -0,0 +1,264 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CartVersionConflictException;
+import org.yearup.data.ProductFields;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindShoppingCartDaoTest
+{
+    private static final long NEVER = 3_600_000;
+
+    @Test
+    public void mutations_shouldBe_readFromMemory_andCoalesced_intoOneWrite()
+    {
+        // arrange
+        var table = new CartTable();
+        table.rows.put(1, new HashMap<>(Map.of(2, 1)));
+        var dao = dao(table, NEVER);
+
+        // act
+        dao.addToCart(1, 1);
+        dao.addToCart(1, 1);
+        dao.addToCart(1, 1);
+        dao.editCart(2, 1, 0);
+        dao.addToCart(99, 1);
+        var beforeFlush = dao.getByUserId(1);
+        var storedBeforeFlush = new HashMap<>(table.rows.get(1));
+        dao.flush();
+
+        // assert
+        assertEquals(Map.of(1, 3), quantities(beforeFlush), "unknown products are not added");
+        assertEquals(Map.of(2, 1), storedBeforeFlush, "nothing is written until the flush");
+        assertEquals(List.of(Map.of(1, Map.of(1, 3, 2, 0))), table.writes, "one write with the latest quantities");
+        assertEquals(Map.of(1, 3), table.rows.get(1));
+        assertEquals(1, table.loads, "the cart is loaded once, then served from memory");
+        assertEquals(0, dao.getPendingCount());
+    }
+
+    @Test
+    public void clearCart_shouldReplace_everyStoredRow()
+    {
+        // arrange
+        var table = new CartTable();
+        table.rows.put(1, new HashMap<>(Map.of(2, 1, 3, 4)));
+        var dao = dao(table, NEVER);
+
+        // act
+        dao.clearCart(1);
+        dao.addToCart(1, 1);
+        dao.flush();
+
+        // assert
+        assertEquals(Map.of(1, 1), table.rows.get(1));
+        assertEquals(0, table.loads, "a cleared cart doesn't need loading");
+    }
+
+    // crash safety: a database outage delays writes but doesn't lose them
+    @Test
+    public void failedFlush_shouldKeep_theChangesPending_andRetry_them()
+    {
+        // arrange
+        var table = new CartTable();
+        var dao = dao(table, NEVER);
+        dao.addToCart(1, 1);
+        table.failing = true;
+
+        // act
+        dao.flush();
+        var pendingAfterFailure = dao.getPendingCount();
+        dao.addToCart(2, 1);
+        table.failing = false;
+        dao.flush();
+
+        // assert
+        assertEquals(1, pendingAfterFailure);
+        assertEquals(Map.of(1, 1, 2, 1), table.rows.get(1));
+        assertEquals(0, dao.getPendingCount());
+    }
+
+    // crash safety: an orderly shutdown writes everything; a crash loses only what came after the last flush
+    @Test
+    public void shutdown_shouldFlush_everything_whileACrash_losesOnly_theLastInterval()
+    {
+        // arrange
+        var table = new CartTable();
+        var dao = dao(table, NEVER);
+        dao.start();
+        dao.addToCart(1, 1);
+        dao.flush();
+        dao.addToCart(2, 1);
+
+        // act - "crash": look at the table without shutting down
+        var afterCrash = new HashMap<>(table.rows.get(1));
+        dao.shutdown();
+
+        // assert
+        assertEquals(Map.of(1, 1), afterCrash);
+        assertEquals(Map.of(1, 1, 2, 1), table.rows.get(1));
+    }
+
+    // crash safety: with a flush interval of 0 every change is stored before the call returns
+    @Test
+    public void writeThrough_shouldStore_eachChange_orFail_theCall()
+    {
+        // arrange
+        var table = new CartTable();
+        var dao = dao(table, 0);
+        dao.start();
+
+        // act
+        dao.addToCart(1, 1);
+        var stored = new HashMap<>(table.rows.get(1));
+        table.failing = true;
+
+        // assert
+        assertEquals(Map.of(1, 1), stored);
+        assertThrows(RuntimeException.class, () -> dao.addToCart(2, 1));
+        assertEquals(1, dao.getPendingCount(), "the failed change is still pending");
+    }
+
+    @Test
+    public void flush_shouldDrop_idleCarts_thatHaveBeenWritten()
+    {
+        // arrange
+        var table = new CartTable();
+        var dao = new WriteBehindShoppingCartDao(table, new Catalog(), NEVER, 1000, 0);
+        dao.addToCart(1, 1);
+
+        // act
+        dao.flush();
+        var cart = dao.getByUserId(1);
+
+        // assert
+        assertEquals(Map.of(1, 1), quantities(cart));
+        assertEquals(2, table.loads, "an evicted cart is loaded again");
+    }
+
+    @Test
+    public void staleVersion_shouldConflict_andChangeNothing_whileVersions_surviveEviction()
+    {
+        // arrange
+        var table = new CartTable();
+        var dao = new WriteBehindShoppingCartDao(table, new Catalog(), NEVER, 1000, 0);
+        long seen = dao.addToCart(1, 1, null, ProductFields.ALL).getVersion();
+        dao.addToCart(2, 1, seen, ProductFields.ALL);
+
+        // act
+        assertThrows(CartVersionConflictException.class, () -> dao.editCart(1, 1, 5, seen, ProductFields.ALL));
+        dao.flush();
+        var reloaded = dao.getByUserId(1);
+
+        // assert
+        assertEquals(Map.of(1, 1, 2, 1), quantities(reloaded), "the stale edit was not applied");
+        assertEquals(seen + 1, reloaded.getVersion(), "the version was written and loaded back with the cart");
+    }
+
+    @Test
+    public void mergeCart_shouldKeep_theLargerQuantity_andChangeNothing_theSecondTime()
+    {
+        // arrange - the user has 3 of product 1, the guest cart 1 of product 1, 2 of product 2 and one unknown
+        var table = new CartTable();
+        table.rows.put(1, new HashMap<>(Map.of(1, 3)));
+        var dao = dao(table, NEVER);
+        var guestCart = Map.of(1, 1, 2, 2, 99, 1);
+
+        // act
+        dao.mergeCart(guestCart, 1);
+        long version = dao.getByUserId(1).getVersion();
+        dao.mergeCart(guestCart, 1);
+        dao.flush();
+
+        // assert
+        assertEquals(Map.of(1, 3, 2, 2), table.rows.get(1));
+        assertEquals(version, dao.getByUserId(1).getVersion(), "merging the same guest cart again is no change");
+        assertEquals(List.of(Map.of(1, Map.of(2, 2))), table.writes);
+    }
+
+    private static WriteBehindShoppingCartDao dao(CartTable table, long flushIntervalMillis)
+    {
+        return new WriteBehindShoppingCartDao(table, new Catalog(), flushIntervalMillis, 1000, NEVER);
+    }
+
+    private static Map<Integer, Integer> quantities(ShoppingCart cart)
+    {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        cart.getItems().forEach((productId, item) -> quantities.put(productId, item.getQuantity()));
+        return quantities;
+    }
+
+    //products 1 to 10
+    static class Catalog extends MySqlProductDao
+    {
+        Catalog()
+        {
+            super(null);
+        }
+
+        @Override
+        public Product getById(int productId)
+        {
+            return productId <= 10 ? new Product(productId, "Product " + productId, new BigDecimal("9.99"), 1, "", "", 5, false, "") : null;
+        }
+
+        @Override
+        public List<Product> getByIds(Collection<Integer> productIds)
+        {
+            return productIds.stream().map(this::getById).filter(Objects::nonNull).toList();
+        }
+    }
+
+    //stands in for the shopping_cart table
+    static class CartTable extends MySqlShoppingCartDao
+    {
+        private final Map<Integer, Map<Integer, Integer>> rows = new HashMap<>();
+        private final Map<Integer, Long> versions = new HashMap<>();
+        private final List<Map<Integer, Map<Integer, Integer>>> writes = new ArrayList<>();
+        private int loads;
+        private boolean failing;
+
+        CartTable()
+        {
+            super(null, null);
+        }
+
+        @Override
+        public Map<Integer, Integer> getQuantities(int userId)
+        {
+            loads++;
+            return new LinkedHashMap<>(rows.getOrDefault(userId, Map.of()));
+        }
+
+        @Override
+        public long getVersion(int userId)
+        {
+            return this.versions.getOrDefault(userId, 0L);
+        }
+
+        @Override
+        public void saveCarts(Map<Integer, Map<Integer, Integer>> quantities, Set<Integer> replaced, Map<Integer, Long> versions)
+        {
+            if (failing)
+                throw new RuntimeException("database is down");
+
+            writes.add(quantities);
+            versions.forEach((userId, version) -> this.versions.merge(userId, version, Math::max));
+            replaced.forEach(rows::remove);
+            quantities.forEach((userId, products) -> products.forEach((productId, quantity) -> {
+                Map<Integer, Integer> cart = rows.computeIfAbsent(userId, id -> new HashMap<>());
+                if (quantity > 0)
+                    cart.put(productId, quantity);
+                else
+                    cart.remove(productId);
+            }));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingProductDaoTest
+{
+    @Test
+    public void getByIds_shouldServe_cacheHits_andFetch_allMisses_inOneQuery()
+    {
+        // arrange
+        var table = new ProductTable(1, 2, 3, 4, 5);
+        var dao = new CachingProductDao(table, new StaticListableBeanFactory().getBeanProvider(CatalogListener.class), 100);
+        dao.getById(2);
+        dao.getById(4);
+        table.queries.clear();
+
+        // act
+        var actual = dao.getByIds(List.of(5, 4, 99, 1, 2, 5));
+        var again = dao.getByIds(List.of(1, 5));
+
+        // assert
+        assertEquals(List.of(5, 4, 1, 2), ids(actual), "in the order asked for, unknown and repeated ids left out");
+        assertEquals(List.of(1, 5), ids(again));
+        assertEquals(List.of(List.of(5, 99, 1)), table.queries, "one query for the misses, then all hits");
+    }
+
+    @Test
+    public void getByIds_shouldSee_updates()
+    {
+        // arrange
+        var table = new ProductTable(1, 2);
+        var dao = new CachingProductDao(table, new StaticListableBeanFactory().getBeanProvider(CatalogListener.class), 100);
+        dao.getByIds(List.of(1, 2));
+
+        // act
+        var changed = product(2);
+        changed.setName("Renamed");
+        dao.update(2, changed);
+
+        // assert
+        assertEquals("Renamed", dao.getByIds(List.of(1, 2)).get(1).getName());
+    }
+
+    @Test
+    public void load_shouldOnlyFeed_listenersThatDontGrowWithTheCatalog()
+    {
+        // arrange
+        var bounded = new CountingListener(false);
+        var catalogSized = new CountingListener(true);
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("bounded", bounded);
+        beans.addBean("catalogSized", catalogSized);
+        var dao = new CachingProductDao(new ProductTable(1, 2), beans.getBeanProvider(CatalogListener.class), 100);
+
+        // act
+        dao.load();
+        dao.update(2, product(2));
+
+        // assert
+        assertEquals(2, bounded.events);
+        assertEquals(0, catalogSized.events);
+    }
+
+    private static class CountingListener implements CatalogListener
+    {
+        private final boolean growsWithCatalog;
+        private int events;
+
+        private CountingListener(boolean growsWithCatalog)
+        {
+            this.growsWithCatalog = growsWithCatalog;
+        }
+
+        @Override
+        public boolean growsWithCatalog()
+        {
+            return growsWithCatalog;
+        }
+
+        @Override
+        public void onCatalogLoaded(CatalogSnapshot snapshot)
+        {
+            events++;
+        }
+
+        @Override
+        public void onProductSaved(Product previous, Product current)
+        {
+            events++;
+        }
+
+        @Override
+        public void onProductDeleted(Product previous)
+        {
+            events++;
+        }
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).toList();
+    }
+
+    private static Product product(int id)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("19.99"), 1, "", "", 5, false, "");
+    }
+
+    //stands in for the products table, recording the ids each batch query asked for
+    private static class ProductTable extends MySqlProductDao
+    {
+        private final Map<Integer, Product> rows = new HashMap<>();
+        private final List<List<Integer>> queries = new ArrayList<>();
+
+        ProductTable(int... ids)
+        {
+            super(null);
+            for (int id : ids)
+            {
+                rows.put(id, product(id));
+            }
+        }
+
+        @Override
+        public List<Product> listAll()
+        {
+            return new ArrayList<>(rows.values());
+        }
+
+        @Override
+        public Product getById(int productId)
+        {
+            return rows.get(productId);
+        }
+
+        @Override
+        public List<Product> getByIds(Collection<Integer> productIds)
+        {
+            queries.add(new ArrayList<>(productIds));
+            List<Product> products = new ArrayList<>();
+            for (Integer id : productIds)
+            {
+                if (rows.containsKey(id))
+                    products.add(rows.get(id));
+            }
+            return products;
+        }
+
+        @Override
+        public void update(int productId, Product product)
+        {
+            rows.put(productId, product);
+        }
+    }
+}
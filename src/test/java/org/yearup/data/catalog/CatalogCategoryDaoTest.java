@@ -0,0 +1,70 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogCategoryDaoTest
+{
+    @Test
+    public void writes_shouldReload_theCategories_andBump_theVersion()
+    {
+        // arrange
+        var table = new CategoryTable();
+        table.rows.add(new Category(1, "Consoles", ""));
+        var catalogVersion = new CatalogVersion();
+        var dao = new CatalogCategoryDao(table, catalogVersion);
+        dao.load();
+        long loadedVersion = dao.getVersion();
+
+        // act
+        var created = dao.create(new Category(null, "Games", ""));
+        dao.delete(1);
+
+        // assert
+        assertEquals(List.of("Games"), dao.getAllCategories().stream().map(Category::getName).toList());
+        assertNull(dao.getById(1));
+        assertEquals("Games", dao.getById(created.getCategoryId()).getName());
+        assertEquals(loadedVersion + 2, dao.getVersion());
+        assertEquals(3, catalogVersion.get());
+        assertEquals(3, table.reads, "reads are served from memory, only loads and writes hit the table");
+    }
+
+    //stands in for the categories table
+    private static class CategoryTable extends MySqlCategoryDao
+    {
+        private final List<Category> rows = new ArrayList<>();
+        private int reads;
+
+        CategoryTable()
+        {
+            super(null);
+        }
+
+        @Override
+        public List<Category> getAllCategories()
+        {
+            reads++;
+            return new ArrayList<>(rows);
+        }
+
+        @Override
+        public Category create(Category category)
+        {
+            category.setCategoryId(rows.size() + 10);
+            rows.add(category);
+            return category;
+        }
+
+        @Override
+        public void delete(int categoryId)
+        {
+            rows.removeIf(category -> category.getCategoryId() == categoryId);
+        }
+    }
+}
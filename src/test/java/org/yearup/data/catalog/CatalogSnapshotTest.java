@@ -0,0 +1,172 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest
+{
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setup()
+    {
+        snapshot = CatalogSnapshot.of(1, List.of(
+                product(1, "Switch", "299.99", 1, "Console"),
+                product(2, "Zelda", "59.99", 2, "Adventure"),
+                product(3, "Mario Kart", "49.99", 2, "Racing"),
+                product(4, "Controller", "69.99", 3, "Accessory"),
+                product(5, "Metroid", "39.99", 2, "Adventure")
+        ));
+    }
+
+    @Test
+    public void search_shouldApply_everySuppliedFilter()
+    {
+        // act
+        var actual = ids(snapshot.search(2, new BigDecimal("40.00"), new BigDecimal("59.99"), "adventure"));
+
+        // assert
+        assertEquals(List.of(2), actual, "Because only Zelda is in category 2, Adventure and between 40.00 and 59.99.");
+    }
+
+    @Test
+    public void search_byPriceOnly_shouldReturn_productsInIdOrder()
+    {
+        // act
+        var actual = ids(snapshot.search(null, new BigDecimal("45.00"), new BigDecimal("70.00"), null));
+
+        // assert
+        assertEquals(List.of(2, 3, 4), actual);
+    }
+
+    @Test
+    public void withProduct_shouldPublish_aNewVersion_andLeaveTheOldOneUntouched()
+    {
+        // act
+        var updated = snapshot.withProduct(product(2, "Zelda", "19.99", 3, "Adventure"));
+
+        // assert
+        assertEquals(2, updated.getVersion());
+        assertEquals(List.of(3, 5), ids(updated.listByCategoryId(2)));
+        assertEquals(List.of(2, 4), ids(updated.listByCategoryId(3)));
+        assertEquals(List.of(2), ids(updated.priceRange(null, new BigDecimal("20.00"))));
+
+        assertEquals(List.of(2, 3, 5), ids(snapshot.listByCategoryId(2)), "Because snapshots are immutable.");
+    }
+
+    @Test
+    public void withoutProduct_shouldRemove_itFromEveryIndex()
+    {
+        // act
+        var updated = snapshot.withoutProduct(5);
+
+        // assert
+        assertNull(updated.getById(5));
+        assertEquals(List.of(2), ids(updated.listBySubCategory("Adventure")));
+        assertEquals(4, updated.priceRange(null, null).size());
+    }
+
+    @Test
+    public void withChanges_shouldApply_savesAndDeletes_inOneVersion()
+    {
+        // arrange
+        Map<Integer, Product> changes = new HashMap<>();
+        changes.put(2, product(2, "Zelda", "19.99", 3, "Adventure"));
+        changes.put(3, null);
+        changes.put(6, product(6, "Okami", "29.99", 2, "Adventure"));
+
+        // act
+        var updated = snapshot.withChanges(changes);
+
+        // assert
+        assertEquals(snapshot.getVersion() + 1, updated.getVersion());
+        assertNull(updated.getById(3));
+        assertEquals(List.of(5, 6), ids(updated.listByCategoryId(2)));
+        assertEquals(List.of(2, 4), ids(updated.listByCategoryId(3)));
+        assertEquals(List.of(2, 5, 6), ids(updated.listBySubCategory("adventure")));
+        assertEquals(List.of(), ids(updated.listBySubCategory("Racing")));
+        assertEquals(List.of(2, 6, 5, 4, 1), ids(updated.page(null, null, null, null, ProductSort.PRICE_ASC, null, 10).getProducts()));
+        assertEquals(List.of(2, 3, 5), ids(snapshot.listByCategoryId(2)), "Because snapshots are immutable.");
+    }
+
+    @Test
+    public void page_shouldWalk_everyMatchingProduct_inSortOrder()
+    {
+        // arrange
+        List<Integer> actual = new ArrayList<>();
+        ProductCursor after = null;
+
+        // act
+        do
+        {
+            var page = snapshot.page(null, null, new BigDecimal("100.00"), null, ProductSort.PRICE_DESC, after, 2);
+            actual.addAll(ids(page.getProducts()));
+            after = ProductCursor.decode(page.getNextCursor(), ProductSort.PRICE_DESC);
+        }
+        while (after != null);
+
+        // assert
+        assertEquals(List.of(4, 2, 3, 5), actual);
+    }
+
+    @Test
+    public void page_inCategory_byName_shouldResume_afterTheCursor()
+    {
+        // arrange
+        var first = snapshot.page(2, null, null, null, ProductSort.NAME, null, 1);
+
+        // act
+        var second = snapshot.page(2, null, null, null, ProductSort.NAME,
+                ProductCursor.decode(first.getNextCursor(), ProductSort.NAME), 5);
+
+        // assert
+        assertEquals(List.of(3), ids(first.getProducts()));
+        assertEquals(List.of(5, 2), ids(second.getProducts()));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    public void page_bySubCategory_shouldWalk_theSubCategorysOwnIndex_afterWrites()
+    {
+        // arrange
+        var updated = snapshot.withProduct(product(6, "Okami", "19.99", 3, " ADVENTURE"))
+                .withoutProduct(2);
+        List<Integer> actual = new ArrayList<>();
+        ProductCursor after = null;
+
+        // act
+        do
+        {
+            var page = updated.page(null, null, null, "Adventure", ProductSort.PRICE_ASC, after, 1);
+            actual.addAll(ids(page.getProducts()));
+            after = ProductCursor.decode(page.getNextCursor(), ProductSort.PRICE_ASC);
+        }
+        while (after != null);
+
+        // assert
+        assertEquals(List.of(6, 5), actual);
+        assertTrue(updated.page(null, null, null, "Puzzle", ProductSort.NAME, null, 5).getProducts().isEmpty());
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+
+    private static Product product(int id, String name, String price, int categoryId, String subCategory)
+    {
+        return new Product(id, name, new BigDecimal(price), categoryId, "", subCategory, 10, false, "");
+    }
+}
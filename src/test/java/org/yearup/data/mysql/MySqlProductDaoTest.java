@@ -6,9 +6,13 @@ import org.junit.jupiter.api.Test;
 import org.yearup.models.Product;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class MySqlProductDaoTest extends BaseDaoTestClass
 {
@@ -45,4 +49,112 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         assertEquals(expected.getPrice(), actual.getPrice(), "Because I tried to get product 1 from the database.");
     }
 
+    @Test
+    public void getByIds_shouldReturn_theProducts_inTheOrderAskedFor()
+    {
+        // arrange
+        var productIds = List.of(3, 1, 9999, 2, 1);
+
+        // act
+        var actual = dao.getByIds(productIds).stream().map(Product::getProductId).toList();
+
+        // assert
+        assertEquals(List.of(3, 1, 2), actual, "Because unknown and repeated ids are left out.");
+    }
+
+    @Test
+    public void getChanges_shouldReturn_eachProductOnce_inTheOrderOfItsLatestChange()
+    {
+        // arrange
+        long since = latestVersion();
+        Product price = new Product();
+        price.setPrice(new BigDecimal("449.99"));
+
+        // act
+        dao.update(2, price);
+        dao.update(1, price);
+        dao.update(2, price);
+        var changes = dao.getChanges(since, 10);
+
+        // assert
+        assertEquals(List.of(1, 2), changes.getProducts().stream().map(Product::getProductId).toList(),
+                "Because product 2 was changed last.");
+        assertEquals(since + 3, changes.getVersion());
+        assertFalse(changes.isHasMore());
+    }
+
+    @Test
+    public void getChanges_shouldReturn_stockTakenAtCheckout_once_afterTheFlush()
+    {
+        // arrange
+        long since = latestVersion();
+        var orders = new MySqlOrderDao(dataSource);
+
+        // act
+        orders.updateStock(1, 2);
+        orders.updateStock(1, 3);
+        var beforeFlush = dao.getChanges(since, 10);
+        int flushed = dao.flushStockChanges();
+        var changes = dao.getChanges(since, 10);
+
+        // assert
+        assertTrue(beforeFlush.getProducts().isEmpty());
+        assertEquals(1, flushed, "Because both orders took from the same product.");
+        assertEquals(List.of(45), changes.getProducts().stream().map(Product::getStock).toList());
+        assertEquals(since + 1, changes.getVersion());
+    }
+
+    @Test
+    public void getChanges_shouldReturn_aTombstone_forADeletedProduct()
+    {
+        // arrange
+        long since = latestVersion();
+        Product created = dao.create(new Product(0, "Retro Console", new BigDecimal("59.99"), 1, "", "Black", 5, false, ""));
+
+        // act
+        dao.delete(created.getProductId());
+        var changes = dao.getChanges(since, 10);
+
+        // assert
+        assertEquals(List.of(), changes.getProducts(), "Because the product is gone.");
+        assertEquals(List.of(created.getProductId()), changes.getDeleted());
+    }
+
+    @Test
+    public void getChanges_shouldPage_withHasMore_andTheVersionToAskFrom()
+    {
+        // arrange
+        long since = latestVersion();
+        Product stock = new Product();
+        stock.setStock(7);
+        dao.update(1, stock);
+        dao.update(2, stock);
+        dao.update(3, stock);
+
+        // act
+        var first = dao.getChanges(since, 2);
+        var rest = dao.getChanges(first.getVersion(), 2);
+
+        // assert
+        assertTrue(first.isHasMore());
+        assertEquals(List.of(1, 2), first.getProducts().stream().map(Product::getProductId).toList());
+        assertEquals(List.of(3), rest.getProducts().stream().map(Product::getProductId).toList());
+        assertFalse(rest.isHasMore());
+    }
+
+    private long latestVersion()
+    {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT last_change_id FROM product_change_sequence");
+             ResultSet row = statement.executeQuery())
+        {
+            row.next();
+            return row.getLong(1);
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CartVersionConflictException;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//counts the connections and statement executions (round trips) a cart mutation costs
+class MySqlShoppingCartDaoTest
+{
+    @Test
+    public void addToCart_shouldWrite_andReturnTheNewCart_inOneRoundTrip()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(1, 2, 3, 1), 5);
+        var catalog = new Catalog();
+        var dao = new MySqlShoppingCartDao(database.proxy(), catalog);
+
+        // act
+        ShoppingCart cart = dao.addToCart(1, 7, null, ProductFields.ALL);
+
+        // assert
+        assertEquals(1, database.connections);
+        assertEquals(1, database.executions, "the version bump, the write and the reads go out together");
+        assertTrue(database.sql.get(0).startsWith("INSERT INTO shopping_cart_versions"));
+        assertTrue(database.sql.get(0).contains("INSERT INTO shopping_cart (user_id, product_id, quantity)"));
+        assertTrue(database.sql.get(0).contains("SELECT product_id, quantity"));
+        assertFalse(database.sql.get(0).contains("JOIN"), "product details come from the catalog");
+        assertEquals(List.of(7L, 7L, 1L, 7L, 7L), database.parameters);
+        assertEquals(1, catalog.lookups);
+        assertEquals(2, cart.get(1).getQuantity());
+        assertEquals("Product 3", cart.get(3).getProduct().getName());
+        assertEquals(new BigDecimal("29.97"), cart.getTotal());
+        assertEquals(5, cart.getVersion());
+        assertEquals(1, database.commits, "the version bump and the write are one transaction");
+    }
+
+    @Test
+    public void addToCart_thatFails_shouldRollBack_theVersionBump()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(), 5);
+        database.failOn = "INSERT INTO shopping_cart (user_id";
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        assertThrows(RuntimeException.class, () -> dao.addToCart(1, 7, null, ProductFields.ALL));
+
+        // assert
+        assertEquals(1, database.rollbacks);
+        assertEquals(0, database.commits);
+    }
+
+    @Test
+    public void editCart_toZero_shouldDelete_onlyThatUsersRow_inOneRoundTrip()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(3, 1), 1);
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        ShoppingCart cart = dao.editCart(1, 7, 0, null, ProductFields.ALL);
+
+        // assert
+        assertEquals(1, database.connections);
+        assertEquals(1, database.executions);
+        assertTrue(database.sql.get(0).contains("DELETE FROM shopping_cart\nWHERE user_id = ?\nAND product_id = ?;"));
+        assertFalse(database.sql.get(0).contains("quantity = 0"), "other users' rows are never touched");
+        assertEquals(List.of(7L, 7L, 1L, 7L, 7L), database.parameters);
+        assertEquals(Set.of(3), cart.getItems().keySet());
+    }
+
+    @Test
+    public void addToCart_ofAnUnknownProduct_shouldOnlyRead_theCart()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(3, 1), 1);
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        ShoppingCart cart = dao.addToCart(99, 7, null, ProductFields.ALL);
+
+        // assert
+        assertEquals(1, database.executions);
+        assertTrue(database.sql.get(0).startsWith("SELECT product_id, quantity"));
+        assertEquals(Set.of(3), cart.getItems().keySet());
+    }
+
+    @Test
+    public void editCart_ofTenLines_shouldCost_theRoundTripsOfOne()
+    {
+        // arrange
+        var oneLine = new RecordingDataSource(Map.of(1, 2), 1);
+        var tenLines = new RecordingDataSource(Map.of(1, 2), 1);
+        Map<Integer, Integer> changes = new LinkedHashMap<>();
+        for (int productId = 1; productId <= 10; productId++)
+        {
+            changes.put(productId, productId % 2);
+        }
+
+        // act
+        new MySqlShoppingCartDao(oneLine.proxy(), new Catalog()).editCart(Map.of(1, 2), 7, null, ProductFields.ALL);
+        ShoppingCart cart = new MySqlShoppingCartDao(tenLines.proxy(), new Catalog()).editCart(changes, 7, null, ProductFields.ALL);
+
+        // assert
+        assertEquals(1, tenLines.connections);
+        assertEquals(1, tenLines.commits, "every line is applied in one transaction");
+        assertEquals(List.of(5, 5), tenLines.batchSizes, "the updates and the deletes go out as one batch each");
+        assertEquals(oneLine.executions + 1, tenLines.executions, "only the second batch is extra");
+        assertTrue(tenLines.sql.contains("DELETE FROM shopping_cart\nWHERE user_id = ?\nAND product_id = ?\n"));
+        assertEquals(Set.of(1), cart.getItems().keySet());
+    }
+
+    @Test
+    public void editCart_atTheExpectedVersion_shouldClaimIt_beforeWriting()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(1, 4), 4);
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        ShoppingCart cart = dao.editCart(1, 7, 4, 3L, ProductFields.ALL);
+
+        // assert
+        assertTrue(database.sql.get(0).contains("AND version = ?"), "the version is moved on only if it is still 3");
+        assertTrue(database.sql.get(1).startsWith("UPDATE shopping_cart\nSET quantity = ?"));
+        assertEquals(List.of(7L, 3L, 4L, 7L, 1L, 7L, 7L), database.parameters);
+        assertEquals(2, database.executions);
+        assertEquals(1, database.commits);
+        assertEquals(4, cart.getVersion());
+    }
+
+    @Test
+    public void editCart_atAnOlderVersion_shouldConflict_withoutWriting()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(1, 4), 4);
+        database.versionMatches = false;
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        var conflict = assertThrows(CartVersionConflictException.class,
+                () -> dao.editCart(1, 7, 4, 3L, ProductFields.ALL));
+
+        // assert
+        assertEquals(7, conflict.getUserId());
+        assertEquals(1, database.sql.size(), "only the version claim was sent");
+        assertEquals(1, database.rollbacks);
+        assertEquals(0, database.commits);
+    }
+
+    @Test
+    public void deleteIdleCarts_shouldLock_onlyTheCarts_itDeletes()
+    {
+        // arrange - two idle carts, users 11 and 12
+        var database = new RecordingDataSource(Map.of(11, 11, 12, 12), 0);
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        var deleted = dao.deleteIdleCarts(3600, 500);
+
+        // assert
+        assertTrue(database.sql.get(0).contains("ORDER BY last_modified\nLIMIT ?"), "candidates come off the index, unlocked");
+        assertTrue(database.sql.get(1).contains("WHERE user_id IN (?, ?) AND last_modified < NOW() - INTERVAL ? SECOND FOR UPDATE"),
+                "then only those carts are locked and checked again");
+        assertEquals("DELETE FROM shopping_cart WHERE user_id IN (?, ?)", database.sql.get(2));
+        assertEquals("DELETE FROM shopping_cart_versions WHERE user_id IN (?, ?)", database.sql.get(3));
+        assertEquals(List.of(3600L, 500L, 11L, 12L, 3600L, 11L, 12L, 11L, 12L), database.parameters);
+        assertEquals(List.of("setLong", "setInt", "setInt", "setInt", "setLong", "setInt", "setInt", "setInt", "setInt"),
+                database.setters, "user ids are bound as the INT they are");
+        assertEquals(1, database.commits);
+        assertEquals(2, deleted.carts());
+    }
+
+    @Test
+    public void mergeCart_shouldUpsert_everyKnownLine_inOneStatement()
+    {
+        // arrange - a guest cart with two catalog products and one that was taken out of the catalog
+        var database = new RecordingDataSource(Map.of(), 0);
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        dao.mergeCart(guestCart(), 7);
+
+        // assert
+        assertTrue(database.sql.get(0).startsWith("INSERT INTO shopping_cart_versions"));
+        assertEquals("INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?), (?, ?, ?)"
+                + " ON DUPLICATE KEY UPDATE quantity = GREATEST(quantity, VALUES(quantity))", database.sql.get(1));
+        assertEquals(List.of(7L, 7L, 3L, 2L, 7L, 5L, 1L), database.parameters);
+        assertEquals(1, database.commits, "the version bump and the upsert are one transaction");
+    }
+
+    @Test
+    public void mergeCart_thatFails_shouldRollBack_andTell_theCaller()
+    {
+        // arrange
+        var database = new RecordingDataSource(Map.of(), 0);
+        database.failOn = "GREATEST(quantity";
+        var dao = new MySqlShoppingCartDao(database.proxy(), new Catalog());
+
+        // act
+        assertThrows(RuntimeException.class, () -> dao.mergeCart(guestCart(), 7));
+
+        // assert
+        assertEquals(1, database.rollbacks, "the version bump is undone with it");
+        assertEquals(0, database.commits);
+    }
+
+    private static Map<Integer, Integer> guestCart()
+    {
+        Map<Integer, Integer> guestCart = new LinkedHashMap<>();
+        guestCart.put(3, 2);
+        guestCart.put(99, 1);
+        guestCart.put(5, 1);
+        return guestCart;
+    }
+
+    //products 1 to 10, counting the lookups of cart contents
+    private static class Catalog extends MySqlProductDao
+    {
+        private int lookups;
+
+        Catalog()
+        {
+            super(null);
+        }
+
+        @Override
+        public Product getById(int productId)
+        {
+            return productId <= 10 ? new Product(productId, "Product " + productId, new BigDecimal("9.99"), 1, "", "", 5, false, "") : null;
+        }
+
+        @Override
+        public List<Product> getByIds(Collection<Integer> productIds)
+        {
+            lookups++;
+            return productIds.stream().map(this::getById).filter(Objects::nonNull).toList();
+        }
+    }
+
+    /* a JDBC stand-in that records what is sent. a statement string answers the way MySQL answers a
+    multi-statement one: an update count per write, the given version for a read of a version and the given
+    (product id -> quantity) rows for any other read.
+     */
+    private static class RecordingDataSource
+    {
+        private final Map<Integer, Integer> rows;
+        private final long version;
+        private final List<String> sql = new ArrayList<>();
+        private final List<Long> parameters = new ArrayList<>();
+        private final List<String> setters = new ArrayList<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private boolean versionMatches = true;
+        private String failOn; //statements containing this fail
+        private int connections;
+        private int executions;
+        private int commits;
+        private int rollbacks;
+
+        RecordingDataSource(Map<Integer, Integer> rows, long version)
+        {
+            this.rows = new TreeMap<>(rows);
+            this.version = version;
+        }
+
+        DataSource proxy()
+        {
+            return stub(DataSource.class, (method, args) -> {
+                if (method.equals("getConnection"))
+                {
+                    connections++;
+                    return connection();
+                }
+                return null;
+            });
+        }
+
+        private Connection connection()
+        {
+            return stub(Connection.class, (method, args) -> switch (method)
+            {
+                case "prepareStatement" -> statement((String) args[0]);
+                case "commit" -> commits++;
+                case "rollback" -> rollbacks++;
+                default -> null;
+            });
+        }
+
+        private PreparedStatement statement(String text)
+        {
+            sql.add(text);
+            String[] parts = text.split(";\n");
+            int[] current = {0};
+            int[] batched = {0};
+            boolean fails = failOn != null && text.contains(failOn);
+
+            return stub(PreparedStatement.class, (method, args) -> switch (method)
+            {
+                case "setInt", "setLong" -> {
+                    setters.add(method);
+                    yield parameters.add(((Number) args[1]).longValue());
+                }
+                case "execute" -> {
+                    failIf(fails);
+                    executions++;
+                    current[0] = 0;
+                    yield isRead(parts[0]);
+                }
+                case "getUpdateCount" -> current[0] < parts.length && !isRead(parts[current[0]]) ? 1 : -1;
+                case "getMoreResults" -> {
+                    current[0]++;
+                    yield current[0] < parts.length && isRead(parts[current[0]]);
+                }
+                case "getResultSet" -> resultSet(parts[current[0]]);
+                case "executeQuery" -> {
+                    failIf(fails);
+                    executions++;
+                    yield resultSet(text);
+                }
+                case "executeUpdate" -> {
+                    failIf(fails);
+                    executions++;
+                    boolean claim = text.contains("AND version = ?") || text.contains("INSERT IGNORE");
+                    yield claim && !versionMatches ? 0 : 1;
+                }
+                case "addBatch" -> batched[0]++;
+                case "executeBatch" -> {
+                    failIf(fails);
+                    executions++;
+                    batchSizes.add(batched[0]);
+                    yield new int[batched[0]];
+                }
+                default -> null;
+            });
+        }
+
+        private static void failIf(boolean fails) throws SQLException
+        {
+            if (fails)
+                throw new SQLException("lock wait timeout");
+        }
+
+        private static boolean isRead(String part)
+        {
+            return part.strip().startsWith("SELECT");
+        }
+
+        private ResultSet resultSet(String query)
+        {
+            boolean versionRead = query.contains("SELECT version");
+            Iterator<Map.Entry<Integer, Integer>> iterator = versionRead
+                    ? Map.of(0, 0).entrySet().iterator()
+                    : rows.entrySet().iterator();
+            Object[] current = new Object[1];
+
+            return stub(ResultSet.class, (method, args) -> switch (method)
+            {
+                case "next" -> {
+                    current[0] = iterator.hasNext() ? iterator.next() : null;
+                    yield current[0] != null;
+                }
+                case "getInt" -> {
+                    var row = (Map.Entry<?, ?>) current[0];
+                    yield args[0].equals("product_id") ? row.getKey() : row.getValue();
+                }
+                case "getLong" -> version;
+                default -> null;
+            });
+        }
+
+        private interface Handler
+        {
+            Object invoke(String method, Object[] args) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T stub(Class<T> type, Handler handler)
+        {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        Object result = handler.invoke(method.getName(), args);
+                        //methods the dao doesn't look at answer with their type's default
+                        if (result == null && method.getReturnType() == boolean.class)
+                            return false;
+                        if (result == null && method.getReturnType() == int.class)
+                            return 0;
+                        return method.getReturnType() == void.class ? null : result;
+                    });
+        }
+    }
+}
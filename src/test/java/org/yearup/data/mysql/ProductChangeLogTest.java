@@ -0,0 +1,222 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//the transactions around product writes and their change log entries, without a database
+class ProductChangeLogTest
+{
+    @Test
+    public void update_shouldBe_committedTogether_withItsChangeLogEntry()
+    {
+        // arrange
+        var database = new ScriptedDataSource(null);
+        var dao = new MySqlProductDao(database.proxy());
+
+        // act
+        dao.update(1, product());
+
+        // assert
+        assertTrue(database.sql.get(0).startsWith("UPDATE products"));
+        assertTrue(database.sql.get(1).contains("UPDATE product_change_sequence"));
+        assertTrue(database.sql.get(2).contains("INSERT INTO product_changes"));
+        assertEquals(1, database.commits);
+    }
+
+    @Test
+    public void update_whoseChangeLogEntry_fails_shouldRollBack_andThrow()
+    {
+        // arrange
+        var database = new ScriptedDataSource("INSERT INTO product_changes");
+        var dao = new MySqlProductDao(database.proxy());
+
+        // act
+        assertThrows(RuntimeException.class, () -> dao.update(1, product()));
+
+        // assert
+        assertEquals(1, database.rollbacks, "the product row is not changed without its log entry");
+        assertEquals(0, database.commits);
+    }
+
+    @Test
+    public void delete_whoseTombstone_fails_shouldRollBack_andThrow()
+    {
+        // arrange
+        var database = new ScriptedDataSource("UPDATE product_change_sequence");
+        var dao = new MySqlProductDao(database.proxy());
+
+        // act
+        assertThrows(RuntimeException.class, () -> dao.delete(1));
+
+        // assert
+        assertEquals(1, database.rollbacks);
+        assertEquals(0, database.commits);
+    }
+
+    @Test
+    public void updateStock_shouldMark_theProduct_withoutTakingTheSequenceLock()
+    {
+        // arrange
+        var database = new ScriptedDataSource(null);
+
+        // act
+        new MySqlOrderDao(database.proxy()).updateStock(1, 2);
+
+        // assert
+        assertEquals(2, database.sql.size(), "no lock on product_change_sequence at checkout");
+        assertTrue(database.sql.get(0).contains("UPDATE products"));
+        assertTrue(database.sql.get(1).contains("INSERT IGNORE INTO product_stock_changes"));
+        assertEquals(1, database.commits, "the stock and its mark are committed together");
+    }
+
+    @Test
+    public void updateStock_shouldThrow_whenItFails()
+    {
+        // arrange
+        var database = new ScriptedDataSource("UPDATE products");
+
+        // act
+        assertThrows(RuntimeException.class, () -> new MySqlOrderDao(database.proxy()).updateStock(1, 2),
+                "the checkout must not carry on as if the stock was taken");
+
+        // assert
+        assertEquals(1, database.rollbacks);
+        assertEquals(0, database.commits);
+    }
+
+    @Test
+    public void flushStockChanges_shouldRecord_eachMarkedProduct_underOneTakeOfTheSequence()
+    {
+        // arrange
+        var database = new ScriptedDataSource(null, 3, 7);
+        var dao = new MySqlProductDao(database.proxy());
+
+        // act
+        var actual = dao.flushStockChanges();
+
+        // assert
+        assertEquals(2, actual);
+        assertEquals(1, database.sql.stream().filter(sql -> sql.contains("UPDATE product_change_sequence")).count());
+        assertEquals(2, database.batched.stream().filter(sql -> sql.contains("INSERT INTO product_changes")).count(),
+                "one change per marked product");
+        assertEquals(2, database.batched.stream().filter(sql -> sql.contains("DELETE FROM product_stock_changes")).count());
+        assertEquals(1, database.commits);
+    }
+
+    @Test
+    public void flushStockChanges_whoseChangeLogEntries_fail_shouldRollBack_andKeepTheMarks()
+    {
+        // arrange
+        var database = new ScriptedDataSource("UPDATE product_change_sequence", 3);
+        var dao = new MySqlProductDao(database.proxy());
+
+        // act
+        assertThrows(RuntimeException.class, dao::flushStockChanges);
+
+        // assert
+        assertEquals(1, database.rollbacks, "the marks are only cleared together with their change log entries");
+        assertEquals(0, database.commits);
+    }
+
+    private static Product product()
+    {
+        return new Product(1, "Smartphone", new BigDecimal("449.99"), 1, "", "Black", 50, false, "");
+    }
+
+    //every write changes one row, a statement containing failOn fails, queries return the marked product ids
+    private static class ScriptedDataSource
+    {
+        private final String failOn;
+        private final List<Integer> marked;
+        private final List<String> sql = new ArrayList<>();
+        private final List<String> batched = new ArrayList<>();
+        private int commits;
+        private int rollbacks;
+
+        ScriptedDataSource(String failOn, Integer... marked)
+        {
+            this.failOn = failOn;
+            this.marked = List.of(marked);
+        }
+
+        DataSource proxy()
+        {
+            return stub(DataSource.class, (method, args) -> method.equals("getConnection") ? connection() : null);
+        }
+
+        private Connection connection()
+        {
+            return stub(Connection.class, (method, args) -> switch (method)
+            {
+                case "prepareStatement" -> statement((String) args[0]);
+                case "commit" -> commits++;
+                case "rollback" -> rollbacks++;
+                default -> null;
+            });
+        }
+
+        private PreparedStatement statement(String text)
+        {
+            sql.add(text);
+            return stub(PreparedStatement.class, (method, args) -> switch (method)
+            {
+                case "executeUpdate" -> {
+                    if (failOn != null && text.contains(failOn))
+                        throw new SQLException("lock wait timeout");
+                    yield 1;
+                }
+                case "addBatch" -> batched.add(text);
+                case "executeQuery" -> rows();
+                default -> null;
+            });
+        }
+
+        private ResultSet rows()
+        {
+            Iterator<Integer> ids = marked.iterator();
+            Integer[] current = {null};
+            return stub(ResultSet.class, (method, args) -> switch (method)
+            {
+                case "next" -> {
+                    current[0] = ids.hasNext() ? ids.next() : null;
+                    yield current[0] != null;
+                }
+                case "getInt" -> current[0];
+                default -> null;
+            });
+        }
+
+        private interface Handler
+        {
+            Object invoke(String method, Object[] args) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T stub(Class<T> type, Handler handler)
+        {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        Object result = handler.invoke(method.getName(), args);
+                        //methods the dao doesn't look at answer with their type's default
+                        if (result == null && method.getReturnType() == boolean.class)
+                            return false;
+                        if (result == null && method.getReturnType() == int.class)
+                            return 0;
+                        return method.getReturnType() == void.class ? null : result;
+                    });
+        }
+    }
+}
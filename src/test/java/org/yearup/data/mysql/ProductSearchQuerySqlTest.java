@@ -0,0 +1,128 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//the SQL text and parameter order of searches and keyset pages; no database needed
+class ProductSearchQuerySqlTest
+{
+    @Test
+    public void search_shouldOnlyWrite_theSuppliedFilters()
+    {
+        // act
+        var sql = ProductSearchQuery.of(null, null, new BigDecimal("20.00"), "").getSql();
+
+        // assert
+        assertEquals("SELECT * FROM products WHERE price <= ?", sql);
+    }
+
+    @Test
+    public void firstPage_shouldOrderBy_theSortColumn_thenProductId()
+    {
+        // arrange
+        var query = ProductSearchQuery.of(2, null, null, null);
+
+        // act
+        var sql = query.getPageSql(ProductSort.PRICE_DESC, false);
+
+        // assert
+        assertEquals("SELECT * FROM products WHERE category_id = ? ORDER BY price DESC, product_id DESC LIMIT ?", sql);
+    }
+
+    @Test
+    public void pageAfterCursor_shouldSeek_pastTheCursorRow()
+    {
+        // arrange
+        var filtered = ProductSearchQuery.of(null, new BigDecimal("10.00"), null, "Sub7");
+        var unfiltered = ProductSearchQuery.of(null, null, null, null);
+
+        // act
+        var byName = filtered.getPageSql(ProductSort.NAME, true);
+        var newest = unfiltered.getPageSql(ProductSort.NEWEST, true);
+
+        // assert
+        assertEquals("SELECT * FROM products WHERE subcategory = ? AND price >= ?"
+                + " AND (name > ? OR (name = ? AND product_id > ?)) ORDER BY name, product_id LIMIT ?", byName);
+        assertEquals("SELECT * FROM products WHERE product_id < ? ORDER BY product_id DESC LIMIT ?", newest);
+    }
+
+    @Test
+    public void subCategoryPages_shouldOrderBy_columnsOfTheSubCategoryIndexes()
+    {
+        // arrange - ix_products_subcategory_name and ix_products_subcategory_product
+        var query = ProductSearchQuery.of(null, null, null, "Sub7");
+
+        // act
+        var byName = query.getPageSql(ProductSort.NAME, true);
+        var newest = query.getPageSql(ProductSort.NEWEST, false);
+
+        // assert
+        assertEquals("SELECT * FROM products WHERE subcategory = ?"
+                + " AND (name > ? OR (name = ? AND product_id > ?)) ORDER BY name, product_id LIMIT ?", byName);
+        assertEquals("SELECT * FROM products WHERE subcategory = ? ORDER BY product_id DESC LIMIT ?", newest);
+    }
+
+    @Test
+    public void bindPage_shouldBind_filtersThenCursorThenLimit() throws SQLException
+    {
+        // arrange
+        var query = ProductSearchQuery.of(2, null, new BigDecimal("50.00"), null);
+        var after = ProductCursor.after(ProductSort.PRICE_ASC,
+                new Product(42, "Zelda", new BigDecimal("19.99"), 2, "", "", 1, false, ""));
+        List<Object> parameters = new ArrayList<>();
+
+        // act
+        bindPage(query, ProductSort.PRICE_ASC, after, 10, parameters);
+
+        // assert
+        assertEquals(List.of(2, new BigDecimal("50.00"), new BigDecimal("19.99"), new BigDecimal("19.99"), 42, 11), parameters,
+                "the limit asks for one extra row, to tell whether there is a next page");
+    }
+
+    @Test
+    public void bindPage_newest_shouldBind_onlyTheProductId_ofTheCursor() throws SQLException
+    {
+        // arrange
+        var query = ProductSearchQuery.of(null, null, null, null);
+        var after = ProductCursor.after(ProductSort.NEWEST,
+                new Product(42, "Zelda", new BigDecimal("19.99"), 2, "", "", 1, false, ""));
+        List<Object> parameters = new ArrayList<>();
+
+        // act
+        bindPage(query, ProductSort.NEWEST, after, 5, parameters);
+
+        // assert
+        assertEquals(List.of(42, 6), parameters);
+    }
+
+    //records the values set on a statement, in parameter order
+    private static void bindPage(ProductSearchQuery query, ProductSort sort, ProductCursor after, int limit, List<Object> parameters)
+            throws SQLException
+    {
+        var statement = (PreparedStatement) Proxy.newProxyInstance(ProductSearchQuerySqlTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set"))
+                    {
+                        int index = (int) args[0];
+                        while (parameters.size() < index)
+                            parameters.add(null);
+                        parameters.set(index - 1, args[1]);
+                    }
+                    return null;
+                });
+
+        query.bindPage(statement, sort, after, limit);
+    }
+}
@@ -0,0 +1,145 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSearchQueryTest extends BaseDaoTestClass
+{
+    private static final int CATALOG_SIZE = 1_000_000;
+
+    //the query plans only come out like production with a realistic number of rows
+    private void loadCatalog() throws SQLException
+    {
+        // a million products spread over the 3 test categories and 20 subcategories,
+        // inserted inside the test transaction so the base class rolls them back
+        try (Statement statement = dataSource.getConnection().createStatement())
+        {
+            statement.execute("SET SESSION cte_max_recursion_depth = " + CATALOG_SIZE);
+            statement.execute("""
+                    INSERT INTO products (name, price, category_id, description, subcategory, image_url, stock, featured)
+                    WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < %d)
+                    SELECT CONCAT('Product ', n), (n %% 100000) / 100 + 0.01, (n %% 3) + 1, '',
+                           CONCAT('Sub', n %% 20), '', n %% 50, n %% 97 = 0
+                    FROM seq
+                    """.formatted(CATALOG_SIZE));
+        }
+    }
+
+    @Test
+    public void search_byCategorySubCategoryAndPrice_shouldUse_theCompositeIndex() throws SQLException
+    {
+        // arrange
+        loadCatalog();
+        var query = ProductSearchQuery.of(2, new BigDecimal("10.00"), new BigDecimal("20.00"), "Sub7");
+
+        // act
+        var key = explainKey(query);
+
+        // assert
+        assertEquals("ix_products_category_subcategory_price", key);
+    }
+
+    @Test
+    public void search_bySubCategoryAndPrice_shouldUse_theSubCategoryIndex() throws SQLException
+    {
+        // arrange
+        loadCatalog();
+        var query = ProductSearchQuery.of(null, new BigDecimal("10.00"), new BigDecimal("20.00"), "Sub7");
+
+        // act
+        var key = explainKey(query);
+
+        // assert
+        assertEquals("ix_products_subcategory_price", key);
+    }
+
+    @Test
+    public void search_byPriceRange_shouldUse_thePriceIndex() throws SQLException
+    {
+        // arrange
+        loadCatalog();
+        var query = ProductSearchQuery.of(null, new BigDecimal("10.00"), new BigDecimal("10.50"), null);
+
+        // act
+        var key = explainKey(query);
+
+        // assert
+        assertEquals("ix_products_price", key);
+    }
+
+    @Test
+    public void pageBySubCategory_sortedByName_shouldUse_theSubCategoryNameIndex() throws SQLException
+    {
+        // arrange
+        loadCatalog();
+        var query = ProductSearchQuery.of(null, null, null, "Sub7");
+        var after = ProductCursor.after(ProductSort.NAME, product(500_007));
+
+        // act
+        var key = explainPageKey(query, ProductSort.NAME, after);
+
+        // assert
+        assertEquals("ix_products_subcategory_name", key);
+    }
+
+    @Test
+    public void pageBySubCategory_newestFirst_shouldUse_theSubCategoryProductIndex() throws SQLException
+    {
+        // arrange
+        loadCatalog();
+        var query = ProductSearchQuery.of(null, null, null, "Sub7");
+        var after = ProductCursor.after(ProductSort.NEWEST, product(500_007));
+
+        // act
+        var key = explainPageKey(query, ProductSort.NEWEST, after);
+
+        // assert
+        assertEquals("ix_products_subcategory_product", key);
+    }
+
+    private String explainKey(ProductSearchQuery query) throws SQLException
+    {
+        Connection connection = dataSource.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query.getSql()))
+        {
+            query.bind(statement);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                row.next();
+                return row.getString("key");
+            }
+        }
+    }
+
+    private String explainPageKey(ProductSearchQuery query, ProductSort sort, ProductCursor after) throws SQLException
+    {
+        Connection connection = dataSource.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query.getPageSql(sort, after != null)))
+        {
+            query.bindPage(statement, sort, after, 20);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                row.next();
+                return row.getString("key");
+            }
+        }
+    }
+
+    private static Product product(int id)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("50.08"), 1, "", "Sub7", 7, false, "");
+    }
+}
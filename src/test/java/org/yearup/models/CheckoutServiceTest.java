@@ -0,0 +1,151 @@
+package org.yearup.models;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+import org.yearup.data.ProfileDao;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutServiceTest
+{
+    @Test
+    public void checkout_thatFails_partWay_shouldStill_refresh_theStockAlreadyTaken()
+    {
+        // arrange - product 3 is sold out, products 1 and 2 come before it
+        var orders = new Orders(3);
+        var catalog = new Catalog();
+        var checkout = new CheckoutService(new Cart(1, 2, 3), orders, catalog, new Profiles());
+
+        // act
+        assertThrows(RuntimeException.class, () -> checkout.checkout(7));
+
+        // assert
+        assertEquals(List.of(1, 2), orders.stockTaken, "those decrements are committed");
+        assertEquals(List.of(1, 2), catalog.refreshed, "so the catalog has to re-read those products");
+    }
+
+    @Test
+    public void checkout_shouldRefresh_everyProductSold()
+    {
+        // arrange
+        var catalog = new Catalog();
+        var checkout = new CheckoutService(new Cart(1, 2), new Orders(0), catalog, new Profiles());
+
+        // act
+        checkout.checkout(7);
+
+        // assert
+        assertEquals(List.of(1, 2), catalog.refreshed);
+        assertEquals(1, catalog.refreshes, "one new catalog version for the whole order");
+    }
+
+    //a cart holding one of each given product, in that order
+    private static class Cart extends MySqlShoppingCartDao
+    {
+        private final int[] productIds;
+
+        Cart(int... productIds)
+        {
+            super(null, null);
+            this.productIds = productIds;
+        }
+
+        @Override
+        public ShoppingCart getByUserId(int userId)
+        {
+            Map<Integer, ShoppingCartItem> items = new LinkedHashMap<>();
+            for (int productId : productIds)
+            {
+                Product product = new Product(productId, "Product " + productId, new BigDecimal("9.99"), 1, "", "", 5, false, "");
+                items.put(productId, new ShoppingCartItem(product, userId, 1));
+            }
+            return new ShoppingCart(items);
+        }
+
+        @Override
+        public void clearCart(int userID)
+        {
+        }
+    }
+
+    //takes stock of every product but the sold out one
+    private static class Orders implements OrderDao
+    {
+        private final int soldOut;
+        private final List<Integer> stockTaken = new ArrayList<>();
+
+        Orders(int soldOut)
+        {
+            this.soldOut = soldOut;
+        }
+
+        @Override
+        public int createOrder(Profile profile, ShoppingCart cart)
+        {
+            return 1;
+        }
+
+        @Override
+        public void addOrderToDatabase(int orderId, ShoppingCartItem item)
+        {
+        }
+
+        @Override
+        public void updateStock(int productId, int quantity)
+        {
+            if (productId == soldOut)
+                throw new RuntimeException("Were all out of product # " + productId);
+            stockTaken.add(productId);
+        }
+
+        @Override
+        public Map<Integer, Integer> getUnitsSoldByProduct()
+        {
+            return Map.of();
+        }
+    }
+
+    private static class Catalog extends MySqlProductDao
+    {
+        private final List<Integer> refreshed = new ArrayList<>();
+        private int refreshes;
+
+        Catalog()
+        {
+            super(null);
+        }
+
+        @Override
+        public void refresh(Collection<Integer> productIds)
+        {
+            refreshed.addAll(productIds);
+            refreshes++;
+        }
+    }
+
+    private static class Profiles implements ProfileDao
+    {
+        @Override
+        public Profile create(Profile profile)
+        {
+            return profile;
+        }
+
+        @Override
+        public Profile update(int userId, Profile profile)
+        {
+            return profile;
+        }
+
+        @Override
+        public Profile getProfileByUserID(int userID)
+        {
+            return new Profile();
+        }
+    }
+}
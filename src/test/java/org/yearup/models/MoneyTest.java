@@ -0,0 +1,49 @@
+package org.yearup.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest
+{
+    @Test
+    public void amounts_shouldRoundHalfEven_toTheCent_onTheWayIn_andKeepTwoDecimals_onTheWayOut()
+    {
+        // act & assert
+        assertEquals(1999, Money.cents(new BigDecimal("19.99")));
+        assertEquals(1990, Money.cents(new BigDecimal("19.9")));
+        assertEquals(2, Money.cents(new BigDecimal("0.025")), "a tie goes to the even cent");
+        assertEquals(4, Money.cents(new BigDecimal("0.035")));
+        assertEquals(0, Money.cents(null));
+        assertEquals(new BigDecimal("19.90"), Money.toBigDecimal(1990));
+        assertEquals(2500, Money.basisPoints(new BigDecimal("0.25")));
+    }
+
+    @Test
+    public void lineDiscounts_shouldBeRounded_oncePerLine()
+    {
+        // arrange - 3 x 9.99 = 29.97 at 15% off is 4.4955 off, rounded to 4.50
+        var item = new ShoppingCartItem(new Product(1, "", new BigDecimal("9.99"), 1, "", "", 1, false, ""), 1, 3);
+        item.setDiscountPercent(new BigDecimal("0.15"));
+        var cart = new ShoppingCart();
+        cart.add(item);
+        cart.add(new ShoppingCartItem(new Product(2, "", new BigDecimal("0.10"), 1, "", "", 1, false, ""), 1, 1));
+
+        // act & assert
+        assertEquals(2547, item.getLineTotalCents());
+        assertEquals(new BigDecimal("25.47"), item.getLineTotal());
+        assertEquals(new BigDecimal("25.57"), cart.getTotal());
+        assertEquals(new BigDecimal("0.00"), new ShoppingCart().getTotal());
+    }
+
+    @Test
+    public void arithmetic_shouldFail_ratherThanOverflow()
+    {
+        // act & assert
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+        assertThrows(ArithmeticException.class, () -> Money.plus(Long.MAX_VALUE, 1));
+        assertEquals(-2, Money.share(-5, 5000), "a negative tie rounds to the even cent too");
+    }
+}
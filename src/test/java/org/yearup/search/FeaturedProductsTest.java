@@ -0,0 +1,102 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FeaturedProductsTest
+{
+    @Test
+    public void top_shouldRank_inStockFirst_thenBestSellers_thenCheapest()
+    {
+        // arrange
+        var featured = load(Map.of(3, 40, 4, 40),
+                product(1, 1, "19.99", 0, true),
+                product(2, 1, "59.99", 5, true),
+                product(3, 2, "49.99", 5, true),
+                product(4, 1, "29.99", 5, true),
+                product(5, 1, "9.99", 5, false));
+
+        // act / assert
+        assertEquals(List.of(4, 3, 2, 1), ids(featured.top(null, 10)));
+        assertEquals(List.of(4, 2, 1), ids(featured.top(1, 10)));
+        assertEquals(List.of(4, 3), ids(featured.top(null, 2)));
+        assertEquals(List.of(), ids(featured.top(7, 10)));
+    }
+
+    @Test
+    public void onUnitsSold_shouldRerank_whenAFeaturedProductSoldMore()
+    {
+        // arrange
+        var featured = load(Map.of(2, 10),
+                product(1, 1, "19.99", 5, true),
+                product(2, 1, "29.99", 5, true));
+
+        // act
+        featured.onUnitsSold(Map.of(1, 25, 2, 10));
+
+        // assert
+        assertEquals(List.of(1, 2), ids(featured.top(null, 10)));
+    }
+
+    @Test
+    public void onProductSaved_shouldRerank_whenStockPriceOrFlagChange()
+    {
+        // arrange
+        var featured = load(Map.of(),
+                product(1, 1, "19.99", 5, true),
+                product(2, 1, "29.99", 5, true),
+                product(3, 1, "39.99", 5, false));
+
+        // act
+        featured.onProductSaved(product(1, 1, "19.99", 5, true), product(1, 1, "19.99", 0, true));
+        featured.onProductSaved(product(3, 1, "39.99", 5, false), product(3, 1, "9.99", 5, true));
+        featured.onProductDeleted(product(2, 1, "29.99", 5, true));
+
+        // assert
+        assertEquals(List.of(3, 1), ids(featured.top(1, 10)));
+    }
+
+    @Test
+    public void onProductSaved_shouldKeep_theRanking_butServe_theNewProduct_forOtherEdits()
+    {
+        // arrange
+        var featured = load(Map.of(), product(1, 1, "19.99", 5, true), product(2, 1, "29.99", 5, true));
+        var renamed = product(2, 1, "29.99", 4, true);
+        renamed.setName("Renamed");
+
+        // act
+        featured.onProductSaved(product(2, 1, "29.99", 5, true), renamed);
+
+        // assert
+        assertEquals(List.of(1, 2), ids(featured.top(null, 10)));
+        assertSame(renamed, featured.top(null, 10).get(1));
+        assertSame(renamed, featured.top(1, 10).get(1));
+    }
+
+    private static FeaturedProducts load(Map<Integer, Integer> unitsSold, Product... products)
+    {
+        var featured = new FeaturedProducts(new ProductTypeaheadTest.UnitsSold(unitsSold));
+        featured.onCatalogLoaded(CatalogSnapshot.of(1, new ArrayList<>(List.of(products))));
+        return featured;
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+
+    private static Product product(int id, int categoryId, String price, int stock, boolean featured)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), categoryId, "", "", stock, featured, "");
+    }
+}
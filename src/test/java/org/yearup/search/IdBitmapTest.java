@@ -0,0 +1,79 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class IdBitmapTest
+{
+    @Test
+    public void and_andNot_shouldMatch_setOperations_forSmallAndSkewedArrays()
+    {
+        // arrange - array containers of similar sizes, and a few ids against thousands (galloping)
+        var random = new Random(42);
+        int[][] sizes = {{50, 60}, {3, 4000}, {4000, 3}, {1, 4096}, {0, 100}};
+
+        for (int[] size : sizes)
+        {
+            var left = randomIds(random, size[0], 1 << 16);
+            var right = randomIds(random, size[1], 1 << 16);
+
+            // act / assert
+            assertOperations(left, right);
+        }
+    }
+
+    @Test
+    public void and_andNot_shouldMatch_setOperations_betweenArraysAndBitmaps()
+    {
+        // arrange - 20000 ids in one container is a bitmap, 100 is an array
+        var random = new Random(7);
+        var dense = randomIds(random, 20_000, 1 << 16);
+        var sparse = randomIds(random, 100, 1 << 16);
+
+        // act / assert
+        assertOperations(dense, sparse);
+        assertOperations(sparse, dense);
+    }
+
+    private static void assertOperations(TreeSet<Integer> left, TreeSet<Integer> right)
+    {
+        IdBitmap a = bitmap(left);
+        IdBitmap b = bitmap(right);
+
+        var and = new TreeSet<>(left);
+        and.retainAll(right);
+        var andNot = new TreeSet<>(left);
+        andNot.removeAll(right);
+        var or = new TreeSet<>(left);
+        or.addAll(right);
+
+        assertArrayEquals(toArray(and), a.and(b).toArray());
+        assertArrayEquals(toArray(andNot), a.andNot(b).toArray());
+        assertArrayEquals(toArray(or), a.or(b).toArray());
+    }
+
+    private static TreeSet<Integer> randomIds(Random random, int count, int bound)
+    {
+        var ids = new TreeSet<Integer>();
+        while (ids.size() < count)
+        {
+            ids.add(random.nextInt(bound));
+        }
+        return ids;
+    }
+
+    private static IdBitmap bitmap(TreeSet<Integer> ids)
+    {
+        int[] sorted = toArray(ids);
+        return IdBitmap.ofSorted(sorted, sorted.length);
+    }
+
+    private static int[] toArray(TreeSet<Integer> ids)
+    {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
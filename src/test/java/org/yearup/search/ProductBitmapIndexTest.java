@@ -0,0 +1,117 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductBitmapIndexTest
+{
+    @Test
+    public void search_shouldAnd_filters_andOr_subCategories()
+    {
+        // arrange
+        var index = load(
+                product(1, 1, "Action", 5, true),
+                product(2, 1, "RPG", 0, false),
+                product(3, 1, "Racing", 3, false),
+                product(4, 2, "Action", 8, true),
+                product(5, 1, "action", 2, false));
+
+        // act / assert
+        assertArrayEquals(new int[]{1, 2, 5}, index.search(1, List.of("Action", "rpg"), null, null));
+        assertArrayEquals(new int[]{1, 5}, index.search(1, List.of("Action", "rpg"), true, null));
+        assertArrayEquals(new int[]{1, 4}, index.search(null, null, true, true));
+        assertArrayEquals(new int[]{2}, index.search(null, null, false, null));
+        assertArrayEquals(new int[]{}, index.search(3, null, null, null));
+    }
+
+    @Test
+    public void search_shouldFollow_updates_andDeletes()
+    {
+        // arrange
+        var index = load(product(1, 1, "Action", 5, true), product(2, 1, "RPG", 0, false));
+
+        // act
+        index.onProductSaved(product(2, 1, "RPG", 0, false), product(2, 2, "RPG", 4, true));
+        index.onProductSaved(null, product(3, 1, "Action", 0, false));
+        index.onProductDeleted(product(1, 1, "Action", 5, true));
+
+        // assert
+        assertArrayEquals(new int[]{3}, index.search(1, null, null, null));
+        assertArrayEquals(new int[]{2}, index.search(null, null, true, true));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void search_shouldGive_theSameAnswer_asAScan_onLargeCatalogs()
+    {
+        // arrange - enough ids to spread over several containers, dense and sparse
+        String[] subCategories = {"Action", "RPG", "Racing", "Puzzle"};
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= 200_000; id++)
+        {
+            products.add(product(id, id % 7, subCategories[id % 4], id % 3, id % 50 == 0));
+        }
+        var index = new ProductBitmapIndex();
+        index.onCatalogLoaded(CatalogSnapshot.of(1, products));
+
+        // act
+        int[] actual = index.search(3, List.of("RPG", "Puzzle"), true, null);
+        int[] featured = index.search(null, null, null, true);
+
+        // assert
+        int[] expected = IntStream.rangeClosed(1, 200_000)
+                .filter(id -> id % 7 == 3 && (id % 4 == 1 || id % 4 == 3) && id % 3 > 0)
+                .toArray();
+        assertArrayEquals(expected, actual);
+        assertArrayEquals(IntStream.rangeClosed(1, 200_000).filter(id -> id % 50 == 0).toArray(), featured);
+    }
+
+    @Test
+    public void subCategories_shouldMatch_likeTheSnapshot_whateverTheDefaultLocale()
+    {
+        // arrange - in Turkish "INDIE".toLowerCase() is "ındıe"
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try
+        {
+            List<Product> products = List.of(product(1, 1, "Indie ", 5, false), product(2, 1, "indie", 5, false));
+            var snapshot = CatalogSnapshot.of(1, new ArrayList<>(products));
+            var index = new ProductBitmapIndex();
+            index.onCatalogLoaded(snapshot);
+
+            // act
+            int[] fromBitmaps = index.search(null, List.of("INDIE"), null, null);
+            List<Product> fromSnapshot = snapshot.listBySubCategory("INDIE");
+
+            // assert
+            assertArrayEquals(new int[]{1, 2}, fromBitmaps);
+            assertEquals(2, fromSnapshot.size());
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static ProductBitmapIndex load(Product... products)
+    {
+        var index = new ProductBitmapIndex();
+        index.onCatalogLoaded(CatalogSnapshot.of(1, new ArrayList<>(List.of(products))));
+        return index;
+    }
+
+    private static Product product(int id, int categoryId, String subCategory, int stock, boolean featured)
+    {
+        return new Product(id, "Product " + id, new BigDecimal("19.99"), categoryId, "", subCategory, stock, featured, "");
+    }
+}
@@ -0,0 +1,72 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.FacetCounts;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductFacetsTest
+{
+    @Test
+    public void count_shouldCount_categories_subCategories_andPriceBands()
+    {
+        // arrange
+        var facets = new ProductFacets();
+
+        // act
+        FacetCounts counts = facets.count(List.of(
+                product(1, 1, "Red", "19.99"),
+                product(2, 1, "red ", "49.99"),
+                product(3, 2, "Blue", "50.00"),
+                product(4, 2, null, "999.00")));
+
+        // assert
+        assertEquals(Map.of(1, 2, 2, 2), counts.getCategories());
+        assertEquals(Map.of("red", 2, "blue", 1), counts.getSubCategories(), "one bucket per search key");
+        assertEquals(List.of(1, 1, 1, 0, 0, 1), List.copyOf(counts.getPriceBands().values()));
+    }
+
+    @Test
+    public void countAll_shouldFollow_creates_updates_andDeletes()
+    {
+        // arrange
+        var facets = new ProductFacets();
+        List<Product> catalog = new ArrayList<>(List.of(
+                product(1, 1, "Red", "19.99"),
+                product(2, 1, "Blue", "49.99"),
+                product(3, 2, "Blue", "120.00")));
+        facets.onCatalogLoaded(CatalogSnapshot.of(1, catalog));
+
+        // act
+        Product created = product(4, 2, "RED", "30.00");
+        facets.onProductSaved(null, created);
+        catalog.add(created);
+
+        Product updated = product(2, 2, "Green", "600.00");
+        facets.onProductSaved(catalog.get(1), updated);
+        catalog.set(1, updated);
+
+        facets.onProductDeleted(catalog.get(0));
+        catalog.remove(0);
+
+        // assert
+        FacetCounts counts = facets.countAll();
+        assertEquals(Map.of(2, 3), counts.getCategories(), "category 1 has no products left");
+        assertEquals(Map.of("red", 1, "blue", 1, "green", 1), counts.getSubCategories());
+        assertEquals(List.of(0, 1, 0, 1, 0, 1), List.copyOf(counts.getPriceBands().values()));
+        assertEquals(counts.getSubCategories(), facets.count(catalog).getSubCategories(), "the same as counting again");
+        assertEquals(counts.getPriceBands(), facets.count(catalog).getPriceBands());
+    }
+
+    private static Product product(int id, int categoryId, String subCategory, String price)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), categoryId, "", subCategory, 1, false, "");
+    }
+}
@@ -0,0 +1,68 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSearchIndexTest
+{
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductSearchIndex(null);
+        index.onCatalogLoaded(CatalogSnapshot.of(1, List.of(
+                product(1, "The Legend of Zelda", "Adventure", "Explore Hyrule in an open world adventure."),
+                product(2, "Mario Kart", "Racing", "Race your friends, Zelda characters not included."),
+                product(3, "Pokémon Scarlet", "RPG", "Catch them all."),
+                product(4, "Controller", "Accessory", "Works with every racing game.")
+        )));
+    }
+
+    @Test
+    public void search_shouldRank_nameMatches_aboveDescriptionMatches()
+    {
+        // act
+        var actual = index.search("zelda", 10);
+
+        // assert
+        assertEquals(List.of(1, 2), actual);
+    }
+
+    @Test
+    public void search_shouldMatch_prefixes_andIgnoreAccents()
+    {
+        // act
+        var actual = index.search("pokem", 10);
+
+        // assert
+        assertEquals(List.of(3), actual);
+    }
+
+    @Test
+    public void search_shouldFollow_productChanges()
+    {
+        // arrange
+        Product controller = product(4, "Controller", "Accessory", "Works with every racing game.");
+
+        // act
+        index.onProductSaved(controller, product(4, "Pro Controller", "Accessory", "Wireless."));
+        index.onProductDeleted(product(2, "Mario Kart", "Racing", ""));
+
+        // assert
+        assertEquals(List.of(), index.search("racing", 10));
+        assertEquals(List.of(4), index.search("wireless", 10));
+    }
+
+    private static Product product(int id, String name, String subCategory, String description)
+    {
+        return new Product(id, name, new BigDecimal("59.99"), 1, description, subCategory, 10, false, "");
+    }
+}
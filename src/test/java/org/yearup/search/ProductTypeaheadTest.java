@@ -0,0 +1,179 @@
+package org.yearup.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+import org.yearup.models.Profile;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductTypeaheadTest
+{
+    @Test
+    public void suggest_shouldMatch_wordStarts_andRank_featuredThenPopular()
+    {
+        // arrange
+        var typeahead = load(Map.of(2, 500, 3, 5),
+                product(1, "The Legend of Zelda", true),
+                product(2, "Zelda Breath of the Wild", false),
+                product(3, "Zelda II", false),
+                product(4, "Mario Kart", false));
+
+        // act
+        var actual = ids(typeahead.suggest("ZEL", 10));
+
+        // assert
+        assertEquals(List.of(1, 2, 3), actual);
+    }
+
+    @Test
+    public void onUnitsSold_shouldReweight_theProductsWhoseSalesChanged()
+    {
+        // arrange
+        var typeahead = load(Map.of(2, 500, 3, 5),
+                product(1, "The Legend of Zelda", true),
+                product(2, "Zelda Breath of the Wild", false),
+                product(3, "Zelda II", false),
+                product(4, "Mario Kart", false));
+        var renamed = product(2, "Zelda BOTW", false);
+        typeahead.onProductSaved(product(2, "Zelda Breath of the Wild", false), renamed);
+
+        // act
+        typeahead.onUnitsSold(Map.of(2, 500, 3, 5_000, 4, 9));
+
+        // assert
+        assertEquals(List.of(1, 3, 2), ids(typeahead.suggest("zel", 10)), "featured still first, then the new best seller");
+        assertEquals("Zelda BOTW", typeahead.suggest("zelda b", 10).get(0).getName());
+        assertEquals(List.of(4), ids(typeahead.suggest("mario", 10)));
+    }
+
+    @Test
+    public void suggest_shouldFollow_renames_andDeletes_beforeAndAfterMerging()
+    {
+        // arrange
+        var typeahead = load(Map.of(), product(1, "Mario Kart", false), product(2, "Mario Party", false));
+
+        // act
+        typeahead.onProductSaved(product(1, "Mario Kart", false), product(1, "Kart Racer", false));
+        typeahead.onProductDeleted(product(2, "Mario Party", false));
+
+        // assert
+        assertEquals(List.of(), ids(typeahead.suggest("mario", 10)));
+        assertEquals(List.of(1), ids(typeahead.suggest("kart", 10)));
+
+        // act - push enough changes through to force the delta to be merged into the main index
+        for (int id = 100; id <= 100 + ProductTypeahead.MAX_DELTA; id++)
+        {
+            typeahead.onProductSaved(null, product(id, "Filler " + id, false));
+        }
+
+        // assert
+        assertEquals(List.of(1), ids(typeahead.suggest("kart", 10)));
+        assertEquals(List.of(), ids(typeahead.suggest("mario", 10)));
+    }
+
+    @Test
+    public void onCatalogLoaded_shouldStillIndex_whenUnitsSoldCantBeRead()
+    {
+        // arrange
+        var typeahead = new ProductTypeahead(new UnitsSold(Map.of())
+        {
+            @Override
+            public Map<Integer, Integer> getUnitsSoldByProduct()
+            {
+                throw new RuntimeException("Error getting units sold");
+            }
+        }, null);
+
+        // act
+        typeahead.onCatalogLoaded(CatalogSnapshot.of(1, new ArrayList<>(List.of(product(1, "Mario Kart", false)))));
+
+        // assert
+        assertEquals(List.of(1), ids(typeahead.suggest("mario", 10)));
+    }
+
+    @Test
+    public void suggest_shouldAsk_theDatabase_untilTheCatalogIsLoaded()
+    {
+        // arrange
+        List<String> prefixes = new ArrayList<>();
+        var typeahead = new ProductTypeahead(new UnitsSold(Map.of()), new MySqlProductDao(null)
+        {
+            @Override
+            public List<Product> suggestByName(String prefix, int limit)
+            {
+                prefixes.add(prefix);
+                return List.of(product(7, "Pokémon Scarlet", false));
+            }
+        });
+
+        // act
+        var actual = typeahead.suggest(" Poké", 8);
+
+        // assert
+        assertEquals(List.of(7), ids(actual));
+        assertEquals(List.of("poke"), prefixes);
+    }
+
+    private static ProductTypeahead load(Map<Integer, Integer> unitsSold, Product... products)
+    {
+        var typeahead = new ProductTypeahead(new UnitsSold(unitsSold), null);
+        typeahead.onCatalogLoaded(CatalogSnapshot.of(1, new ArrayList<>(List.of(products))));
+        return typeahead;
+    }
+
+    private static List<Integer> ids(List<ProductSuggestion> suggestions)
+    {
+        return suggestions.stream().map(ProductSuggestion::getProductId).collect(Collectors.toList());
+    }
+
+    private static Product product(int id, String name, boolean featured)
+    {
+        return new Product(id, name, new BigDecimal("59.99"), 1, "", "", 10, featured, "");
+    }
+
+    static class UnitsSold implements OrderDao
+    {
+        private final Map<Integer, Integer> unitsSold;
+
+        UnitsSold(Map<Integer, Integer> unitsSold)
+        {
+            this.unitsSold = unitsSold;
+        }
+
+        @Override
+        public Map<Integer, Integer> getUnitsSoldByProduct()
+        {
+            return unitsSold;
+        }
+
+        @Override
+        public int createOrder(Profile profile, ShoppingCart cart)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addOrderToDatabase(int orderId, ShoppingCartItem item)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateStock(int productId, int quantity)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
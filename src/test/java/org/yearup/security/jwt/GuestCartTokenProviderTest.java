@@ -0,0 +1,86 @@
+package org.yearup.security.jwt;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuestCartTokenProviderTest
+{
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[64]);
+
+    @Test
+    public void token_shouldCarry_theCart_inTheOrderItWasFilled()
+    {
+        // arrange
+        var tokens = tokens(SECRET, 3600);
+        Map<Integer, Integer> cart = new LinkedHashMap<>();
+        for (int productId = 20; productId > 0; productId--)
+        {
+            cart.put(productId, productId % 3 + 1);
+        }
+
+        // act
+        String token = tokens.createToken(cart);
+        var read = tokens.getQuantities(token);
+
+        // assert
+        assertEquals(cart, read);
+        assertEquals(20, read.keySet().iterator().next());
+        assertTrue(token.length() < 300, "20 products fit in a short header, it was " + token.length());
+    }
+
+    @Test
+    public void token_thatWasChanged_signedElsewhere_orExpired_shouldRead_asAnEmptyCart()
+    {
+        // arrange
+        var tokens = tokens(SECRET, 3600);
+        String token = tokens.createToken(Map.of(1, 2));
+        String[] parts = token.split("\\.");
+        String changed = parts[0] + "." + parts[1] + "." + new StringBuilder(parts[2]).reverse();
+
+        byte[] otherKey = new byte[64];
+        otherKey[0] = 1;
+        String foreign = tokens(Base64.getEncoder().encodeToString(otherKey), 3600).createToken(Map.of(1, 2));
+        String expired = tokens(SECRET, -60).createToken(Map.of(1, 2));
+
+        // act + assert
+        assertEquals(Map.of(1, 2), tokens.getQuantities(token));
+        assertEquals(Map.of(), tokens.getQuantities(changed));
+        assertEquals(Map.of(), tokens.getQuantities(foreign));
+        assertEquals(Map.of(), tokens.getQuantities(expired));
+        assertEquals(Map.of(), tokens.getQuantities(null));
+    }
+
+    @Test
+    public void guestCartTokens_andLoginTokens_shouldNotBeAccepted_asEachOther()
+    {
+        // arrange
+        var tokenProvider = new TokenProvider(SECRET, 3600);
+        tokenProvider.afterPropertiesSet();
+        var tokens = new GuestCartTokenProvider(tokenProvider, 3600);
+        String guestCart = tokens.createToken(Map.of(1, 2));
+        String login = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", "",
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))), false);
+
+        // act + assert
+        assertFalse(tokenProvider.validateToken(guestCart), "a guest cart token is no way to log in");
+        assertThrows(JwtException.class, () -> tokenProvider.getAuthentication(guestCart));
+        assertTrue(tokenProvider.validateToken(login));
+        assertEquals(Map.of(), tokens.getQuantities(login));
+    }
+
+    private static GuestCartTokenProvider tokens(String secret, long timeoutSeconds)
+    {
+        var tokenProvider = new TokenProvider(secret, 3600);
+        tokenProvider.afterPropertiesSet();
+        return new GuestCartTokenProvider(tokenProvider, timeoutSeconds);
+    }
+}
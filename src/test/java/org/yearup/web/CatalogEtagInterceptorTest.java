@@ -0,0 +1,84 @@
+package org.yearup.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.yearup.data.catalog.CatalogVersion;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogEtagInterceptorTest
+{
+    @Test
+    public void preHandle_shouldAnswer304_untilTheCatalogChanges()
+    {
+        // arrange
+        var catalogVersion = new CatalogVersion();
+        var interceptor = new CatalogEtagInterceptor(catalogVersion);
+        var first = new MockHttpServletResponse();
+        interceptor.preHandle(new MockHttpServletRequest("GET", "/products"), first, null);
+        String etag = first.getHeader("ETag");
+
+        // act
+        var repeatResponse = new MockHttpServletResponse();
+        boolean repeatHandled = interceptor.preHandle(get(etag), repeatResponse, null);
+
+        catalogVersion.bump();
+        var afterChangeResponse = new MockHttpServletResponse();
+        boolean afterChangeHandled = interceptor.preHandle(get(etag), afterChangeResponse, null);
+
+        // assert
+        assertFalse(repeatHandled, "the controller must not run for a matching tag");
+        assertEquals(304, repeatResponse.getStatus());
+        assertTrue(afterChangeHandled);
+        assertEquals(200, afterChangeResponse.getStatus());
+        assertNotEquals(etag, afterChangeResponse.getHeader("ETag"));
+    }
+
+    @Test
+    public void etag_shouldOnlyBeSent_withASuccessfulResponse() throws Exception
+    {
+        // arrange
+        var interceptor = new CatalogEtagInterceptor(new CatalogVersion());
+        var filter = new SuccessHeadersFilter();
+        var ok = new MockHttpServletResponse();
+        var notFound = new MockHttpServletResponse();
+
+        // act
+        filter.doFilter(new MockHttpServletRequest("GET", "/products/1"), ok, (request, response) -> {
+            interceptor.preHandle((HttpServletRequest) request, (HttpServletResponse) response, null);
+            response.setContentType("application/json");
+            response.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+        });
+        filter.doFilter(new MockHttpServletRequest("GET", "/products/99"), notFound, (request, response) -> {
+            interceptor.preHandle((HttpServletRequest) request, (HttpServletResponse) response, null);
+            ((HttpServletResponse) response).sendError(404);
+        });
+
+        // assert
+        assertNotNull(ok.getHeader("ETag"));
+        assertEquals(404, notFound.getStatus());
+        assertNull(notFound.getHeader("ETag"), "an error is not a version of the resource");
+    }
+
+    @Test
+    public void matches_shouldUse_weakComparison_overAList()
+    {
+        assertTrue(CatalogEtagInterceptor.matches("\"a\", W/\"b\"", "\"b\""));
+        assertTrue(CatalogEtagInterceptor.matches("*", "\"b\""));
+        assertTrue(CatalogEtagInterceptor.matches("\"b-gzip\"", "\"b\""));
+        assertFalse(CatalogEtagInterceptor.matches("\"a\"", "\"b\""));
+        assertFalse(CatalogEtagInterceptor.matches(null, "\"b\""));
+    }
+
+    private static MockHttpServletRequest get(String ifNoneMatch)
+    {
+        var request = new MockHttpServletRequest("GET", "/products");
+        request.addHeader("If-None-Match", ifNoneMatch);
+        return request;
+    }
+}
@@ -0,0 +1,126 @@
+package org.yearup.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.yearup.data.catalog.CatalogVersion;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogResponseCacheTest
+{
+    private static final String BODY = "[" + "{\"categoryId\":1,\"name\":\"Consoles\"},".repeat(50) + "{}]";
+
+    @Test
+    public void doFilter_shouldRunTheController_onceUntilTheCatalogChanges() throws Exception
+    {
+        // arrange
+        var catalogVersion = new CatalogVersion();
+        var filter = new CatalogResponseCache(catalogVersion, 16, 1 << 20);
+        var controllerRuns = new AtomicInteger();
+
+        // act
+        var first = get(filter, controllerRuns, null);
+        var second = get(filter, controllerRuns, null);
+        catalogVersion.bump();
+        var afterChange = get(filter, controllerRuns, null);
+
+        // assert
+        assertEquals(BODY, first.getContentAsString());
+        assertEquals(BODY, second.getContentAsString());
+        assertEquals(BODY, afterChange.getContentAsString());
+        assertEquals("\"v1\"", second.getHeader("ETag"), "headers from the first response are replayed");
+        assertEquals(2, controllerRuns.get());
+    }
+
+    @Test
+    public void doFilter_shouldServe_thePrecompressedBody_toGzipClients() throws Exception
+    {
+        // arrange
+        var filter = new CatalogResponseCache(new CatalogVersion(), 16, 1 << 20);
+        var controllerRuns = new AtomicInteger();
+        get(filter, controllerRuns, null);
+
+        // act
+        var response = get(filter, controllerRuns, "br;q=1.0, gzip;q=0.8");
+
+        // assert
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertTrue(response.getContentLength() < BODY.length());
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())))
+        {
+            assertEquals(BODY, new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("\"v1-gzip\"", response.getHeader("ETag"), "the compressed bytes are a representation of their own");
+    }
+
+    @Test
+    public void doFilter_shouldAnswer304_toEitherFormOfTheEtag() throws Exception
+    {
+        // arrange
+        var filter = new CatalogResponseCache(new CatalogVersion(), 16, 1 << 20);
+        var controllerRuns = new AtomicInteger();
+        get(filter, controllerRuns, null, null);
+
+        // act
+        var identity = get(filter, controllerRuns, null, "\"v1\"");
+        var gzip = get(filter, controllerRuns, "gzip", "\"v1-gzip\"");
+        var gzipTagWithoutGzip = get(filter, controllerRuns, null, "\"v1-gzip\"");
+
+        // assert
+        assertEquals(304, identity.getStatus());
+        assertEquals(304, gzip.getStatus());
+        assertEquals("\"v1-gzip\"", gzip.getHeader("ETag"));
+        assertEquals(304, gzipTagWithoutGzip.getStatus());
+        assertEquals("\"v1\"", gzipTagWithoutGzip.getHeader("ETag"));
+    }
+
+    @Test
+    public void acceptsGzip_shouldHonour_qZero()
+    {
+        assertTrue(CatalogResponseCache.acceptsGzip("deflate, gzip"));
+        assertFalse(CatalogResponseCache.acceptsGzip("gzip;q=0, deflate"));
+        assertFalse(CatalogResponseCache.acceptsGzip(null));
+    }
+
+    private static MockHttpServletResponse get(CatalogResponseCache filter, AtomicInteger controllerRuns, String acceptEncoding)
+            throws Exception
+    {
+        return get(filter, controllerRuns, acceptEncoding, null);
+    }
+
+    private static MockHttpServletResponse get(CatalogResponseCache filter, AtomicInteger controllerRuns, String acceptEncoding,
+                                               String ifNoneMatch) throws Exception
+    {
+        var request = new MockHttpServletRequest("GET", "/categories");
+        if (acceptEncoding != null)
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null)
+            request.addHeader("If-None-Match", ifNoneMatch);
+        var response = new MockHttpServletResponse();
+
+        //stands in for the controller
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException
+            {
+                controllerRuns.incrementAndGet();
+                res.setHeader("ETag", "\"v" + controllerRuns.get() + "\"");
+                res.setContentType("application/json");
+                res.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+        return response;
+    }
+}
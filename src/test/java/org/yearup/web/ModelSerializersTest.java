@@ -0,0 +1,122 @@
+package org.yearup.web;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.yearup.configurations.JacksonConfig;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ModelSerializersTest
+{
+    private static final String HALO_JSON = "{\"productId\":7,\"name\":\"Halo \\\"Combat\\\" Evolved\",\"price\":59.99,"
+            + "\"categoryId\":1,\"description\":\"Fight the Covenant\\nand the Flood\",\"subCategory\":\"Shooter\","
+            + "\"stock\":3,\"imageUrl\":\"halo.jpg\",\"featured\":true}";
+
+    @Test
+    public void product_shouldMatch_theGoldenJson()
+    {
+        // act
+        var actual = json(mapper(new JsonFactory(), true), halo(), ProductFields.ALL);
+
+        // assert
+        assertEquals(HALO_JSON, actual);
+    }
+
+    @Test
+    public void cart_shouldMatch_theGoldenJson_withProjection()
+    {
+        // arrange
+        var cart = new ShoppingCart();
+        cart.add(new ShoppingCartItem(halo(), 1, 2));
+
+        // act
+        var actual = json(mapper(new JsonFactory(), true), cart, ProductFields.fromParameter("name,price"));
+
+        // assert
+        assertEquals("{\"items\":{\"7\":{\"product\":{\"productId\":7,\"name\":\"Halo \\\"Combat\\\" Evolved\",\"price\":59.99},"
+                + "\"quantity\":2,\"discountPercent\":0,\"lineTotal\":119.98}},\"total\":119.98}", actual);
+    }
+
+    @Test
+    public void output_shouldBe_byteIdentical_toReflection_inEveryFormat_andProjection() throws Exception
+    {
+        // arrange - a full product, one with every nullable field empty, and a cart holding both
+        var empty = new Product();
+        empty.setProductId(8);
+        var cart = new ShoppingCart();
+        cart.add(new ShoppingCartItem(halo(), 1, 3));
+        var discounted = new ShoppingCartItem(product(9, "0.10"), 1, 1);
+        discounted.setDiscountPercent(new BigDecimal("0.25"));
+        cart.add(discounted);
+        List<Object> values = List.of(halo(), empty, List.of(halo(), empty), cart, new ShoppingCart());
+
+        for (JsonFactory factory : List.of(new JsonFactory(), new CBORFactory(), new SmileFactory()))
+        {
+            ObjectMapper reflective = mapper(factory, false);
+            ObjectMapper handWritten = mapper(factory, true);
+
+            for (ProductFields fields : List.of(ProductFields.ALL, ProductFields.fromParameter("price,featured,imageUrl")))
+            {
+                for (Object value : values)
+                {
+                    // act
+                    var expected = reflective.writer(fields.getFilters()).writeValueAsBytes(value);
+                    var actual = handWritten.writer(fields.getFilters()).writeValueAsBytes(value);
+
+                    // assert
+                    assertArrayEquals(expected, actual, factory.getFormatName() + " " + fields + " " + value);
+                }
+            }
+        }
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory, boolean handWritten)
+    {
+        var builder = new Jackson2ObjectMapperBuilder().factory(factory);
+        new JacksonConfig().productFieldsFilter().customize(builder);
+        if (handWritten)
+        {
+            builder.modulesToInstall(new SimpleModule()
+                    .addSerializer(new ModelSerializers.ProductSerializer())
+                    .addSerializer(new ModelSerializers.ShoppingCartItemSerializer())
+                    .addSerializer(new ModelSerializers.ShoppingCartSerializer()));
+        }
+        return builder.build();
+    }
+
+    private static String json(ObjectMapper mapper, Object value, ProductFields fields)
+    {
+        try
+        {
+            return mapper.writer(fields.getFilters()).writeValueAsString(value);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Product halo()
+    {
+        return new Product(7, "Halo \"Combat\" Evolved", new BigDecimal("59.99"), 1, "Fight the Covenant\nand the Flood",
+                "Shooter", 3, true, "halo.jpg");
+    }
+
+    private static Product product(int id, String price)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), 2, "", "Puzzle", 0, false, null);
+    }
+}
@@ -0,0 +1,109 @@
+package org.yearup.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yearup.configurations.JacksonConfig;
+import org.yearup.data.ProductFields;
+import org.yearup.models.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductStreamWriterTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProductStreamWriter writer = new ProductStreamWriter(objectMapper);
+
+    @Test
+    public void jsonArray_shouldWrite_everyProduct_asOneArray() throws Exception
+    {
+        // act
+        var response = writer.jsonArray(consumer -> {
+            for (Product product : products(3))
+                consumer.accept(product);
+        });
+        String body = body(response);
+
+        // assert
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        JsonNode array = objectMapper.readTree(body);
+        assertTrue(array.isArray());
+        assertEquals(3, array.size());
+        assertEquals(2, array.get(1).get("productId").asInt());
+        assertEquals("Product 3", array.get(2).get("name").asText());
+    }
+
+    @Test
+    public void ndjson_shouldWrite_oneProduct_perLine() throws Exception
+    {
+        // act
+        var response = writer.ndjson(consumer -> {
+            for (Product product : products(3))
+                consumer.accept(product);
+        });
+        String body = body(response);
+
+        // assert
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++)
+        {
+            assertEquals(i + 1, objectMapper.readTree(lines[i]).get("productId").asInt());
+        }
+    }
+
+    @Test
+    public void ndjson_withFields_shouldWrite_onlyThoseProperties() throws Exception
+    {
+        // arrange
+        var builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfig().productFieldsFilter().customize(builder);
+        var projecting = new ProductStreamWriter(builder.build());
+
+        // act
+        String body = body(projecting.ndjson(consumer -> consumer.accept(products(1).get(0)),
+                ProductFields.fromParameter("name,price")));
+
+        // assert
+        assertEquals("{\"productId\":1,\"name\":\"Product 1\",\"price\":9.99}\n", body);
+    }
+
+    @Test
+    public void noProducts_shouldWrite_anEmptyArray_andAnEmptyStream() throws Exception
+    {
+        // act
+        String array = body(writer.jsonArray(consumer -> { }));
+        String lines = body(writer.ndjson(consumer -> { }));
+
+        // assert
+        assertEquals("[]", array);
+        assertEquals("", lines);
+    }
+
+    private static List<Product> products(int count)
+    {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new Product(id, "Product " + id, new BigDecimal("9.99"), 1, "", "", 5, false, ""))
+                .toList();
+    }
+
+    private static String body(ResponseEntity<StreamingResponseBody> response) throws IOException
+    {
+        var output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -39,6 +39,17 @@ CREATE TABLE products (
                           stock INT NOT NULL DEFAULT 0,
                           featured BOOL NOT NULL DEFAULT 0,
                           PRIMARY KEY (product_id),
+                          -- search filters are written in this column order (see ProductSearchQuery)
+                          INDEX ix_products_category_subcategory_price (category_id, subcategory, price),
+                          INDEX ix_products_subcategory_price (subcategory, price),
+                          INDEX ix_products_price (price),
+                          -- paged listings: one index per sort order (secondary indexes end with product_id)
+                          INDEX ix_products_name (name),
+                          INDEX ix_products_category (category_id),
+                          INDEX ix_products_category_price (category_id, price),
+                          INDEX ix_products_category_name (category_id, name),
+                          INDEX ix_products_subcategory_name (subcategory, name),
+                          INDEX ix_products_subcategory_product (subcategory, product_id),
                           FOREIGN KEY (category_id) REFERENCES categories(category_id)
 );
 
@@ -77,6 +88,47 @@ CREATE TABLE shopping_cart (
                                FOREIGN KEY (product_id) REFERENCES products(product_id)
 );
 
+-- the version of each cart that has been changed, the ETag of /cart. every change moves it up by one,
+-- and a change sent with If-Match only applies while the version is still the one the client saw.
+-- a cart without a row is at version 0.
+-- last_modified moves with every change, the abandoned cart sweeper finds idle carts through its index
+CREATE TABLE shopping_cart_versions (
+    user_id INT NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL,
+    last_modified TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX ix_shopping_cart_versions_last_modified (last_modified),
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
+-- product change log, read by GET /products/changes
+-- change ids come from product_change_sequence: its row stays locked until the writing transaction
+-- commits, so ids become visible in order and a reader can never skip past a late commit
+CREATE TABLE product_change_sequence (
+    id INT NOT NULL,
+    last_change_id BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- no foreign key to products: a deleted product's row here is its tombstone
+CREATE TABLE product_changes (
+    change_id BIGINT NOT NULL,
+    product_id INT NOT NULL,
+    deleted BOOL NOT NULL DEFAULT 0,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (change_id),
+    INDEX ix_product_changes_product (product_id, change_id)
+);
+
+-- products whose stock was taken at checkout since the last flush into product_changes:
+-- one row per product however many orders took from it (see StockChangeFlusher)
+CREATE TABLE product_stock_changes (
+    product_id INT NOT NULL,
+    PRIMARY KEY (product_id)
+);
+
+INSERT INTO product_change_sequence (id, last_change_id) VALUES (1, 0);
+
+
 
 /*  INSERT Users  */
 INSERT INTO users (username, hashed_password, role)
@@ -109,3 +161,9 @@ VALUES  ('Smartphone', 499.99, 1, 'A powerful and feature-rich smartphone for al
         ('Cookware Set', 149.99, 3, 'A comprehensive set of high-quality cookware for all your culinary needs.', 'cookware-set.jpg', 50, 1, 'Red'),
         ('Coffee Maker', 79.99, 3, 'Brew your favorite coffee with this efficient and stylish coffee maker.', 'coffee-maker.jpg', 30, 0, 'Black'),
         ('Kitchen Knife Set', 59.99, 3, 'A set of sharp and durable knives for effortless food preparation.', 'knife-set.jpg', 40, 1, 'Silver');
+
+
+-- every sample product starts out as one change, so syncing from version 0 returns the whole catalog
+INSERT INTO product_changes (change_id, product_id)
+SELECT ROW_NUMBER() OVER (ORDER BY product_id), product_id FROM products;
+UPDATE product_change_sequence SET last_change_id = (SELECT COUNT(*) FROM product_changes) WHERE id = 1;